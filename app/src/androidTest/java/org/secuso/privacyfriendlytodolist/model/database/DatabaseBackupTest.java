@@ -0,0 +1,147 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Exports databases and restores the backups into the same or another database.
+ */
+public class DatabaseBackupTest extends AndroidTestCase {
+
+    private static final String TAG = DatabaseBackupTest.class.getSimpleName();
+
+    // lower bound for restored rows per second, far below what a device manages
+    private static final int MIN_ROWS_PER_SECOND = 1000;
+
+    // 10 lists with 3,333 tasks of two subtasks each, 100,000 rows in total
+    private static final int BULK_LISTS = 10;
+    private static final int BULK_TASKS_PER_LIST = 3333;
+    private static final int BULK_SUBTASKS_PER_TASK = 2;
+    private static final int BULK_ROWS = 100000;
+
+    private SQLiteDatabase source;
+    private SQLiteDatabase target;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        source = TestDatabase.create(getContext());
+        target = TestDatabase.create(getContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        source.close();
+        target.close();
+        super.tearDown();
+    }
+
+    private static byte[] export(SQLiteDatabase db) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DatabaseBackup.export(db, out);
+        return out.toByteArray();
+    }
+
+    private static int restore(SQLiteDatabase db, byte backup[]) throws IOException {
+        return DatabaseBackup.restore(db, new ByteArrayInputStream(backup), DatabaseBackup.DEFAULT_BATCH_SIZE);
+    }
+
+    private static long[] count(SQLiteDatabase db) {
+        return new long[]{
+                DatabaseUtils.queryNumEntries(db, TTodoList.TABLE_NAME),
+                DatabaseUtils.queryNumEntries(db, TTodoTask.TABLE_NAME),
+                DatabaseUtils.queryNumEntries(db, TTodoSubTask.TABLE_NAME)};
+    }
+
+    private static void assertSubTaskCounters(SQLiteDatabase db, int subTasks, int done) {
+        Cursor cursor = db.rawQuery("SELECT DISTINCT " + TTodoTask.COLUMN_NUM_SUBTASKS + ", " + TTodoTask.COLUMN_NUM_SUBTASKS_DONE +
+                " FROM " + TTodoTask.TABLE_NAME + ";", null);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(subTasks, cursor.getInt(0));
+            assertEquals(done, cursor.getInt(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testRestoreIntoSameDatabase() throws IOException {
+        TestDatabase.fill(source, "original", 2, 10, 3);
+        byte backup[] = export(source);
+
+        assertEquals(2 + 20 + 60, restore(source, backup));
+
+        assertTrue(Arrays.equals(new long[]{2, 20, 60}, count(source)));
+        assertEquals(20, DBQueryHandler.searchTasks(source, "original").length);
+        assertEquals(20, DBQueryHandler.searchTasks(source, "subtask").length);
+        assertSubTaskCounters(source, 3, 1);
+    }
+
+    public void testRestoreReplacesAllRows() throws IOException {
+        TestDatabase.fill(source, "original", 2, 10, 3);
+        // uses the same ids and more of them
+        TestDatabase.fill(target, "other", 3, 20, 1);
+
+        restore(target, export(source));
+
+        assertTrue(Arrays.equals(new long[]{2, 20, 60}, count(target)));
+        assertEquals(0, DBQueryHandler.searchTasks(target, "other").length);
+        assertEquals(20, DBQueryHandler.searchTasks(target, "original").length);
+        assertSubTaskCounters(target, 3, 1);
+    }
+
+    public void testBrokenBackupLeavesDatabaseAlone() throws IOException {
+        TestDatabase.fill(source, "original", 2, 10, 3);
+        TestDatabase.fill(target, "other", 3, 20, 1);
+        byte backup[] = export(source);
+
+        try {
+            restore(target, Arrays.copyOf(backup, backup.length / 2));
+            fail("A truncated backup must not be restored.");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertTrue(Arrays.equals(new long[]{3, 60, 60}, count(target)));
+        assertEquals(60, DBQueryHandler.searchTasks(target, "other").length);
+
+        // the staging tables were dropped, so the next restore starts from scratch
+        restore(target, backup);
+        assertTrue(Arrays.equals(new long[]{2, 20, 60}, count(target)));
+    }
+
+    public void testThroughput() throws IOException {
+        TestDatabase.fill(source, "bulk", BULK_LISTS, BULK_TASKS_PER_LIST, BULK_SUBTASKS_PER_TASK);
+        TestDatabase.fill(target, "other", 5, 100, 1);
+
+        long start = SystemClock.elapsedRealtime();
+        byte backup[] = export(source);
+        long exportMillis = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        int rows = restore(target, backup);
+        long restoreMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        long rowsPerSecond = rows * 1000L / restoreMillis;
+        Log.i(TAG, rows + " rows, " + backup.length + " bytes: export " + exportMillis + " ms, restore " + restoreMillis + " ms (" + rowsPerSecond + " rows/s)");
+
+        assertEquals(BULK_ROWS, BULK_LISTS + BULK_LISTS * BULK_TASKS_PER_LIST * (1 + BULK_SUBTASKS_PER_TASK));
+        assertEquals(BULK_ROWS, rows);
+        assertTrue(Arrays.equals(count(source), count(target)));
+        assertTrue(rowsPerSecond + " rows/s", rowsPerSecond >= MIN_ROWS_PER_SECOND);
+    }
+}
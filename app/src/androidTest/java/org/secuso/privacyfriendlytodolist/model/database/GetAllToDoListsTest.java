@@ -0,0 +1,88 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.util.ArrayList;
+
+/**
+ * Loads all lists with their tasks and subtasks and checks that the number of queries does not
+ * depend on the number of lists or tasks.
+ */
+public class GetAllToDoListsTest extends AndroidTestCase {
+
+    private TestDatabase.QueryRecorder recorder;
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        recorder = new TestDatabase.QueryRecorder();
+        db = TestDatabase.create(getContext(), recorder);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testLoadsListsWithTasksAndSubTasks() {
+        TestDatabase.fill(db, 3, 4, 2);
+        db.execSQL("INSERT INTO " + TTodoList.TABLE_NAME + " (" + TTodoList.COLUMN_NAME + ") VALUES ('empty');");
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_TRASH + " = 1 WHERE " + TTodoTask.COLUMN_ID + " = 1;");
+
+        ArrayList<TodoList> lists = DBQueryHandler.getAllToDoLists(db);
+
+        assertEquals(4, lists.size());
+        assertEquals("list 0", lists.get(0).getName());
+        assertEquals(3, lists.get(0).getTasks().size()); // one task is in the bin
+        assertEquals(4, lists.get(1).getTasks().size());
+        assertEquals(0, lists.get(3).getTasks().size());
+
+        for (TodoList list : lists) {
+            for (TodoTask task : list.getTasks()) {
+                assertEquals(list.getId(), task.getListId());
+                assertEquals(list.getName(), task.getListName());
+                assertEquals(2, task.getSubTasks().size());
+                assertEquals(task.getId(), task.getSubTasks().get(0).getTaskId());
+                assertEquals("subtask 1", task.getSubTasks().get(1).getName());
+                assertTrue(task.getSubTasks().get(1).getDone());
+            }
+        }
+    }
+
+    public void testNumberOfQueriesDoesNotGrowWithTheContent() {
+        TestDatabase.fill(db, 2, 2, 1);
+        recorder.queries.clear();
+        DBQueryHandler.getAllToDoLists(db);
+        int queriesForFewRows = recorder.queries.size();
+
+        TestDatabase.fill(db, 40, 100, 3);
+        recorder.queries.clear();
+        ArrayList<TodoList> lists = DBQueryHandler.getAllToDoLists(db);
+
+        assertEquals(42, lists.size());
+        // one join for lists and tasks, one query for the subtasks
+        assertTrue(recorder.queries.toString(), recorder.queries.size() <= 2);
+        assertEquals(queriesForFewRows, recorder.queries.size());
+    }
+
+    public void testListNamesAreReadWithoutTasks() {
+        TestDatabase.fill(db, 3, 100, 2);
+        recorder.queries.clear();
+
+        ArrayList<TodoList> lists = DBQueryHandler.getTodoListNames(db);
+
+        assertEquals(3, lists.size());
+        assertEquals("list 2", lists.get(2).getName());
+        assertEquals(0, lists.get(2).getTasks().size());
+        // neither the tasks nor the subtasks are read
+        assertEquals(recorder.queries.toString(), 1, recorder.queries.size());
+    }
+}
@@ -0,0 +1,210 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.util.ArrayList;
+
+/**
+ * Reloads lists through the {@link TodoRepository} into a {@link TodoIdentityMap} and checks that
+ * every id keeps its object. Besides that the test logs how many objects a reload of 10,000 tasks
+ * allocates compared to copying the whole graph, as every read of the repository did before.
+ */
+public class IdentityMapTest extends AndroidTestCase {
+
+    private static final String TAG = IdentityMapTest.class.getSimpleName();
+
+    private static final int LISTS = 10;
+    private static final int TASKS_PER_LIST = 1000;
+    private static final int SUBTASKS_PER_TASK = 2;
+
+    private SQLiteOpenHelper dbHelper;
+    private SQLiteDatabase db;
+    private TodoRepository repository;
+    // belongs to the test thread
+    private TodoIdentityMap identityMap;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dbHelper = TestDatabase.createHelper(getContext());
+        db = dbHelper.getWritableDatabase();
+        // no subtasks are evicted
+        repository = new TodoRepository(getContext(), dbHelper, Long.MAX_VALUE);
+        identityMap = new TodoIdentityMap();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        dbHelper.close();
+        super.tearDown();
+    }
+
+    public void testReloadsKeepTheObjectsOfEveryId() {
+        TestDatabase.fill(db, 2, 3, 2);
+        ArrayList<TodoList> first = reload();
+
+        rename(2, "renamed");
+        ArrayList<TodoList> second = reload();
+
+        assertEquals(first.size(), second.size());
+        for (int l = 0; l < first.size(); l++) {
+            assertSame(first.get(l), second.get(l));
+            for (int t = 0; t < first.get(l).getTasks().size(); t++) {
+                TodoTask task = first.get(l).getTasks().get(t);
+                assertSame(task, second.get(l).getTasks().get(t));
+                assertEquals(2, task.getSubTasks().size());
+            }
+        }
+
+        TodoTask renamed = second.get(0).getTasks().get(1);
+        assertEquals(2, renamed.getId());
+        assertEquals("renamed", renamed.getName());
+        assertEquals(0, renamed.getDirtyFields());
+        assertEquals(DBQueryHandler.ObjectStates.NO_DB_ACTION, renamed.getDBState());
+        assertEquals(2 + 6 + 12, identityMap.getCreatedCount());
+    }
+
+    public void testUnsavedChangesAreKept() {
+        TestDatabase.fill(db, 1, 3, 2);
+        ArrayList<TodoList> lists = reload();
+        TodoTask edited = lists.get(0).getTasks().get(0);
+        edited.setName("edited");
+        TodoTask extended = lists.get(0).getTasks().get(2);
+        TodoSubTask added = new TodoSubTask();
+        added.setName("unsaved");
+        added.setCreated();
+        extended.getSubTasks().add(added);
+
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_DONE + " = 1;");
+        reload();
+
+        assertEquals("edited", edited.getName());
+        assertFalse(edited.getDone());
+        assertTrue(extended.getDone());
+        assertEquals(3, extended.getSubTasks().size());
+        assertSame(added, extended.getSubTasks().get(2));
+    }
+
+    public void testObjectsOfTheRepositoryAreNotChanged() {
+        TestDatabase.fill(db, 1, 3, 2);
+        TodoTask cached = repository.getTodoLists().get(0).getTasks().get(0);
+        reload();
+
+        rename(cached.getId(), "renamed");
+        reload();
+
+        assertEquals("task 0", cached.getName());
+        assertNotSame(cached, repository.getTodoLists().get(0).getTasks().get(0));
+    }
+
+    public void testOtherThreadsAreRejected() throws InterruptedException {
+        TestDatabase.fill(db, 1, 1, 0);
+        final TodoTask task = repository.getTodoLists().get(0).getTasks().get(0);
+        final Throwable thrown[] = new Throwable[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    identityMap.task(task);
+                } catch (Throwable t) {
+                    thrown[0] = t;
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        assertTrue(thrown[0] instanceof IllegalStateException);
+
+        // the test does not run on the main thread
+        try {
+            TodoIdentityMap.getInstance();
+            fail("the map was handed out on the test thread");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testReloadOfTenThousandTasks() {
+        TestDatabase.fill(db, LISTS, TASKS_PER_LIST, SUBTASKS_PER_TASK);
+        reload();
+        int created = identityMap.getCreatedCount();
+        assertEquals(LISTS * TASKS_PER_LIST * (1 + SUBTASKS_PER_TASK) + LISTS, created);
+
+        rename(1, "copied");
+        int copied = allocations(new Runnable() {
+            @Override
+            public void run() {
+                copyOf(repository.getTodoLists());
+            }
+        });
+
+        rename(2, "merged");
+        int reused = identityMap.getReusedCount();
+        int merged = allocations(new Runnable() {
+            @Override
+            public void run() {
+                reload();
+            }
+        });
+
+        assertEquals(created, identityMap.getCreatedCount());
+        assertEquals(created, identityMap.getReusedCount() - reused);
+        Log.i(TAG, "Reload of " + LISTS * TASKS_PER_LIST + " tasks: " + copied + " objects allocated with copies, " + merged + " with the identity map");
+        // the counter is not supported by every runtime
+        if (copied > 0)
+            assertTrue(merged + " of " + copied + " objects", merged < copied / 10);
+    }
+
+    private ArrayList<TodoList> reload() {
+        ArrayList<TodoList> lists = repository.getTodoLists();
+        identityMap.lists(lists);
+        return lists;
+    }
+
+    private void rename(int taskId, String name) {
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_NAME + " = ? WHERE " + TTodoTask.COLUMN_ID + " = ?;",
+                new Object[]{name, taskId});
+    }
+
+    // number of objects the current thread allocates while running reload
+    @SuppressWarnings("deprecation")
+    private static int allocations(Runnable reload) {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            reload.run();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        return Debug.getThreadAllocCount();
+    }
+
+    // a copy of every list, task and subtask, which is what every read of the repository returned before
+    private static ArrayList<TodoList> copyOf(ArrayList<TodoList> lists) {
+        ArrayList<TodoList> copies = new ArrayList<>(lists.size());
+        for (TodoList list : lists) {
+            TodoList copy = new TodoList(list);
+            ArrayList<TodoTask> tasks = new ArrayList<>(list.getTasks().size());
+            for (TodoTask task : list.getTasks()) {
+                TodoTask taskCopy = new TodoTask(task);
+                ArrayList<TodoSubTask> subTasks = new ArrayList<>(task.getSubTasks().size());
+                for (TodoSubTask subTask : task.getSubTasks())
+                    subTasks.add(new TodoSubTask(subTask));
+                taskCopy.setSubTasks(subTasks);
+                tasks.add(taskCopy);
+            }
+            copy.setTasks(tasks);
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,85 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import org.secuso.privacyfriendlytodolist.model.Helper;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Runs the read paths of {@link DBQueryHandler} that filter tasks and subtasks, records their
+ * queries and checks with EXPLAIN QUERY PLAN that none of them scans the task or subtask table.
+ */
+public class QueryPlanTest extends AndroidTestCase {
+
+    private TestDatabase.QueryRecorder recorder;
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        recorder = new TestDatabase.QueryRecorder();
+        db = TestDatabase.create(getContext(), recorder);
+        TestDatabase.fill(db, 3, 10, 2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testTaskQueriesUseIndexes() {
+        long now = Helper.getCurrentTimestamp();
+        HashSet<Integer> lockedIds = new HashSet<>();
+        lockedIds.add(1);
+
+        recorder.queries.clear();
+        DBQueryHandler.getAllToDoLists(db);
+        DBQueryHandler.getAllToDoTasks(db);
+        DBQueryHandler.getBin(db);
+        DBQueryHandler.getTasksWithoutList(db);
+        DBQueryHandler.getTaskSummariesOfList(db, "list 1");
+        DBQueryHandler.getTasksToRemind(db, now, lockedIds);
+        DBQueryHandler.getNextDueTask(db, now);
+        DBQueryHandler.getSubTasksOfTasks(db, new int[]{1, 2, 3});
+        DBQueryHandler.getTaskPageOfList(db, 1, DBQueryHandler.TaskOrder.LIST_POSITION, null, 5);
+        DBQueryHandler.getBinPage(db, DBQueryHandler.TaskOrder.LIST_POSITION, null, 5);
+
+        ArrayList<String> queries = new ArrayList<>(recorder.queries);
+        assertFalse(queries.isEmpty());
+        for (String sql : queries) {
+            for (String detail : explain(sql)) {
+                assertFalse(detail + "\n  in " + sql, isFullTableScan(detail));
+            }
+        }
+    }
+
+    private ArrayList<String> explain(String sql) {
+        ArrayList<String> details = new ArrayList<>();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext())
+                details.add(cursor.getString(detailIndex));
+        } finally {
+            cursor.close();
+        }
+        return details;
+    }
+
+    // Older versions of SQLite write "SCAN TABLE todo_task AS t (~1000 rows)", newer ones "SCAN t".
+    // Scans of an index, the search index, subqueries and the small list table are fine.
+    private static boolean isFullTableScan(String detail) {
+        if (!detail.startsWith("SCAN ") || detail.contains(" USING ") || detail.contains("VIRTUAL TABLE") ||
+                detail.contains("SUBQUERY") || detail.contains("CONSTANT ROW"))
+            return false;
+
+        String table = detail.replace("SCAN TABLE ", "").replace("SCAN ", "").split(" ")[0];
+        return !table.equals(TTodoList.TABLE_NAME) && !table.equals("l");
+    }
+}
@@ -0,0 +1,115 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * Checks which tasks the reminder queries return and measures getTasksToRemind on 100,000 tasks
+ * with 1,000 locked ids.
+ */
+public class ReminderQueryTest extends AndroidTestCase {
+
+    private static final String TAG = ReminderQueryTest.class.getSimpleName();
+
+    private static final int TASKS = 100000;
+    private static final int LOCKED = 1000;
+    private static final int RUNS = 5;
+
+    // generous, the query and the mapping of 50,000 due tasks take far less on current devices
+    private static final long MAX_MILLIS = 5000;
+
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = TestDatabase.create(getContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testSkipsLockedTasksAndAddsTheNextDueTask() {
+        TestDatabase.fill(db, 1, 20, 0);
+        // tasks 1 to 14 are due at their id, 15 to 20 at 1000 + id
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " = " +
+                TTodoTask.COLUMN_ID + " + CASE WHEN " + TTodoTask.COLUMN_ID + " > 14 THEN 1000 ELSE 0 END;");
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_DONE + " = 1 WHERE " + TTodoTask.COLUMN_ID + " = 5;");
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_TRASH + " = 1 WHERE " + TTodoTask.COLUMN_ID + " = 6;");
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " = NULL WHERE " + TTodoTask.COLUMN_ID + " = 7;");
+
+        HashSet<Integer> locked = new HashSet<>();
+        locked.add(11);
+        locked.add(3);
+        locked.add(15); // not due yet, so it stays the next due task
+
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (TodoTask task : DBQueryHandler.getTasksToRemind(db, 500, locked))
+            ids.add(task.getId());
+
+        // 1 stays although 11 is locked
+        assertEquals("[1, 2, 4, 8, 9, 10, 12, 13, 14, 15]", sorted(ids).toString());
+        assertEquals(15, DBQueryHandler.getNextDueTask(db, 500).getId());
+        // 1 to 14 without the done task, the task in the bin and the task without reminder, and 15
+        assertEquals(12, DBQueryHandler.getTasksToRemind(db, 500, null).size());
+    }
+
+    public void testNothingIsDue() {
+        TestDatabase.fill(db, 1, 3, 0);
+
+        assertNull(DBQueryHandler.getNextDueTask(db, 500));
+        assertTrue(DBQueryHandler.getTasksToRemind(db, 500, new HashSet<Integer>()).isEmpty());
+    }
+
+    public void testManyTasksWithManyLockedIds() {
+        TestDatabase.fill(db, 10, TASKS / 10, 0);
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " = " + TTodoTask.COLUMN_ID + ";");
+
+        // half of the tasks are due, every 50th of them is locked
+        long today = TASKS / 2;
+        HashSet<Integer> locked = new HashSet<>();
+        for (int i = 0; i < LOCKED; i++)
+            locked.add(1 + 50 * i);
+
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = SystemClock.elapsedRealtime();
+            ArrayList<TodoTask> tasks = DBQueryHandler.getTasksToRemind(db, today, locked);
+            best = Math.min(best, SystemClock.elapsedRealtime() - start);
+
+            // the due tasks without the locked ones and the next due task
+            assertEquals(TASKS / 2 - LOCKED + 1, tasks.size());
+            assertEquals(today + 1, tasks.get(tasks.size() - 1).getReminderTime());
+        }
+
+        // every due task that is not locked is returned exactly once, none of the locked ones
+        HashSet<Integer> ids = new HashSet<>();
+        for (TodoTask task : DBQueryHandler.getTasksToRemind(db, today, locked)) {
+            assertFalse("locked task " + task.getId(), locked.contains(task.getId()));
+            assertTrue("task " + task.getId() + " twice", ids.add(task.getId()));
+        }
+        for (int id = 1; id <= today; id++)
+            assertEquals("task " + id, !locked.contains(id), ids.contains(id));
+        assertTrue(ids.contains((int) today + 1));
+
+        Log.i(TAG, "getTasksToRemind on " + TASKS + " tasks with " + LOCKED + " locked ids: " + best + " ms");
+        assertTrue(best + " ms", best < MAX_MILLIS);
+    }
+
+    private static ArrayList<Integer> sorted(ArrayList<Integer> ids) {
+        Collections.sort(ids);
+        return ids;
+    }
+}
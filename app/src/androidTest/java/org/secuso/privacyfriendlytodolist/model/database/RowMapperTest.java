@@ -0,0 +1,127 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.util.ArrayList;
+
+/**
+ * Checks that {@link TodoTaskRowMapper} maps every column, including the full 64 bit timestamps,
+ * and compares it with a mapping that looks up the column index for every cell on 50,000 rows.
+ */
+public class RowMapperTest extends AndroidTestCase {
+
+    private static final String TAG = RowMapperTest.class.getSimpleName();
+
+    private static final int TASKS = 50000;
+    private static final int RUNS = 5;
+
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = TestDatabase.create(getContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testMapsAllColumns() {
+        TestDatabase.fill(db, 1, 1, 3);
+        long deadline = (1L << 33) + 7; // does not fit into an int
+        long reminder = (1L << 33) - 3600;
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " +
+                TTodoTask.COLUMN_DEADLINE + " = " + deadline + ", " +
+                TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " = " + reminder + ", " +
+                TTodoTask.COLUMN_DESCRIPTION + " = 'description', " +
+                TTodoTask.COLUMN_PRIORITY + " = " + TodoTask.Priority.LOW.getValue() + ", " +
+                TTodoTask.COLUMN_PROGRESS + " = 40, " +
+                TTodoTask.COLUMN_DONE + " = 1;");
+
+        ArrayList<TodoTask> tasks = DBQueryHandler.getTasksById(db, new int[]{1});
+
+        assertEquals(1, tasks.size());
+        TodoTask task = tasks.get(0);
+        assertEquals(1, task.getId());
+        assertEquals(1, task.getListId());
+        assertEquals(0, task.getListPosition());
+        assertEquals("task 0", task.getName());
+        assertEquals("description", task.getDescription());
+        assertEquals(TodoTask.Priority.LOW, task.getPriority());
+        assertEquals(deadline, task.getDeadline());
+        assertEquals(reminder, task.getReminderTime());
+        assertTrue(task.getDone());
+        assertEquals(40, task.getProgress());
+        assertFalse(task.isInTrash());
+        assertEquals(3, task.getSubTaskCount());
+        assertEquals(1, task.getDoneSubTaskCount());
+    }
+
+    public void testResolvedIndicesAreFasterThanLookupsPerCell() {
+        TestDatabase.fill(db, 1, TASKS, 0);
+
+        long byName = Long.MAX_VALUE;
+        long byIndex = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            byName = Math.min(byName, mapAll(false));
+            byIndex = Math.min(byIndex, mapAll(true));
+        }
+
+        Log.i(TAG, TASKS + " rows: " + byName + " ms with a lookup per cell, " + byIndex + " ms with resolved indices");
+        // reading the rows dominates both, the mapper must at least not be slower
+        assertTrue(byIndex + " ms > " + byName + " ms", byIndex <= byName + byName / 10);
+    }
+
+    // maps all tasks and returns the time it took in milliseconds
+    private long mapAll(boolean resolved) {
+        Cursor cursor = db.query(TTodoTask.TABLE_NAME, null, null, null, null, null, null);
+        try {
+            ArrayList<TodoTask> tasks = new ArrayList<>(cursor.getCount());
+            long start = SystemClock.elapsedRealtime();
+            if (resolved) {
+                TodoTaskRowMapper mapper = new TodoTaskRowMapper(cursor);
+                while (cursor.moveToNext())
+                    tasks.add(mapper.map());
+            } else {
+                while (cursor.moveToNext())
+                    tasks.add(mapByName(cursor));
+            }
+            long millis = SystemClock.elapsedRealtime() - start;
+            assertEquals(TASKS, tasks.size());
+            assertEquals("task " + (TASKS - 1), tasks.get(TASKS - 1).getName());
+            return millis;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // the mapping as it was done before the mapper existed
+    private static TodoTask mapByName(Cursor cursor) {
+        TodoTask task = new TodoTask();
+        task.setId(cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_ID)));
+        task.setListId(cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_TODO_LIST_ID)));
+        task.setPositionInList(cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_LIST_POSITION)));
+        task.setName(cursor.getString(cursor.getColumnIndex(TTodoTask.COLUMN_NAME)));
+        task.setDescription(cursor.getString(cursor.getColumnIndex(TTodoTask.COLUMN_DESCRIPTION)));
+        task.setPriority(TodoTask.Priority.fromInt(cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_PRIORITY))));
+        task.setDeadline(cursor.getLong(cursor.getColumnIndex(TTodoTask.COLUMN_DEADLINE)));
+        task.setReminderTime(cursor.getLong(cursor.getColumnIndex(TTodoTask.COLUMN_DEADLINE_WARNING_TIME)));
+        task.setDone(cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_DONE)) > 0);
+        task.setProgress(cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_PROGRESS)));
+        task.setInTrash(cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_TRASH)) > 0);
+        task.setSubTaskCounts(cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_NUM_SUBTASKS)),
+                cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_NUM_SUBTASKS_DONE)));
+        task.setUnchanged();
+        return task;
+    }
+}
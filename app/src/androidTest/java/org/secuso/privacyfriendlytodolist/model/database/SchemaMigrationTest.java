@@ -0,0 +1,138 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.database.tables.TSchemaMigration;
+
+/**
+ * Upgrades a database of version 1 with 50,000 tasks to the current version with the migration
+ * scripts and checks the result and the time it takes.
+ */
+public class SchemaMigrationTest extends AndroidTestCase {
+
+    private static final String TAG = SchemaMigrationTest.class.getSimpleName();
+
+    private static final int LISTS = 50;
+    private static final int TASKS_PER_LIST = 1000;
+    private static final int TASKS = LISTS * TASKS_PER_LIST;
+
+    // generous, the upgrade runs while the user waits for the first screen
+    private static final long MAX_MILLIS = 30000;
+
+    // schema of version 1, the lists still had a description and nothing could be put into the bin
+    private static final String VERSION_1[] = {
+            "CREATE TABLE todo_list(_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE, description TEXT);",
+            "CREATE TABLE todo_task(_id INTEGER PRIMARY KEY AUTOINCREMENT, todo_list_id INTEGER NOT NULL, " +
+                    "position_in_todo_list INTEGER NOT NULL, name TEXT NOT NULL, description TEXT NOT NULL, " +
+                    "priority INTEGER NOT NULL DEFAULT 0, deadline DATETIME DEFAULT NULL, done INTEGER NOT NULL DEFAULT 0, " +
+                    "progress INTEGER NOT NULL DEFAULT 0, num_subtasksINTEGER NOT NULL DEFAULT 0, " +
+                    "deadline_warning_time NUMERIC NULL DEFAULT NULL, FOREIGN KEY (todo_list_id) REFERENCES todo_list(_id));",
+            "CREATE TABLE todo_subtask(_id INTEGER PRIMARY KEY AUTOINCREMENT, todo_task_id INTEGER NOT NULL, " +
+                    "title TEXT NOT NULL, done INTEGER, FOREIGN KEY (todo_task_id) REFERENCES todo_task(_id));"
+    };
+
+    private SQLiteDatabase db;
+    private SchemaMigrator migrator;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = SQLiteDatabase.create(null);
+        for (String statement : VERSION_1)
+            db.execSQL(statement);
+        db.setVersion(1);
+        migrator = new SchemaMigrator(getContext().getAssets());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testMigratesLargeDatabaseToCurrentVersion() {
+        fillVersion1(LISTS, TASKS_PER_LIST);
+
+        long start = SystemClock.elapsedRealtime();
+        migrator.migrate(db, 1, DatabaseHelper.DATABASE_VERSION);
+        long millis = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Migration of " + TASKS + " tasks from version 1 to " + DatabaseHelper.DATABASE_VERSION + ": " + millis + " ms");
+
+        assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertEquals(DatabaseHelper.DATABASE_VERSION - 1, count("SELECT COUNT(*) FROM " + TSchemaMigration.TABLE_NAME));
+        assertEquals(TASKS, count("SELECT COUNT(*) FROM todo_task"));
+        // counters of the subtasks, every task has one done and one open subtask
+        assertEquals(2 * TASKS, count("SELECT SUM(num_subtasks) FROM todo_task"));
+        assertEquals(TASKS, count("SELECT SUM(num_subtasks_done) FROM todo_task"));
+        // sparse positions that keep the order of each list
+        assertEquals(0, count("SELECT COUNT(*) FROM todo_task WHERE position_in_todo_list % 1024 != 0"));
+        assertEquals(TASKS_PER_LIST * 1024, count("SELECT MAX(position_in_todo_list) FROM todo_task"));
+        // full-text index and the current queries work on the migrated tables
+        assertEquals(LISTS, DBQueryHandler.searchTasks(db, "task 999").length);
+        assertEquals(LISTS, DBQueryHandler.getAllToDoLists(db).size());
+        assertTrue(millis + " ms", millis < MAX_MILLIS);
+    }
+
+    public void testSkipsStepsThatWereAlreadyApplied() {
+        fillVersion1(2, 3);
+
+        // an upgrade that was interrupted after version 4
+        migrator.migrate(db, 1, 4);
+        assertEquals(4, db.getVersion());
+
+        // repeating a step would fail, for example by adding the same column twice
+        migrator.migrate(db, 1, DatabaseHelper.DATABASE_VERSION);
+
+        assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertEquals(6, count("SELECT COUNT(*) FROM todo_task"));
+    }
+
+    private void fillVersion1(int lists, int tasksPerList) {
+        db.beginTransaction();
+        try {
+            SQLiteStatement list = db.compileStatement("INSERT INTO todo_list (name, description) VALUES (?, '');");
+            SQLiteStatement task = db.compileStatement("INSERT INTO todo_task (todo_list_id, position_in_todo_list, name, description) VALUES (?, ?, ?, '');");
+            SQLiteStatement subTask = db.compileStatement("INSERT INTO todo_subtask (todo_task_id, title, done) VALUES (?, ?, ?);");
+            try {
+                for (int l = 0; l < lists; l++) {
+                    list.bindString(1, "list " + l);
+                    long listId = list.executeInsert();
+                    for (int t = 0; t < tasksPerList; t++) {
+                        task.bindLong(1, listId);
+                        task.bindLong(2, t);
+                        task.bindString(3, "task " + t);
+                        long taskId = task.executeInsert();
+                        for (int s = 0; s < 2; s++) {
+                            subTask.bindLong(1, taskId);
+                            subTask.bindString(2, "subtask " + s);
+                            subTask.bindLong(3, s);
+                            subTask.executeInsert();
+                        }
+                    }
+                }
+            } finally {
+                list.close();
+                task.close();
+                subTask.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private long count(String query) {
+        Cursor cursor = db.rawQuery(query, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
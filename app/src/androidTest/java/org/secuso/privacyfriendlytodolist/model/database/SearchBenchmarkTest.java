@@ -0,0 +1,97 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+/**
+ * Runs the full-text search on a database with 50,000 tasks. Besides the results the test logs
+ * the time per search, so that changes of the index or the query can be compared.
+ */
+public class SearchBenchmarkTest extends AndroidTestCase {
+
+    private static final String TAG = SearchBenchmarkTest.class.getSimpleName();
+
+    private static final int TASKS = 50000;
+    private static final int RUNS = 20;
+
+    // one list of tasks per word, one task in 1000 is in the list of the word with the umlaut
+    private static final String WORDS[] = {"milk", "garden", "invoice", "dentist", "report"};
+    private static final String UMLAUT_WORD = "Ärger";
+    private static final int UMLAUT_TASKS = TASKS / 1000;
+    private static final int TASKS_PER_WORD = (TASKS - UMLAUT_TASKS) / WORDS.length;
+
+    // a search on 50,000 tasks must stay well below this
+    private static final long MAX_MILLIS_PER_SEARCH = 500;
+
+    private static SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        if (db == null)
+            db = createDatabase();
+    }
+
+    private SQLiteDatabase createDatabase() {
+        SQLiteDatabase db = TestDatabase.create(getContext());
+
+        long start = SystemClock.elapsedRealtime();
+        for (String word : WORDS)
+            TestDatabase.fill(db, word, 1, TASKS_PER_WORD, 0);
+        TestDatabase.fill(db, UMLAUT_WORD, 1, UMLAUT_TASKS, 0);
+        Log.i(TAG, TASKS + " tasks inserted in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return db;
+    }
+
+    public void testNonAsciiWordsMatchInAnyCase() {
+        assertEquals(UMLAUT_TASKS, DBQueryHandler.searchTasks(db, "ärger").length);
+        assertEquals(UMLAUT_TASKS, DBQueryHandler.searchTasks(db, "ÄRG").length);
+    }
+
+    public void testWordsMatchFromTheirStart() {
+        assertEquals(TASKS, DBQueryHandler.searchTasks(db, "tas").length);
+        assertEquals(0, DBQueryHandler.searchTasks(db, "ask").length);
+        assertEquals(1, DBQueryHandler.searchTasks(db, "report task " + (TASKS_PER_WORD - 1)).length);
+        assertEquals(WORDS.length + 1, DBQueryHandler.searchTasks(db, "task 0").length);
+    }
+
+    public void testNameMatchesComeFirst() {
+        SQLiteDatabase small = TestDatabase.create(getContext());
+        try {
+            small.execSQL("INSERT INTO " + TTodoList.TABLE_NAME + " (" + TTodoList.COLUMN_ID + ", " + TTodoList.COLUMN_NAME + ") VALUES (1, 'ranking');");
+            String insert = "INSERT INTO " + TTodoTask.TABLE_NAME + " (" + TTodoTask.COLUMN_ID + ", " + TTodoTask.COLUMN_TODO_LIST_ID + ", " +
+                    TTodoTask.COLUMN_LIST_POSITION + ", " + TTodoTask.COLUMN_NAME + ", " + TTodoTask.COLUMN_DESCRIPTION + ") VALUES (?, 1, ?, ?, ?);";
+            small.execSQL(insert, new Object[]{1, 1, "Call the bank", "about the dentist"});
+            small.execSQL(insert, new Object[]{2, 2, "Shopping", "nothing"});
+            small.execSQL(insert, new Object[]{3, 3, "Dentist", "at ten"});
+
+            int ids[] = DBQueryHandler.searchTasks(small, "dentist");
+            assertEquals(2, ids.length);
+            assertEquals(3, ids[0]);
+            assertEquals(1, ids[1]);
+        } finally {
+            small.close();
+        }
+    }
+
+    public void testSearchSpeed() {
+        String queries[] = {"dentist", "ärger", "invoice task 49", "ta"};
+        for (String query : queries) {
+            DBQueryHandler.searchTasks(db, query); // warm up the page cache
+
+            long start = SystemClock.elapsedRealtime();
+            int found = 0;
+            for (int i = 0; i < RUNS; i++)
+                found = DBQueryHandler.searchTasks(db, query).length;
+            long millisPerSearch = (SystemClock.elapsedRealtime() - start) / RUNS;
+
+            Log.i(TAG, "\"" + query + "\": " + found + " tasks in " + millisPerSearch + " ms");
+            assertTrue("\"" + query + "\" took " + millisPerSearch + " ms", millisPerSearch < MAX_MILLIS_PER_SEARCH);
+        }
+    }
+}
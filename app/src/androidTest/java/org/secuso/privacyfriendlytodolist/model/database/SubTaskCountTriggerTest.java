@@ -0,0 +1,197 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TChangeLog;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoSubTask;
+
+import java.util.ArrayList;
+
+/**
+ * Checks the subtask counters of the tasks that the triggers maintain, and that operations on
+ * many subtasks at once do not count and log their task once per subtask.
+ */
+public class SubTaskCountTriggerTest extends AndroidTestCase {
+
+    private static final int TASKS = 3;
+    private static final int SUBTASKS = 4;
+
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = TestDatabase.create(getContext());
+        // every second subtask is done
+        TestDatabase.fill(db, 1, TASKS, SUBTASKS);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testFilledTasksAreCounted() {
+        for (int taskId = 1; taskId <= TASKS; taskId++)
+            assertCounters(taskId, SUBTASKS, SUBTASKS / 2);
+    }
+
+    public void testSubTaskChangesAreCounted() {
+        TodoSubTask open = subTask(1, 0);
+
+        open.setDone(true);
+        DBQueryHandler.saveTodoSubTaskInDb(db, open);
+        assertCounters(1, SUBTASKS, SUBTASKS / 2 + 1);
+
+        DBQueryHandler.putSubtaskInTrash(db, open);
+        assertCounters(1, SUBTASKS - 1, SUBTASKS / 2);
+
+        DBQueryHandler.recoverSubtasks(db, open);
+        assertCounters(1, SUBTASKS, SUBTASKS / 2 + 1);
+
+        DBQueryHandler.deleteTodoSubTask(db, open);
+        assertCounters(1, SUBTASKS - 1, SUBTASKS / 2);
+
+        // the other tasks are not touched
+        assertCounters(2, SUBTASKS, SUBTASKS / 2);
+    }
+
+    public void testSubTaskInTheBinIsNotCounted() {
+        TodoSubTask subTask = subTask(1, 0);
+        DBQueryHandler.putSubtaskInTrash(db, subTask);
+
+        long version = DBQueryHandler.getChangeLogVersion(db);
+        db.execSQL("UPDATE " + TTodoSubTask.TABLE_NAME + " SET " + TTodoSubTask.COLUMN_DONE + " = 1 WHERE " + TTodoSubTask.COLUMN_ID + " = " + subTask.getId() + ";");
+        db.execSQL("INSERT INTO " + TTodoSubTask.TABLE_NAME + " (" + TTodoSubTask.COLUMN_TASK_ID + ", " + TTodoSubTask.COLUMN_TITLE + ", " +
+                TTodoSubTask.COLUMN_TRASH + ") VALUES (1, 'trashed', 1);");
+        DBQueryHandler.deleteTodoSubTask(db, subTask);
+
+        assertCounters(1, SUBTASKS - 1, SUBTASKS / 2);
+        assertEquals(0, taskChanges(version));
+    }
+
+    public void testUnchangedValuesDoNotCountTheTask() {
+        long version = DBQueryHandler.getChangeLogVersion(db);
+
+        // writes the columns the update trigger watches without changing them
+        for (TodoSubTask subTask : DBQueryHandler.getTasksById(db, new int[]{1}).get(0).getSubTasks())
+            DBQueryHandler.saveTodoSubTaskInDb(db, subTask);
+        db.execSQL("UPDATE " + TTodoSubTask.TABLE_NAME + " SET " + TTodoSubTask.COLUMN_DONE + " = " + TTodoSubTask.COLUMN_DONE + ";");
+
+        assertEquals(0, taskChanges(version));
+        assertCounters(1, SUBTASKS, SUBTASKS / 2);
+    }
+
+    public void testTrashAndRecoverTaskCountOnce() {
+        TodoTask task = DBQueryHandler.getTasksById(db, new int[]{1}).get(0);
+
+        long version = DBQueryHandler.getChangeLogVersion(db);
+        DBQueryHandler.putTaskInTrash(db, task);
+        assertCounters(1, 0, 0);
+        assertEquals(1, taskChanges(version));
+
+        version = DBQueryHandler.getChangeLogVersion(db);
+        DBQueryHandler.recoverTasks(db, task);
+        assertCounters(1, SUBTASKS, SUBTASKS / 2);
+        assertEquals(1, taskChanges(version));
+    }
+
+    public void testRecoveredTaskCountsSubTasksChangedInTheBin() {
+        TodoTask task = DBQueryHandler.getTasksById(db, new int[]{1}).get(0);
+        DBQueryHandler.putTaskInTrash(db, task);
+
+        db.execSQL("UPDATE " + TTodoSubTask.TABLE_NAME + " SET " + TTodoSubTask.COLUMN_DONE + " = 1 WHERE " + TTodoSubTask.COLUMN_TASK_ID + " = 1;");
+        assertCounters(1, 0, 0);
+
+        DBQueryHandler.recoverTasks(db, task);
+        assertCounters(1, SUBTASKS, SUBTASKS);
+    }
+
+    public void testLoadedSubTasksAreCountedLikeTheCounters() {
+        TodoSubTask subTask = subTask(1, 0);
+        subTask.setDone(true);
+        DBQueryHandler.saveTodoSubTaskInDb(db, subTask);
+        assertLoadedLikeCounted(1, SUBTASKS);
+
+        DBQueryHandler.putSubtaskInTrash(db, subTask);
+        assertLoadedLikeCounted(1, SUBTASKS - 1);
+
+        DBQueryHandler.recoverSubtasks(db, subTask);
+        assertLoadedLikeCounted(1, SUBTASKS);
+
+        // a task in the bin is loaded with its subtasks, but like the counters it counts none
+        DBQueryHandler.putTaskInTrash(db, DBQueryHandler.getTasksById(db, new int[]{1}).get(0));
+        assertLoadedLikeCounted(1, SUBTASKS);
+        assertCounters(1, 0, 0);
+
+        DBQueryHandler.recoverTasks(db, DBQueryHandler.getTasksById(db, new int[]{1}).get(0));
+        assertLoadedLikeCounted(1, SUBTASKS);
+        assertCounters(1, SUBTASKS, SUBTASKS / 2 + 1);
+    }
+
+    public void testDeleteListCountsEachTaskOnce() {
+        long version = DBQueryHandler.getChangeLogVersion(db);
+
+        DBQueryHandler.deleteTodoList(db, 1);
+
+        assertEquals(TASKS, taskChanges(version));
+        for (int taskId = 1; taskId <= TASKS; taskId++)
+            assertCounters(taskId, 0, 0);
+        assertEquals(TASKS * SUBTASKS, count("SELECT COUNT(*) FROM " + TTodoSubTask.TABLE_NAME + " WHERE " + TTodoSubTask.COLUMN_TRASH + " = 1"));
+    }
+
+    public void testDeleteTaskAndPurgeBinDoNotCountTasks() {
+        long version = DBQueryHandler.getChangeLogVersion(db);
+        DBQueryHandler.deleteTodoTask(db, DBQueryHandler.getTasksById(db, new int[]{1}).get(0));
+        // the deletion of the task itself
+        assertEquals(1, taskChanges(version));
+
+        DBQueryHandler.putTaskInTrash(db, DBQueryHandler.getTasksById(db, new int[]{2}).get(0));
+        version = DBQueryHandler.getChangeLogVersion(db);
+        DBQueryHandler.purgeBin(db);
+        assertEquals(1, taskChanges(version));
+        assertEquals((TASKS - 2) * SUBTASKS, count("SELECT COUNT(*) FROM " + TTodoSubTask.TABLE_NAME));
+    }
+
+    private TodoSubTask subTask(int taskId, int index) {
+        return DBQueryHandler.getTasksById(db, new int[]{taskId}).get(0).getSubTasks().get(index);
+    }
+
+    private void assertLoadedLikeCounted(int taskId, int loadedSubTasks) {
+        TodoTask task = DBQueryHandler.getTasksById(db, new int[]{taskId}).get(0);
+        assertTrue(task.areSubTasksLoaded());
+        assertEquals(loadedSubTasks, task.getSubTasks().size());
+        assertCounters(taskId, task.getSubTaskCount(), task.getDoneSubTaskCount());
+    }
+
+    private void assertCounters(int taskId, int subTasks, int doneSubTasks) {
+        assertEquals("subtasks of task " + taskId, subTasks, count("SELECT num_subtasks FROM todo_task WHERE _id = " + taskId));
+        assertEquals("done subtasks of task " + taskId, doneSubTasks, count("SELECT num_subtasks_done FROM todo_task WHERE _id = " + taskId));
+    }
+
+    // number of change log entries of tasks after the given version
+    private int taskChanges(long version) {
+        int changes = 0;
+        ArrayList<ChangeLogEntry> entries = DBQueryHandler.getChangesSince(db, version);
+        for (ChangeLogEntry entry : entries) {
+            if (entry.getEntity() == TChangeLog.ENTITY_TASK)
+                changes++;
+        }
+        return changes;
+    }
+
+    private long count(String query) {
+        Cursor cursor = db.rawQuery(query, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
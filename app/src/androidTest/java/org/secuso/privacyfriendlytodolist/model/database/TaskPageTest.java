@@ -0,0 +1,83 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Pages through the tasks in every order and checks that each task is delivered exactly once and
+ * in the order of the task comparator, also when deadlines are missing.
+ */
+public class TaskPageTest extends AndroidTestCase {
+
+    private static final int TASKS = 10;
+
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = TestDatabase.create(getContext());
+        // task t has the id t + 1 and a deadline of t days
+        TestDatabase.fill(db, 1, TASKS, 0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testTasksWithoutDeadlineComeLastOnLaterPages() {
+        // NULL is the default of the column, -1 is what the app writes
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_DEADLINE + " = NULL WHERE " + TTodoTask.COLUMN_ID + " IN (3, 6, 9);");
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_DEADLINE + " = -1 WHERE " + TTodoTask.COLUMN_ID + " = 5;");
+
+        ArrayList<TodoTask> tasks = allPages(DBQueryHandler.TaskOrder.DEADLINE, 2);
+
+        assertEquals("[1, 2, 4, 7, 8, 10, 3, 5, 6, 9]", ids(tasks).toString());
+        assertEquals(-1, tasks.get(6).getDeadline());
+    }
+
+    public void testEveryOrderDeliversEachTaskOnce() {
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_DEADLINE + " = NULL WHERE " + TTodoTask.COLUMN_ID + " % 4 = 0;");
+        // equal keys across page boundaries
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_PRIORITY + " = " + TTodoTask.COLUMN_ID + " % 3, " +
+                TTodoTask.COLUMN_LIST_POSITION + " = " + TTodoTask.COLUMN_ID + " % 2;");
+
+        for (DBQueryHandler.TaskOrder order : DBQueryHandler.TaskOrder.values()) {
+            for (int pageSize = 1; pageSize <= TASKS + 1; pageSize++) {
+                ArrayList<TodoTask> tasks = allPages(order, pageSize);
+
+                ArrayList<TodoTask> sorted = new ArrayList<>(tasks);
+                Collections.sort(sorted, new TaskQuery.TaskComparator(order));
+                assertEquals(order + " in pages of " + pageSize, ids(sorted), ids(tasks));
+                assertEquals(order + " in pages of " + pageSize, TASKS, tasks.size());
+            }
+        }
+    }
+
+    private ArrayList<TodoTask> allPages(DBQueryHandler.TaskOrder order, int pageSize) {
+        ArrayList<TodoTask> tasks = new ArrayList<>();
+        String token = null;
+        do {
+            TaskPage page = DBQueryHandler.getTaskPage(db, order, token, pageSize);
+            assertTrue(page.getTasks().size() <= pageSize);
+            tasks.addAll(page.getTasks());
+            token = page.getContinuationToken();
+        } while (token != null);
+        return tasks;
+    }
+
+    private static ArrayList<Integer> ids(ArrayList<TodoTask> tasks) {
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (TodoTask task : tasks)
+            ids.add(task.getId());
+        return ids;
+    }
+}
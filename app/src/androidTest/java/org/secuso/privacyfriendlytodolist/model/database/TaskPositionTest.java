@@ -0,0 +1,148 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import org.secuso.privacyfriendlytodolist.model.BaseTodo;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.Tuple;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.util.ArrayList;
+
+/**
+ * Moves tasks within a list with sparse positions and checks the order, the written rows and when
+ * the list has to be renumbered.
+ */
+public class TaskPositionTest extends AndroidTestCase {
+
+    private static final int TASKS = 12;
+
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = TestDatabase.create(getContext());
+        // TestDatabase numbers the tasks 0, 1, 2, ..., so the first renumbering writes all of them
+        TestDatabase.fill(db, 1, TASKS, 0);
+        assertEquals(TASKS, DBQueryHandler.rebalanceList(db, 1));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testRenumberingKeepsTheOrder() {
+        // equal and negative positions, equal positions are ordered by id
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_LIST_POSITION + " = -5 WHERE " + TTodoTask.COLUMN_ID + " IN (7, 9);");
+        db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_LIST_POSITION + " = 3 WHERE " + TTodoTask.COLUMN_ID + " = 12;");
+        ArrayList<Integer> order = order();
+        assertEquals(Integer.valueOf(7), order.get(0));
+        assertEquals(Integer.valueOf(9), order.get(1));
+        assertEquals(Integer.valueOf(12), order.get(2));
+
+        DBQueryHandler.rebalanceList(db, 1);
+
+        assertEquals(order, order());
+        for (int i = 0; i < TASKS; i++)
+            assertEquals(DBQueryHandler.POSITION_STEP * (i + 1), position(order.get(i)));
+        // nothing left to write
+        assertEquals(0, DBQueryHandler.rebalanceList(db, 1));
+    }
+
+    public void testMoveWritesOnlyThePosition() {
+        TodoTask task = task(1);
+        task.setName("unsaved");
+        task.setChanged();
+        long version = DBQueryHandler.getChangeLogVersion(db);
+
+        Tuple<Integer, Boolean> moved = DBQueryHandler.moveTask(db, task, task(3));
+
+        // in the middle of the gap between task 3 and 4
+        assertEquals(3 * DBQueryHandler.POSITION_STEP + DBQueryHandler.POSITION_STEP / 2, moved.getLeft().intValue());
+        assertFalse(moved.getRight());
+        assertEquals(moved.getLeft().intValue(), task.getListPosition());
+        assertEquals(moved.getLeft().intValue(), position(1));
+        assertEquals("[2, 3, 1, 4, 5, 6, 7, 8, 9, 10, 11, 12]", order().toString());
+
+        // the name was not written and is still to be saved
+        assertEquals("task 0", task(1).getName());
+        assertEquals(BaseTodo.FIELD_NAME, task.getDirtyFields());
+        assertEquals(DBQueryHandler.ObjectStates.UPDATE_DB, task.getDBState());
+        // no other task was written
+        assertEquals(1, DBQueryHandler.getChangesSince(db, version).size());
+    }
+
+    public void testMoveToTopAndBottom() {
+        DBQueryHandler.moveTask(db, task(5), null);
+        DBQueryHandler.moveTask(db, task(2), task(12));
+
+        assertEquals(0, position(5));
+        assertEquals(13 * DBQueryHandler.POSITION_STEP, position(2));
+        assertEquals("[5, 1, 3, 4, 6, 7, 8, 9, 10, 11, 12, 2]", order().toString());
+    }
+
+    public void testListIsRenumberedWhenTheGapIsUsedUp() {
+        ArrayList<Integer> expected = order();
+        int first = -1;
+
+        // every task is moved right behind task 1, which halves the gap in front of the last one
+        for (int id = TASKS; id >= 2; id--) {
+            long version = DBQueryHandler.getChangeLogVersion(db);
+            Tuple<Integer, Boolean> moved = DBQueryHandler.moveTask(db, task(id), task(1));
+            int written = DBQueryHandler.getChangesSince(db, version).size();
+
+            expected.remove(Integer.valueOf(id));
+            expected.add(1, id);
+            assertEquals(expected, order());
+
+            int move = TASKS - id + 1;
+            if (moved.getRight() && first == -1)
+                first = move;
+            if (move <= 10) {
+                // gaps of 1024, 512, ..., 2 before the move, so only the moved task is written
+                assertEquals("move " + move, 1, written);
+            } else {
+                // a gap of 1 is used up, the list was renumbered before the task was placed
+                assertTrue("move " + move, written > 1);
+                assertEquals(DBQueryHandler.POSITION_STEP + DBQueryHandler.POSITION_STEP / 2, moved.getLeft().intValue());
+            }
+        }
+
+        // 1024 / 2^6 is the first gap whose half is less than MIN_GAP
+        assertEquals(7, first);
+    }
+
+    private TodoTask task(int id) {
+        return DBQueryHandler.getTasksById(db, new int[]{id}).get(0);
+    }
+
+    private long position(int taskId) {
+        Cursor cursor = db.rawQuery("SELECT " + TTodoTask.COLUMN_LIST_POSITION + " FROM " + TTodoTask.TABLE_NAME +
+                " WHERE " + TTodoTask.COLUMN_ID + " = " + taskId + ";", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // task ids of the list in the order in which they are shown
+    private ArrayList<Integer> order() {
+        ArrayList<Integer> ids = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + TTodoTask.COLUMN_ID + " FROM " + TTodoTask.TABLE_NAME +
+                " ORDER BY " + TTodoTask.COLUMN_LIST_POSITION + ", " + TTodoTask.COLUMN_ID + ";", null);
+        try {
+            while (cursor.moveToNext())
+                ids.add(cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+}
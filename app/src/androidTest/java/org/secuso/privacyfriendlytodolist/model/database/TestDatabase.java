@@ -0,0 +1,115 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
+
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.util.ArrayList;
+
+/**
+ * In-memory databases with the current schema and generated content for the database tests.
+ */
+final class TestDatabase {
+
+    private TestDatabase() {
+    }
+
+    static SQLiteDatabase create(Context context) {
+        return create(context, null);
+    }
+
+    static SQLiteDatabase create(Context context, SQLiteDatabase.CursorFactory factory) {
+        SQLiteDatabase db = SQLiteDatabase.create(factory);
+        DatabaseHelper.getInstance(context).createAll(db);
+        return db;
+    }
+
+    // an in-memory database for classes that open their database themselves, like TodoRepository
+    static SQLiteOpenHelper createHelper(final Context context) {
+        return new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                DatabaseHelper.getInstance(context).createAll(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+    }
+
+    /**
+     * Inserts lists with tasks and subtasks in one transaction. Task t of a list is named
+     * "task t", its deadline is t days after the epoch and every second subtask is done.
+     */
+    static void fill(SQLiteDatabase db, int lists, int tasksPerList, int subTasksPerTask) {
+        fill(db, null, lists, tasksPerList, subTasksPerTask);
+    }
+
+    /**
+     * Like {@link #fill(SQLiteDatabase, int, int, int)}, but all names start with the given word,
+     * for example "word task t". Filling a database with several words keeps the list names unique.
+     */
+    static void fill(SQLiteDatabase db, String word, int lists, int tasksPerList, int subTasksPerTask) {
+        String prefix = word == null ? "" : word + " ";
+        db.beginTransaction();
+        try {
+            SQLiteStatement list = db.compileStatement("INSERT INTO " + TTodoList.TABLE_NAME + " (" + TTodoList.COLUMN_NAME + ") VALUES (?);");
+            SQLiteStatement task = db.compileStatement("INSERT INTO " + TTodoTask.TABLE_NAME + " (" + TTodoTask.COLUMN_TODO_LIST_ID + ", " +
+                    TTodoTask.COLUMN_LIST_POSITION + ", " + TTodoTask.COLUMN_NAME + ", " + TTodoTask.COLUMN_DESCRIPTION + ", " +
+                    TTodoTask.COLUMN_DEADLINE + ") VALUES (?, ?, ?, '', ?);");
+            SQLiteStatement subTask = db.compileStatement("INSERT INTO " + TTodoSubTask.TABLE_NAME + " (" + TTodoSubTask.COLUMN_TASK_ID + ", " +
+                    TTodoSubTask.COLUMN_TITLE + ", " + TTodoSubTask.COLUMN_DONE + ") VALUES (?, ?, ?);");
+            try {
+                for (int l = 0; l < lists; l++) {
+                    list.bindString(1, prefix + "list " + l);
+                    long listId = list.executeInsert();
+                    for (int t = 0; t < tasksPerList; t++) {
+                        task.bindLong(1, listId);
+                        task.bindLong(2, t);
+                        task.bindString(3, prefix + "task " + t);
+                        task.bindLong(4, t * 24L * 60 * 60);
+                        long taskId = task.executeInsert();
+                        for (int s = 0; s < subTasksPerTask; s++) {
+                            subTask.bindLong(1, taskId);
+                            subTask.bindString(2, prefix + "subtask " + s);
+                            subTask.bindLong(3, s % 2);
+                            subTask.executeInsert();
+                        }
+                    }
+                }
+            } finally {
+                list.close();
+                task.close();
+                subTask.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // remembers the SQL of every query that created a cursor
+    static class QueryRecorder implements SQLiteDatabase.CursorFactory {
+
+        private static final String PREFIX = "SQLiteQuery: ";
+
+        final ArrayList<String> queries = new ArrayList<>();
+
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
+            String sql = query.toString();
+            queries.add(sql.startsWith(PREFIX) ? sql.substring(PREFIX.length()) : sql);
+            return new SQLiteCursor(masterQuery, editTable, query);
+        }
+    }
+}
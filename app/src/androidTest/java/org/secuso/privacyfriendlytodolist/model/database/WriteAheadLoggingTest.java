@@ -0,0 +1,174 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs one writer and several reader threads against a database file with 20,000 tasks in
+ * write-ahead logging mode. Readers must not wait for an open write transaction and must only see
+ * committed data. The throughput of both sides is logged.
+ */
+public class WriteAheadLoggingTest extends AndroidTestCase {
+
+    private static final String TAG = WriteAheadLoggingTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "wal-test.db";
+    private static final int LISTS = 20;
+    private static final int TASKS_PER_LIST = 1000;
+    private static final int READERS = 3;
+
+    // time the throughput test runs
+    private static final long DURATION_MILLIS = 3000;
+
+    // readers that are blocked by the writer would run into this
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private File file;
+    private SQLiteDatabase db;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = getContext().getDatabasePath(DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase.deleteDatabase(file);
+
+        db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.CREATE_IF_NECESSARY);
+        assertTrue(db.enableWriteAheadLogging());
+        DatabaseHelper.getInstance(getContext()).createAll(db);
+        TestDatabase.fill(db, LISTS, TASKS_PER_LIST, 0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        SQLiteDatabase.deleteDatabase(file);
+        super.tearDown();
+    }
+
+    public void testReadersDoNotWaitForAnOpenWriteTransaction() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch readersDone = new CountDownLatch(READERS);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                db.beginTransaction();
+                try {
+                    db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_NAME + " = 'changed';");
+                    writing.countDown();
+                    // the transaction stays open until all readers are done or the test gave up
+                    readersDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    db.setTransactionSuccessful();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    writing.countDown();
+                    db.endTransaction();
+                }
+            }
+        });
+        writer.start();
+        assertTrue(writing.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < READERS; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ArrayList<TodoTask> tasks = DBQueryHandler.getAllToDoTasks(db);
+                        assertEquals(LISTS * TASKS_PER_LIST, tasks.size());
+                        for (TodoTask task : tasks)
+                            assertTrue(task.getName(), task.getName().startsWith("task "));
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        readersDone.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        boolean finished = readersDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long millis = SystemClock.elapsedRealtime() - start;
+        writer.join();
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertTrue("readers waited for the writer", finished);
+        Log.i(TAG, READERS + " readers loaded " + LISTS * TASKS_PER_LIST + " tasks each in " + millis + " ms during a write transaction");
+
+        // the update is visible once it is committed
+        assertEquals("changed", DBQueryHandler.getTasksById(db, new int[]{1}).get(0).getName());
+    }
+
+    public void testThroughputWithOneWriterAndSeveralReaders() throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+        final AtomicInteger writes = new AtomicInteger();
+        final long end = SystemClock.elapsedRealtime() + DURATION_MILLIS;
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; SystemClock.elapsedRealtime() < end; i++) {
+                        db.beginTransaction();
+                        try {
+                            db.execSQL("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_PROGRESS + " = ? WHERE " +
+                                    TTodoTask.COLUMN_ID + " = ?;", new Object[]{i % 100, 1 + i % (LISTS * TASKS_PER_LIST)});
+                            db.setTransactionSuccessful();
+                        } finally {
+                            db.endTransaction();
+                        }
+                        writes.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        }));
+        for (int r = 0; r < READERS; r++) {
+            final int reader = r;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (SystemClock.elapsedRealtime() < end) {
+                            // the reminder scan and the widget reload of one list
+                            DBQueryHandler.getNextDueTask(db, 0);
+                            DBQueryHandler.getTaskSummariesOfList(db, "list " + reader);
+                            reads.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join(DURATION_MILLIS + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        Log.i(TAG, "in " + DURATION_MILLIS + " ms: " + writes.get() + " write transactions, " + reads.get() + " reads by " + READERS + " readers");
+        assertTrue(writes.get() > 0);
+        assertTrue(reads.get() > 0);
+    }
+}
@@ -0,0 +1,10 @@
+-- indexes for the predicates used by DBQueryHandler
+
+-- tasks of a list
+CREATE INDEX IF NOT EXISTS idx_todo_task_list ON todo_task (todo_list_id, in_trash);
+
+-- all tasks, bin and reminder queries
+CREATE INDEX IF NOT EXISTS idx_todo_task_state ON todo_task (in_trash, done, deadline_warning_time);
+
+-- subtasks of a task
+CREATE INDEX IF NOT EXISTS idx_todo_subtask_task ON todo_subtask (todo_task_id);
@@ -0,0 +1,13 @@
+-- full-text search index over tasks and their subtasks (see TTodoTaskSearch)
+
+CREATE VIRTUAL TABLE todo_task_search USING fts4(name, description, subtasks);
+
+INSERT INTO todo_task_search (docid, name, description, subtasks) SELECT t._id, t.name, t.description, (SELECT group_concat(title, ' ') FROM todo_subtask WHERE todo_task_id = t._id) FROM todo_task t;
+
+-- triggers keeping the index up to date
+CREATE TRIGGER IF NOT EXISTS trg_todo_task_search_insert AFTER INSERT ON todo_task BEGIN INSERT INTO todo_task_search (docid, name, description, subtasks) VALUES (new._id, new.name, new.description, (SELECT group_concat(title, ' ') FROM todo_subtask WHERE todo_task_id = new._id)); END;
+CREATE TRIGGER IF NOT EXISTS trg_todo_task_search_update AFTER UPDATE OF name, description ON todo_task BEGIN UPDATE todo_task_search SET name = new.name, description = new.description WHERE docid = new._id; END;
+CREATE TRIGGER IF NOT EXISTS trg_todo_task_search_delete AFTER DELETE ON todo_task BEGIN DELETE FROM todo_task_search WHERE docid = old._id; END;
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_search_insert AFTER INSERT ON todo_subtask BEGIN UPDATE todo_task_search SET subtasks = (SELECT group_concat(title, ' ') FROM todo_subtask WHERE todo_task_id = new.todo_task_id) WHERE docid = new.todo_task_id; END;
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_search_update AFTER UPDATE OF title, todo_task_id ON todo_subtask BEGIN UPDATE todo_task_search SET subtasks = (SELECT group_concat(title, ' ') FROM todo_subtask WHERE todo_task_id = old.todo_task_id) WHERE docid = old.todo_task_id; UPDATE todo_task_search SET subtasks = (SELECT group_concat(title, ' ') FROM todo_subtask WHERE todo_task_id = new.todo_task_id) WHERE docid = new.todo_task_id; END;
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_search_delete AFTER DELETE ON todo_subtask BEGIN UPDATE todo_task_search SET subtasks = (SELECT group_concat(title, ' ') FROM todo_subtask WHERE todo_task_id = old.todo_task_id) WHERE docid = old.todo_task_id; END;
@@ -0,0 +1,5 @@
+-- time at which a task was put into the bin, used to purge the bin after a retention period
+-- tasks that are already in the bin count as trashed at the time of the upgrade
+
+ALTER TABLE todo_task ADD COLUMN trashed_at INTEGER NULL DEFAULT NULL;
+UPDATE todo_task SET trashed_at = CAST(strftime('%s', 'now') AS INTEGER) WHERE in_trash > 0;
@@ -0,0 +1,55 @@
+-- change log of lists, tasks and subtasks (see TChangeLog)
+-- entity: 1 = list, 2 = task, 3 = subtask
+-- operation: 1 = insert, 2 = update, 3 = delete
+
+CREATE TABLE IF NOT EXISTS change_log (
+    version INTEGER PRIMARY KEY AUTOINCREMENT,
+    entity INTEGER NOT NULL,
+    entity_id INTEGER NOT NULL,
+    operation INTEGER NOT NULL
+);
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_list_log_insert AFTER INSERT ON todo_list
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (1, new._id, 1);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_list_log_update AFTER UPDATE ON todo_list
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (1, new._id, 2);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_list_log_delete AFTER DELETE ON todo_list
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (1, old._id, 3);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_task_log_insert AFTER INSERT ON todo_task
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (2, new._id, 1);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_task_log_update AFTER UPDATE ON todo_task
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (2, new._id, 2);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_task_log_delete AFTER DELETE ON todo_task
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (2, old._id, 3);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_log_insert AFTER INSERT ON todo_subtask
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (3, new._id, 1);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_log_update AFTER UPDATE ON todo_subtask
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (3, new._id, 2);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_log_delete AFTER DELETE ON todo_subtask
+BEGIN
+    INSERT INTO change_log (entity, entity_id, operation) VALUES (3, old._id, 3);
+END;
@@ -0,0 +1,30 @@
+-- tasks are ordered by sparse positions with gaps of 1024 (see DBQueryHandler.POSITION_STEP), so a
+-- task can be moved by rewriting its own row only
+-- the existing order of each list (position, then id) is kept
+
+CREATE INDEX IF NOT EXISTS idx_todo_task_position ON todo_task (todo_list_id, position_in_todo_list);
+
+CREATE TEMP TABLE task_order (
+    rank INTEGER PRIMARY KEY,
+    task_id INTEGER NOT NULL,
+    list_id INTEGER NOT NULL
+);
+
+INSERT INTO task_order (task_id, list_id)
+    SELECT _id, todo_list_id FROM todo_task ORDER BY todo_list_id, position_in_todo_list, _id;
+
+CREATE INDEX idx_task_order_task ON task_order (task_id);
+
+CREATE TEMP TABLE list_start (
+    list_id INTEGER PRIMARY KEY,
+    first_rank INTEGER NOT NULL
+);
+
+INSERT INTO list_start (list_id, first_rank)
+    SELECT list_id, MIN(rank) FROM task_order GROUP BY list_id;
+
+UPDATE todo_task SET position_in_todo_list = 1024 * (1 +
+    (SELECT o.rank - s.first_rank FROM task_order o, list_start s WHERE o.task_id = todo_task._id AND s.list_id = o.list_id));
+
+DROP TABLE task_order;
+DROP TABLE list_start;
@@ -0,0 +1,39 @@
+-- counters of the subtasks outside of the bin per task, maintained by triggers on todo_subtask
+-- (see TTodoTask.SUBTASK_COUNT_TRIGGERS_CREATE)
+-- the former column num_subtasks was declared as "num_subtasksINTEGER" by mistake and never
+-- written, it stays unused
+
+ALTER TABLE todo_task ADD COLUMN num_subtasks INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE todo_task ADD COLUMN num_subtasks_done INTEGER NOT NULL DEFAULT 0;
+
+UPDATE todo_task SET
+    num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = todo_task._id AND s.in_trash = 0),
+    num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = todo_task._id AND s.in_trash = 0 AND s.done > 0);
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_insert AFTER INSERT ON todo_subtask
+BEGIN
+    UPDATE todo_task SET
+        num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = new.todo_task_id AND s.in_trash = 0),
+        num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = new.todo_task_id AND s.in_trash = 0 AND s.done > 0)
+    WHERE _id = new.todo_task_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_update AFTER UPDATE OF done, in_trash, todo_task_id ON todo_subtask
+BEGIN
+    UPDATE todo_task SET
+        num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = new.todo_task_id AND s.in_trash = 0),
+        num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = new.todo_task_id AND s.in_trash = 0 AND s.done > 0)
+    WHERE _id = new.todo_task_id;
+    UPDATE todo_task SET
+        num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = old.todo_task_id AND s.in_trash = 0),
+        num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = old.todo_task_id AND s.in_trash = 0 AND s.done > 0)
+    WHERE _id = old.todo_task_id AND old.todo_task_id != new.todo_task_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_delete AFTER DELETE ON todo_subtask
+BEGIN
+    UPDATE todo_task SET
+        num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = old.todo_task_id AND s.in_trash = 0),
+        num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = old.todo_task_id AND s.in_trash = 0 AND s.done > 0)
+    WHERE _id = old.todo_task_id;
+END;
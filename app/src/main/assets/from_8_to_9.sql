@@ -0,0 +1,40 @@
+-- the subtask counters are only counted again when a subtask can change them, and never for a
+-- task in the bin (see TTodoTask.SUBTASK_COUNT_TRIGGERS_CREATE)
+-- tasks in the bin keep counters of zero, their subtasks are in the bin as well
+
+DROP TRIGGER IF EXISTS trg_todo_subtask_count_insert;
+DROP TRIGGER IF EXISTS trg_todo_subtask_count_update;
+DROP TRIGGER IF EXISTS trg_todo_subtask_count_delete;
+
+UPDATE todo_task SET num_subtasks = 0, num_subtasks_done = 0 WHERE in_trash = 1 AND (num_subtasks != 0 OR num_subtasks_done != 0);
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_insert AFTER INSERT ON todo_subtask
+WHEN new.in_trash = 0
+BEGIN
+    UPDATE todo_task SET
+        num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = new.todo_task_id AND s.in_trash = 0),
+        num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = new.todo_task_id AND s.in_trash = 0 AND s.done > 0)
+    WHERE _id = new.todo_task_id AND in_trash = 0;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_update AFTER UPDATE OF done, in_trash, todo_task_id ON todo_subtask
+WHEN old.in_trash IS NOT new.in_trash OR old.todo_task_id IS NOT new.todo_task_id OR (IFNULL(old.done, 0) > 0) != (IFNULL(new.done, 0) > 0)
+BEGIN
+    UPDATE todo_task SET
+        num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = new.todo_task_id AND s.in_trash = 0),
+        num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = new.todo_task_id AND s.in_trash = 0 AND s.done > 0)
+    WHERE _id = new.todo_task_id AND in_trash = 0;
+    UPDATE todo_task SET
+        num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = old.todo_task_id AND s.in_trash = 0),
+        num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = old.todo_task_id AND s.in_trash = 0 AND s.done > 0)
+    WHERE _id = old.todo_task_id AND in_trash = 0 AND old.todo_task_id != new.todo_task_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_delete AFTER DELETE ON todo_subtask
+WHEN old.in_trash = 0
+BEGIN
+    UPDATE todo_task SET
+        num_subtasks = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = old.todo_task_id AND s.in_trash = 0),
+        num_subtasks_done = (SELECT COUNT(*) FROM todo_subtask s WHERE s.todo_task_id = old.todo_task_id AND s.in_trash = 0 AND s.done > 0)
+    WHERE _id = old.todo_task_id AND in_trash = 0;
+END;
@@ -0,0 +1,44 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist;
+
+import android.app.Application;
+import android.os.StrictMode;
+
+/**
+ * Debug builds report disk access on the main thread. Database work belongs on the
+ * {@link org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor}; every violation is
+ * logged. Violations do not stop the app: the preferences, the reminder service and the snapshot
+ * of the start screen are still read on the main thread.
+ */
+
+public class TodoListApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+    }
+}
@@ -21,15 +21,46 @@ import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
 
 public abstract class BaseTodo {
 
+    // every subclass stores its name in the first column
+    public static final int FIELD_NAME = 1;
+
     protected int id;
 
     protected String name, description;
     protected DBQueryHandler.ObjectStates dbState;
 
+    // one bit per field that was set to a new value since the object was loaded or saved, see the
+    // FIELD_ constants. An update writes only these columns.
+    protected int dirtyFields = 0;
+
     public BaseTodo() {
         dbState = DBQueryHandler.ObjectStates.NO_DB_ACTION;
     }
 
+    // copies the values and the database state of other
+    protected BaseTodo(BaseTodo other) {
+        id = other.id;
+        name = other.name;
+        description = other.description;
+        dbState = other.dbState;
+        dirtyFields = other.dirtyFields;
+    }
+
+    // Takes over what saving a copy of this object wrote into the copy: the id and the state after
+    // the write. Subclasses add the values the database assigns on insert.
+    public void applySaved(BaseTodo saved) {
+        id = saved.id;
+        dbState = saved.dbState;
+        dirtyFields = saved.dirtyFields;
+    }
+
+    // Takes over the values of a newer state of this object that was loaded from the database.
+    // Nothing is marked as changed, the database state stays as it is.
+    public void applyLoaded(BaseTodo loaded) {
+        name = loaded.name;
+        description = loaded.description;
+    }
+
     public DBQueryHandler.ObjectStates getDBState() {
         return dbState;
     }
@@ -45,9 +76,31 @@ public abstract class BaseTodo {
 
     public void setUnchanged() {
         this.dbState = DBQueryHandler.ObjectStates.NO_DB_ACTION;
+        this.dirtyFields = 0;
+    }
+
+    // the given fields were written on their own, the other changes are still to be saved
+    public void setSaved(int fields) {
+        dirtyFields &= ~fields;
+        if (dirtyFields == 0 && dbState == DBQueryHandler.ObjectStates.UPDATE_DB)
+            dbState = DBQueryHandler.ObjectStates.NO_DB_ACTION;
+    }
+
+    public int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    protected void setDirty(int field) {
+        dirtyFields |= field;
+    }
+
+    protected static boolean differs(Object oldValue, Object newValue) {
+        return oldValue == null ? newValue != null : !oldValue.equals(newValue);
     }
 
     public void setName(String name) {
+        if (differs(this.name, name))
+            setDirty(FIELD_NAME);
         this.name = name;
     }
 
@@ -32,6 +32,7 @@ import org.secuso.privacyfriendlytodolist.model.TodoTask.DeadlineColors;
 import org.secuso.privacyfriendlytodolist.model.TodoTask.Priority;
 
 import java.util.Calendar;
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 public class Helper {
@@ -54,6 +55,12 @@ public class Helper {
         return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
     }
 
+    // returns the number of the day since 01.01.1970 on which the timestamp (in seconds) lies in the local time zone
+    public static int getLocalEpochDay(long time) {
+        long millis = TimeUnit.SECONDS.toMillis(time);
+        return (int) TimeUnit.MILLISECONDS.toDays(millis + TimeZone.getDefault().getOffset(millis));
+    }
+
     public static int getDeadlineColor(Context context, DeadlineColors color) {
         switch (color) {
             case RED:
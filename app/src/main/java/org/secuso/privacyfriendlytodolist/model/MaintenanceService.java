@@ -0,0 +1,135 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+import org.secuso.privacyfriendlytodolist.view.Settings;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This service keeps the database small in the background:
+ *
+ * - Tasks that have been in the bin for longer than the retention period chosen in the settings
+ *   are removed together with their subtasks. This is done in batches, so that every transaction
+ *   stays short and the app can keep writing in between.
+ * - The database is switched to incremental auto vacuum once. Afterwards the pages freed by the
+ *   purge are given back to the file system a few at a time.
+ *
+ * The service runs at most once a day unless it is started with FORCE_RUN set.
+ *
+ * Started with REBALANCE_LIST_ID, it only renumbers the positions of that list (see
+ * DBQueryHandler#moveTask), which is done right away.
+ */
+
+public class MaintenanceService extends IntentService {
+
+    private static final String TAG = MaintenanceService.class.getSimpleName();
+
+    public static final String FORCE_RUN = "FORCE_RUN";
+    public static final String REBALANCE_LIST_ID = "REBALANCE_LIST_ID";
+
+    private static final String LAST_RUN_KEY = "maintenance_last_run"; // absolut value in seconds
+    private static final long RUN_INTERVAL = TimeUnit.DAYS.toSeconds(1);
+
+    private static final int PURGE_BATCH_SIZE = 100;
+    private static final int VACUUM_PAGES_PER_STEP = 64;
+
+    public MaintenanceService() {
+        super(TAG);
+    }
+
+    // starts the service if it did not run within the last day
+    public static void startIfDue(Context context) {
+        long lastRun = PreferenceManager.getDefaultSharedPreferences(context).getLong(LAST_RUN_KEY, 0);
+        if (Helper.getCurrentTimestamp() - lastRun >= RUN_INTERVAL) {
+            context.startService(new Intent(context, MaintenanceService.class));
+        }
+    }
+
+    // renumbers the positions of the list in the background
+    public static void rebalanceList(Context context, int listId) {
+        Intent intent = new Intent(context, MaintenanceService.class);
+        intent.putExtra(REBALANCE_LIST_ID, listId);
+        context.startService(intent);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent != null && intent.hasExtra(REBALANCE_LIST_ID)) {
+            int listId = intent.getIntExtra(REBALANCE_LIST_ID, 0);
+            DBQueryHandler.rebalanceList(DatabaseHelper.getInstance(this).getWritableDatabase(), listId);
+            return;
+        }
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        long now = Helper.getCurrentTimestamp();
+
+        boolean forced = intent != null && intent.getBooleanExtra(FORCE_RUN, false);
+        if (!forced && now - prefs.getLong(LAST_RUN_KEY, 0) < RUN_INTERVAL) {
+            Log.i(TAG, "Maintenance already done within the last day");
+            return;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        DatabaseHelper dbHelper = DatabaseHelper.getInstance(this);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        int removedTasks = 0, removedSubTasks = 0;
+        long retentionDays = getRetentionDays(prefs);
+        if (retentionDays > 0) {
+            long trashedBefore = now - TimeUnit.DAYS.toSeconds(retentionDays);
+            Tuple<Integer, Integer> removed;
+            do {
+                removed = DBQueryHandler.purgeBin(db, trashedBefore, PURGE_BATCH_SIZE);
+                removedTasks += removed.getLeft();
+                removedSubTasks += removed.getRight();
+            } while (removed.getLeft() == PURGE_BATCH_SIZE);
+        }
+
+        dbHelper.enableIncrementalVacuum(db);
+        long reclaimedBytes = dbHelper.reclaimFreePages(db, VACUUM_PAGES_PER_STEP);
+
+        prefs.edit().putLong(LAST_RUN_KEY, now).apply();
+
+        Log.i(TAG, "Maintenance finished in " + (SystemClock.elapsedRealtime() - start) + " ms: " +
+                removedTasks + " tasks and " + removedSubTasks + " subtasks purged from the bin, " +
+                reclaimedBytes + " bytes reclaimed");
+    }
+
+    // 0 keeps the tasks in the bin until it is cleared by the user
+    private static long getRetentionDays(SharedPreferences prefs) {
+        try {
+            return Long.parseLong(prefs.getString(Settings.TRASH_RETENTION_KEY, "0"));
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "Invalid trash retention period", e);
+            return 0;
+        }
+    }
+}
@@ -41,6 +41,7 @@ import android.util.Log;
 
 import org.secuso.privacyfriendlytodolist.R;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
 import org.secuso.privacyfriendlytodolist.view.MainActivity;
 import org.secuso.privacyfriendlytodolist.view.TodoTasksFragment;
@@ -49,6 +50,7 @@ import java.sql.Time;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 
@@ -123,9 +125,18 @@ public class ReminderService extends Service {
             handleAlarm(task);
 
             // get next alarm
-            TodoTask nextDueTask = DBQueryHandler.getNextDueTask(dbHelper.getReadableDatabase(), Helper.getCurrentTimestamp());
-            if(nextDueTask != null)
-                setAlarmForTask(nextDueTask);
+            DatabaseExecutor.getInstance().query(new Callable<TodoTask>() {
+                @Override
+                public TodoTask call() {
+                    return DBQueryHandler.getNextDueTask(dbHelper.getReadableDatabase(), Helper.getCurrentTimestamp());
+                }
+            }, new DatabaseExecutor.Callback<TodoTask>() {
+                @Override
+                public void onResult(TodoTask nextDueTask) {
+                    if(nextDueTask != null)
+                        setAlarmForTask(nextDueTask);
+                }
+            });
         } else {
 
             //  service was started for the first time
@@ -150,19 +161,29 @@ public class ReminderService extends Service {
     }
 
 
+    // The service runs on the main thread and may be the first to open the database, which then
+    // also runs pending migrations. The tasks are therefore read on a thread of the executor.
     public void reloadAlarmsFromDB() {
         mNotificationManager.cancelAll(); // cancel all alarms
 
-        ArrayList<TodoTask> tasksToRemind = DBQueryHandler.getTasksToRemind(dbHelper.getReadableDatabase(), Helper.getCurrentTimestamp(), null);
-
-        // set alarms
-        for (TodoTask currentTask : tasksToRemind) {
-            setAlarmForTask(currentTask);
-        }
-
-        if(tasksToRemind.size() == 0) {
-            Log.i(TAG, "No alarms set.");
-        }
+        DatabaseExecutor.getInstance().query(new Callable<ArrayList<TodoTask>>() {
+            @Override
+            public ArrayList<TodoTask> call() {
+                return DBQueryHandler.getTasksToRemind(dbHelper.getReadableDatabase(), Helper.getCurrentTimestamp(), null);
+            }
+        }, new DatabaseExecutor.Callback<ArrayList<TodoTask>>() {
+            @Override
+            public void onResult(ArrayList<TodoTask> tasksToRemind) {
+                // set alarms
+                for (TodoTask currentTask : tasksToRemind) {
+                    setAlarmForTask(currentTask);
+                }
+
+                if(tasksToRemind.size() == 0) {
+                    Log.i(TAG, "No alarms set.");
+                }
+            }
+        });
     }
 
     private void setAlarmForTask(TodoTask task) {
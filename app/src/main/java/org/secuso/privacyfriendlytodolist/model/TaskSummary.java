@@ -0,0 +1,64 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model;
+
+/**
+ * Read-only view of a task that carries only what overview screens display (widget, calendar).
+ * It is loaded without description and subtasks, see DBQueryHandler#getTaskSummaries.
+ */
+
+public class TaskSummary {
+
+    private final int id;
+    private final String name;
+    private final boolean done;
+    private final long deadline;
+    private final int listId;
+
+    public TaskSummary(int id, String name, boolean done, long deadline, int listId) {
+        this.id = id;
+        this.name = name;
+        this.done = done;
+        this.deadline = deadline;
+        this.listId = listId;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean getDone() {
+        return done;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public boolean hasDeadline() {
+        return deadline > 0;
+    }
+
+    public int getListId() {
+        return listId;
+    }
+}
@@ -49,6 +49,11 @@ public class TodoList extends BaseTodo implements Parcelable{
         super();
     }
 
+    // copies the values and the database state of other, but not its tasks
+    public TodoList(TodoList other) {
+        super(other);
+    }
+
     public boolean isDummyList() {
         return id == DUMMY_LIST_ID;
     }
@@ -0,0 +1,82 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model;
+
+/**
+ * Figures of a to-do list shown in the list overview. They are aggregated by the database (see
+ * DBQueryHandler#getTodoListSummaries), so the tasks of the list do not have to be loaded.
+ */
+
+public class TodoListSummary {
+
+    private final int id;
+    private final String name;
+    private final int size;
+    private final int doneTodos;
+    private final long nextDeadline;
+    private final int overdueTodos;
+    private final int dueSoonTodos;
+
+    public TodoListSummary(int id, String name, int size, int doneTodos, long nextDeadline, int overdueTodos, int dueSoonTodos) {
+        this.id = id;
+        this.name = name;
+        this.size = size;
+        this.doneTodos = doneTodos;
+        this.nextDeadline = nextDeadline;
+        this.overdueTodos = overdueTodos;
+        this.dueSoonTodos = dueSoonTodos;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getDoneTodos() {
+        return doneTodos;
+    }
+
+    // earliest deadline of all open tasks or -1 if there is none (see TodoList#getNextDeadline)
+    public long getNextDeadline() {
+        return nextDeadline;
+    }
+
+    public int getOverdueTodos() {
+        return overdueTodos;
+    }
+
+    public int getDueSoonTodos() {
+        return dueSoonTodos;
+    }
+
+    // same rules as TodoList#getDeadlineColor
+    public TodoTask.DeadlineColors getDeadlineColor() {
+        if (overdueTodos > 0)
+            return TodoTask.DeadlineColors.RED;
+        if (dueSoonTodos > 0)
+            return TodoTask.DeadlineColors.ORANGE;
+        return TodoTask.DeadlineColors.BLUE;
+    }
+}
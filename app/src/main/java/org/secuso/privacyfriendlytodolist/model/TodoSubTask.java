@@ -28,6 +28,11 @@ import android.os.Parcelable;
 
 public class TodoSubTask extends BaseTodo implements Parcelable {
 
+    // dirty bits in the order of the subtask columns
+    public static final int FIELD_DONE = 1 << 1;
+    public static final int FIELD_TASK_ID = 1 << 2;
+    public static final int FIELD_TRASH = 1 << 3;
+
     private String name;
     private boolean done;
     private boolean inTrash;
@@ -39,6 +44,32 @@ public class TodoSubTask extends BaseTodo implements Parcelable {
         inTrash = false;
     }
 
+    // copies the values and the database state of other
+    public TodoSubTask(TodoSubTask other) {
+        super(other);
+        name = other.name;
+        done = other.done;
+        inTrash = other.inTrash;
+        taskIdForeignKey = other.taskIdForeignKey;
+    }
+
+    @Override
+    public void applySaved(BaseTodo saved) {
+        super.applySaved(saved);
+        // a subtask saved together with its new task gets the id of the task
+        taskIdForeignKey = ((TodoSubTask) saved).taskIdForeignKey;
+    }
+
+    @Override
+    public void applyLoaded(BaseTodo loaded) {
+        super.applyLoaded(loaded);
+        TodoSubTask subTask = (TodoSubTask) loaded;
+        name = subTask.name;
+        done = subTask.done;
+        inTrash = subTask.inTrash;
+        taskIdForeignKey = subTask.taskIdForeignKey;
+    }
+
     public TodoSubTask(Parcel parcel) {
         id = parcel.readInt();
         name = parcel.readString();
@@ -47,7 +78,10 @@ public class TodoSubTask extends BaseTodo implements Parcelable {
         inTrash = parcel.readByte() != 0;
     }
 
+    @Override
     public void setName(String name) {
+        if (differs(this.name, name))
+            setDirty(FIELD_NAME);
         this.name = name;
     }
 
@@ -62,10 +96,16 @@ public class TodoSubTask extends BaseTodo implements Parcelable {
     public boolean isInTrash() {return inTrash; }
 
     public void setDone(boolean d) {
+        if (done != d)
+            setDirty(FIELD_DONE);
         done = d;
     }
 
-    public void setInTrash(boolean a) { inTrash = a; }
+    public void setInTrash(boolean a) {
+        if (inTrash != a)
+            setDirty(FIELD_TRASH);
+        inTrash = a;
+    }
 
     public static final Parcelable.Creator<TodoSubTask> CREATOR =
             new Creator<TodoSubTask>() {
@@ -95,6 +135,8 @@ public class TodoSubTask extends BaseTodo implements Parcelable {
     }
 
     public void setTaskId(long taskIdForeignKey) {
+        if (this.taskIdForeignKey != taskIdForeignKey)
+            setDirty(FIELD_TASK_ID);
         this.taskIdForeignKey = taskIdForeignKey;
     }
 
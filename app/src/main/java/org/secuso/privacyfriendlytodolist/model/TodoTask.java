@@ -68,6 +68,17 @@ public class TodoTask extends BaseTodo implements Parcelable {
         RED
     }
 
+    // dirty bits in the order of the task columns
+    public static final int FIELD_DESCRIPTION = 1 << 1;
+    public static final int FIELD_PROGRESS = 1 << 2;
+    public static final int FIELD_DEADLINE = 1 << 3;
+    public static final int FIELD_REMINDER_TIME = 1 << 4;
+    public static final int FIELD_PRIORITY = 1 << 5;
+    public static final int FIELD_LIST_ID = 1 << 6;
+    public static final int FIELD_LIST_POSITION = 1 << 7;
+    public static final int FIELD_DONE = 1 << 8;
+    public static final int FIELD_TRASH = 1 << 9;
+
     private boolean inTrash;
     private boolean done;
     private int progress;
@@ -75,6 +86,13 @@ public class TodoTask extends BaseTodo implements Parcelable {
     private long reminderTime = -1; // absolute timestamp
     private int listPosition; // indicates at what position inside the list this task it placed
     private int listIdForeignKey;
+
+    // counters of the subtasks outside of the bin as maintained by the database, they are also
+    // known if the subtasks themselves are not loaded
+    private int numSubTasks;
+    private int numSubTasksDone;
+    // false while only the counters are known. A new task has all of its (no) subtasks.
+    private boolean subTasksLoaded = true;
     protected long deadline; // absolute timestamp
 
     private boolean reminderTimeChanged = false; // important for the reminder service
@@ -90,6 +108,51 @@ public class TodoTask extends BaseTodo implements Parcelable {
         inTrash = false;
     }
 
+    // copies the values and the database state of other, but not its subtasks, so the copy counts
+    // by the counters until its subtasks are set
+    public TodoTask(TodoTask other) {
+        super(other);
+        inTrash = other.inTrash;
+        done = other.done;
+        progress = other.progress;
+        priority = other.priority;
+        reminderTime = other.reminderTime;
+        listPosition = other.listPosition;
+        listIdForeignKey = other.listIdForeignKey;
+        numSubTasks = other.numSubTasks;
+        numSubTasksDone = other.numSubTasksDone;
+        subTasksLoaded = false;
+        deadline = other.deadline;
+        reminderTimeChanged = other.reminderTimeChanged;
+        reminderTimeWasInitialized = other.reminderTimeWasInitialized;
+        listName = other.listName;
+    }
+
+    @Override
+    public void applySaved(BaseTodo saved) {
+        super.applySaved(saved);
+        // new tasks and tasks moved into another list are placed at its end when they are saved
+        listPosition = ((TodoTask) saved).listPosition;
+    }
+
+    // the subtasks are not taken over, see TodoIdentityMap
+    @Override
+    public void applyLoaded(BaseTodo loaded) {
+        super.applyLoaded(loaded);
+        TodoTask task = (TodoTask) loaded;
+        inTrash = task.inTrash;
+        done = task.done;
+        progress = task.progress;
+        priority = task.priority;
+        reminderTime = task.reminderTime;
+        listPosition = task.listPosition;
+        listIdForeignKey = task.listIdForeignKey;
+        numSubTasks = task.numSubTasks;
+        numSubTasksDone = task.numSubTasksDone;
+        deadline = task.deadline;
+        listName = task.listName;
+    }
+
     public String getListName() {
         return listName;
     }
@@ -114,6 +177,9 @@ public class TodoTask extends BaseTodo implements Parcelable {
         reminderTime = parcel.readLong();
         listPosition = parcel.readInt();
         priority = Priority.fromInt(parcel.readInt());
+        numSubTasks = parcel.readInt();
+        numSubTasksDone = parcel.readInt();
+        subTasksLoaded = parcel.readByte() != 0;
         parcel.readList(subTasks, TodoSubTask.class.getClassLoader());
     }
 
@@ -122,15 +188,70 @@ public class TodoTask extends BaseTodo implements Parcelable {
     }
 
     public void setDeadline(long deadline) {
+        if (this.deadline != deadline)
+            setDirty(FIELD_DEADLINE);
         this.deadline = deadline;
     }
 
     public void setPositionInList(int pos) {
+        if (this.listPosition != pos)
+            setDirty(FIELD_LIST_POSITION);
         this.listPosition = pos;
     }
 
+    @Override
+    public void setDescription(String description) {
+        if (differs(this.description, description))
+            setDirty(FIELD_DESCRIPTION);
+        this.description = description;
+    }
+
+    // all subtasks of the task, an empty list if it has none
     public void setSubTasks(ArrayList<TodoSubTask> tasks) {
         this.subTasks = tasks;
+        this.subTasksLoaded = true;
+    }
+
+    // The counters are read from the database only, so they are not marked as changed. The task
+    // was read without its subtasks, they are counted by the counters until they are set.
+    public void setSubTaskCounts(int numSubTasks, int numSubTasksDone) {
+        this.numSubTasks = numSubTasks;
+        this.numSubTasksDone = numSubTasksDone;
+        this.subTasksLoaded = false;
+    }
+
+    // drops the subtasks, the task is counted by its counters until they are set again
+    public void releaseSubTasks() {
+        this.subTasks = new ArrayList<TodoSubTask>();
+        this.subTasksLoaded = false;
+    }
+
+    public boolean areSubTasksLoaded() {
+        return subTasksLoaded;
+    }
+
+    // Number of subtasks outside of the bin. Loaded subtasks reflect changes that are not saved yet,
+    // the counters of the database are used if the subtasks are not loaded.
+    public int getSubTaskCount() {
+        if (!subTasksLoaded)
+            return numSubTasks;
+
+        int count = 0;
+        for (TodoSubTask subTask : subTasks)
+            if (!subTask.isInTrash())
+                count++;
+        return count;
+    }
+
+    public int getDoneSubTaskCount() {
+        if (!subTasksLoaded)
+            return numSubTasksDone;
+
+        int done = 0;
+        for (TodoSubTask subTask : subTasks)
+            if (!subTask.isInTrash() && subTask.getDone())
+                done++;
+        return done;
     }
 
     public ArrayList<TodoSubTask> getSubTasks() {
@@ -156,10 +277,16 @@ public class TodoTask extends BaseTodo implements Parcelable {
     }
 
     public void setDone(boolean done) {
+        if (this.done != done)
+            setDirty(FIELD_DONE);
         this.done = done;
     }
 
-    public void setInTrash(boolean inTrash) { this.inTrash = inTrash; }
+    public void setInTrash(boolean inTrash) {
+        if (this.inTrash != inTrash)
+            setDirty(FIELD_TRASH);
+        this.inTrash = inTrash;
+    }
 
     // This method expects the deadline to be greater than the reminder time.
     public DeadlineColors getDeadlineColor(long defaultReminderTime) {
@@ -201,6 +328,8 @@ public class TodoTask extends BaseTodo implements Parcelable {
     }
 
     public void setPriority(Priority prio) {
+        if (priority != prio)
+            setDirty(FIELD_PRIORITY);
         priority = prio;
     }
 
@@ -217,6 +346,9 @@ public class TodoTask extends BaseTodo implements Parcelable {
         dest.writeLong(reminderTime);
         dest.writeInt(listPosition);
         dest.writeInt(priority.getValue());
+        dest.writeInt(numSubTasks);
+        dest.writeInt(numSubTasksDone);
+        dest.writeByte((byte) (subTasksLoaded ? 1 : 0));
         dest.writeList(subTasks);
     }
 
@@ -225,6 +357,8 @@ public class TodoTask extends BaseTodo implements Parcelable {
     }
 
     public void setListId(int listId) {
+        if (this.listIdForeignKey != listId)
+            setDirty(FIELD_LIST_ID);
         this.listIdForeignKey = listId;
     }
 
@@ -233,6 +367,8 @@ public class TodoTask extends BaseTodo implements Parcelable {
     }
 
     public void setProgress(int progress) {
+        if (this.progress != progress)
+            setDirty(FIELD_PROGRESS);
         this.progress = progress;
     }
 
@@ -242,6 +378,8 @@ public class TodoTask extends BaseTodo implements Parcelable {
             Log.i(TAG, "Reminder time must not be greater than the deadline.");
         }
         else {
+            if (this.reminderTime != reminderTime)
+                setDirty(FIELD_REMINDER_TIME);
             this.reminderTime = reminderTime;
         }
 
@@ -271,18 +409,11 @@ public class TodoTask extends BaseTodo implements Parcelable {
     // A task is done if the user manually sets it done or when all subtaks are done.
     // If a subtask is selected "done", the entire task might be "done" if by now all subtasks are done.
     public void doneStatusChanged() {
-        boolean doneSubTasks = true;
-
-        int i = 0;
-        while(doneSubTasks && i<subTasks.size()) {
-            doneSubTasks &= subTasks.get(i).getDone();
-            i++;
-        }
-
+        boolean doneSubTasks = getDoneSubTaskCount() == getSubTaskCount();
 
         if(doneSubTasks != done) {
             dbState = DBQueryHandler.ObjectStates.UPDATE_DB;
-
+            setDirty(FIELD_DONE);
         }
 
         done = doneSubTasks;
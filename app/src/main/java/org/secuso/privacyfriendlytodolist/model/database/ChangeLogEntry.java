@@ -0,0 +1,58 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.secuso.privacyfriendlytodolist.model.database.tables.TChangeLog;
+
+/**
+ * One row of the change log, see {@link DBQueryHandler#getChangesSince}.
+ *
+ * Entity and operation are one of the ENTITY_* and OPERATION_* constants of {@link TChangeLog}.
+ */
+
+public class ChangeLogEntry {
+
+    private final long version;
+    private final int entity;
+    private final int entityId;
+    private final int operation;
+
+    ChangeLogEntry(long version, int entity, int entityId, int operation) {
+        this.version = version;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.operation = operation;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getEntity() {
+        return entity;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public int getOperation() {
+        return operation;
+    }
+}
@@ -22,17 +22,28 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.ContactsContract;
 import android.util.Log;
+import android.util.SparseArray;
 
+import org.secuso.privacyfriendlytodolist.model.BaseTodo;
+import org.secuso.privacyfriendlytodolist.model.Helper;
+import org.secuso.privacyfriendlytodolist.model.TaskSummary;
 import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoListSummary;
 import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
 import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.Tuple;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TChangeLog;
 import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
 import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoSubTask;
 import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTaskSearch;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 
 /**
@@ -50,26 +61,80 @@ public class DBQueryHandler {
 
     public static final int NO_INSERT_TO_DB = -4;
 
+    // column aliases of the list columns when lists and tasks are joined
+    private static final String JOINED_LIST_ID = "joined_list_id";
+    private static final String JOINED_LIST_NAME = "joined_list_name";
+
+    // column alias of the sort key in the paginated task queries
+    private static final String SORT_KEY = "sort_key";
+
+    // gap between the positions of neighbouring tasks of a list after it was renumbered
+    public static final int POSITION_STEP = 1024;
+
+    // Every move into a gap halves it. Once a move leaves less than this, the list is renumbered in
+    // the background, which leaves a few more moves into the same gap until that has happened.
+    public static final int MIN_GAP = POSITION_STEP / 64;
+
+    // Positions stay within these bounds, so the difference of two positions still fits into an int
+    // (see the task comparators). A list whose positions would leave them is renumbered first.
+    private static final int MIN_POSITION = Integer.MIN_VALUE / 2;
+    private static final int MAX_POSITION = Integer.MAX_VALUE / 2;
+    private static final int NO_POSITION = Integer.MIN_VALUE;
+
+    // positions of a list, served by the index idx_todo_task_position
+    private static final String FIRST_POSITION_QUERY = "SELECT " + TTodoTask.COLUMN_LIST_POSITION + " FROM " + TTodoTask.TABLE_NAME +
+            " WHERE " + TTodoTask.COLUMN_TODO_LIST_ID + " = CAST(?1 AS INTEGER) AND " + TTodoTask.COLUMN_ID + " != CAST(?2 AS INTEGER)" +
+            " ORDER BY " + TTodoTask.COLUMN_LIST_POSITION + ", " + TTodoTask.COLUMN_ID + " LIMIT 1;";
+
+    private static final String LAST_POSITION_QUERY = "SELECT " + TTodoTask.COLUMN_LIST_POSITION + " FROM " + TTodoTask.TABLE_NAME +
+            " WHERE " + TTodoTask.COLUMN_TODO_LIST_ID + " = CAST(?1 AS INTEGER)" +
+            " ORDER BY " + TTodoTask.COLUMN_LIST_POSITION + " DESC LIMIT 1;";
+
+    private static final String TASK_POSITION_QUERY = "SELECT " + TTodoTask.COLUMN_LIST_POSITION + " FROM " + TTodoTask.TABLE_NAME +
+            " WHERE " + TTodoTask.COLUMN_ID + " = CAST(?1 AS INTEGER);";
+
+    // the task following position ?3 and id ?4 in list ?1, without the moved task ?2
+    private static final String NEXT_POSITION_QUERY = "SELECT " + TTodoTask.COLUMN_LIST_POSITION + " FROM " + TTodoTask.TABLE_NAME +
+            " WHERE " + TTodoTask.COLUMN_TODO_LIST_ID + " = CAST(?1 AS INTEGER) AND " + TTodoTask.COLUMN_ID + " != CAST(?2 AS INTEGER)" +
+            " AND (" + TTodoTask.COLUMN_LIST_POSITION + " > CAST(?3 AS INTEGER) OR (" + TTodoTask.COLUMN_LIST_POSITION + " = CAST(?3 AS INTEGER)" +
+            " AND " + TTodoTask.COLUMN_ID + " > CAST(?4 AS INTEGER)))" +
+            " ORDER BY " + TTodoTask.COLUMN_LIST_POSITION + ", " + TTodoTask.COLUMN_ID + " LIMIT 1;";
+
     public DatabaseHelper dbhelper;
 
+    // Conditions of tasks the user has to be reminded of. The reminder queries below are constant
+    // strings, so SQLite can reuse their compiled statements. Only the bound time changes.
+    private static final String REMINDER_CONDITION = TTodoTask.COLUMN_DONE + "=0 AND " + TTodoTask.COLUMN_TRASH + "=0 AND " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " > 0";
+
+    private static final String NEXT_DUE_TASK_QUERY = "SELECT * FROM " + TTodoTask.TABLE_NAME +
+            " WHERE " + REMINDER_CONDITION + " AND " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " > ?1" +
+            " ORDER BY " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " LIMIT 1";
+
+    // The tasks for which the user was just notified are skipped while mapping the rows (see
+    // getTasksToRemind), so the statement text stays the same for any number of them.
+    private static final String TASKS_TO_REMIND_QUERY = "SELECT * FROM " + TTodoTask.TABLE_NAME +
+            " WHERE " + REMINDER_CONDITION + " AND " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " <= ?1" +
+            " UNION ALL SELECT * FROM (" + NEXT_DUE_TASK_QUERY + ");";
+
+    // returns the task with the earliest reminder time after {@param today}
     public static TodoTask getNextDueTask(SQLiteDatabase db, long today) {
 
-        String rawQuery = "SELECT * FROM " + TTodoTask.TABLE_NAME + " WHERE " + TTodoTask.COLUMN_DONE + "=0 AND " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " > 0 AND " + TTodoTask.COLUMN_TRASH + "=0 AND " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + "-? > 0 ORDER BY ABS(" + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " -?) LIMIT 1;";
         String selectionArgs[] = {String.valueOf(today)};
 
         TodoTask nextDueTask = null;
 
         try {
-            Cursor cursor = db.rawQuery(rawQuery, selectionArgs);
+            Cursor cursor = db.rawQuery(NEXT_DUE_TASK_QUERY + ";", selectionArgs);
 
             try {
                 if (cursor.moveToFirst()) {
-                    nextDueTask = extractTodoTask(cursor);
+                    nextDueTask = new TodoTaskRowMapper(cursor).map();
                 }
             } finally {
                 cursor.close();
             }
         } catch (Exception ex) {
+            Log.e(TAG, "Could not query the next due task.", ex);
         }
 
         return nextDueTask;
@@ -81,81 +146,40 @@ public class DBQueryHandler {
      *
      *  -   which are not fulfilled and whose reminder time is prior to the current time
      *  -   the task which is next due
+     *
+     * Both are delivered by a single query. Due tasks with a locked id are skipped while the rows
+     * are mapped. A set lookup per row is much cheaper than passing the ids to SQLite, which would
+     * have to compare each row with every locked id: with 100,000 tasks and 1,000 locked ids a bound
+     * NOT IN list made the query about 15 times slower. ReminderQueryTest checks the result for
+     * such a set.
      */
     public static ArrayList<TodoTask> getTasksToRemind(SQLiteDatabase db, long today, HashSet<Integer> lockedIds) {
 
         ArrayList<TodoTask> tasks = new ArrayList<>();
-
-        // do not request tasks for which the user was just notified (these tasks are locked)
-        StringBuilder excludedIDs = new StringBuilder();
-        String and = " AND ";
-        if (lockedIds != null && lockedIds.size() > 0) {
-            excludedIDs.append(" AND ");
-            for (Integer lockedTaskID : lockedIds) {
-                excludedIDs.append(TTodoTask.COLUMN_ID + " <> " + String.valueOf(lockedTaskID));
-                excludedIDs.append(" AND ");
-            }
-            excludedIDs.setLength(excludedIDs.length() - and.length());
-        }
-        excludedIDs.append(";");
-
-        String rawQuery = "SELECT * FROM " + TTodoTask.TABLE_NAME + " WHERE " + TTodoTask.COLUMN_DONE + " = 0 AND " + TTodoTask.COLUMN_TRASH + "=0 AND " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " > 0 AND " + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " <= ? " + excludedIDs.toString();
         String selectionArgs[] = {String.valueOf(today)};
-        try {
-            Cursor cursor = db.rawQuery(rawQuery, selectionArgs);
 
+        try {
+            Cursor cursor = db.rawQuery(TASKS_TO_REMIND_QUERY, selectionArgs);
             try {
                 if (cursor.moveToFirst()) {
+                    TodoTaskRowMapper mapper = new TodoTaskRowMapper(cursor);
                     do {
-                        TodoTask taskForNotification = extractTodoTask(cursor);
-                        tasks.add(taskForNotification);
-
+                        TodoTask task = mapper.map();
+                        // the next due task is never skipped
+                        if (lockedIds == null || task.getReminderTime() > today || !lockedIds.contains(task.getId()))
+                            tasks.add(task);
                     } while (cursor.moveToNext());
                 }
             } finally {
                 cursor.close();
             }
         } catch (Exception e) {
+            Log.e(TAG, "Could not query the tasks to remind.", e);
         }
 
-        // get task that is next due
-        TodoTask nextDueTask = getNextDueTask(db, today);
-        if (nextDueTask != null)
-            tasks.add(nextDueTask);
-
         return tasks;
     }
 
-    private static TodoTask extractTodoTask(Cursor cursor) {
-
-        int id = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_ID));
-        int listPosition = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_LIST_POSITION));
-        String title = cursor.getString(cursor.getColumnIndex(TTodoTask.COLUMN_NAME));
-        String description = cursor.getString(cursor.getColumnIndex(TTodoTask.COLUMN_DESCRIPTION));
-        boolean done = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_DONE)) > 0;
-        int progress = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_PROGRESS));
-        int deadline = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_DEADLINE));
-        int reminderTime = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_DEADLINE_WARNING_TIME));
-        int priority = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_PRIORITY));
-        int listID = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_TODO_LIST_ID));
-        boolean inTrash = cursor.getInt(cursor.getColumnIndex(TTodoTask.COLUMN_TRASH)) > 0;
-
-        TodoTask task = new TodoTask();
-        task.setName(title);
-        task.setDeadline(deadline);
-        task.setDescription(description);
-        task.setPriority(TodoTask.Priority.fromInt(priority));
-        task.setReminderTime(reminderTime);
-        task.setId(id);
-        task.setPositionInList(listPosition);
-        task.setProgress(progress);
-        task.setDone(done);
-        task.setListId(listID);
-        task.setInTrash(inTrash);
-
-        return task;
-    }
-
     public enum ObjectStates {
         INSERT_TO_DB,
         UPDATE_DB,
@@ -163,229 +187,774 @@ public class DBQueryHandler {
     }
 
     public static void deleteTodoList(SQLiteDatabase db, TodoList todoList) {
+        deleteTodoList(db, todoList.getId());
+    }
 
-        long id = todoList.getId();
+    /**
+     * Puts all tasks of the list together with their subtasks into the bin and removes the list.
+     * Each step is a single statement and all of them run in one transaction. The tasks go first, so
+     * that the subtasks that follow them do not count their tasks again (see TTodoTask).
+     */
+    public static void deleteTodoList(SQLiteDatabase db, int listId) {
 
-        int deletedTasks = 0;
-        for(TodoTask task : todoList.getTasks())
-            deletedTasks+=putTaskInTrash(db, task);
-        Log.i(TAG, deletedTasks + " tasks put into trash");
+        String whereArgs[] = {String.valueOf(listId)};
+        int deletedTasks, deletedLists;
 
-        String where = TTodoList.COLUMN_ID + "=?";
-        String whereArgs[] = {String.valueOf(id)};
-        int deletedLists = db.delete(TTodoList.TABLE_NAME, where, whereArgs);
+        db.beginTransaction();
+        try {
+            ContentValues taskArgs = new ContentValues();
+            taskArgs.put(TTodoTask.COLUMN_TRASH, 1);
+            taskArgs.put(TTodoTask.COLUMN_TRASHED_AT, Helper.getCurrentTimestamp());
+            taskArgs.put(TTodoTask.COLUMN_NUM_SUBTASKS, 0);
+            taskArgs.put(TTodoTask.COLUMN_NUM_SUBTASKS_DONE, 0);
+            deletedTasks = db.update(TTodoTask.TABLE_NAME, taskArgs, TTodoTask.COLUMN_TODO_LIST_ID + " = ? AND " + TTodoTask.COLUMN_TRASH + " = 0", whereArgs);
+
+            // subtasks of tasks that were in the bin before are in the bin already
+            ContentValues subTaskArgs = new ContentValues();
+            subTaskArgs.put(TTodoSubTask.COLUMN_TRASH, 1);
+            db.update(TTodoSubTask.TABLE_NAME, subTaskArgs, TTodoSubTask.COLUMN_TRASH + " = 0 AND " + TTodoSubTask.COLUMN_TASK_ID + " IN (SELECT " + TTodoTask.COLUMN_ID + " FROM " + TTodoTask.TABLE_NAME + " WHERE " + TTodoTask.COLUMN_TODO_LIST_ID + " = ?)", whereArgs);
+
+            deletedLists = db.delete(TTodoList.TABLE_NAME, TTodoList.COLUMN_ID + "=?", whereArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
+        Log.i(TAG, deletedTasks + " tasks put into trash");
         Log.i(TAG, deletedLists + " lists removed from database");
     }
 
     public static int deleteTodoTask(SQLiteDatabase db, TodoTask todoTask) {
 
-        long id = todoTask.getId();
+        String whereArgs[] = {String.valueOf(todoTask.getId())};
+        int removedSubTasks, removedTasks;
 
-        int removedSubTask = 0;
-        for(TodoSubTask subTask : todoTask.getSubTasks())
-            removedSubTask += deleteTodoSubTask(db, subTask);
+        // the task goes first, so that removing its subtasks does not count them again
+        db.beginTransaction();
+        try {
+            removedTasks = db.delete(TTodoTask.TABLE_NAME, TTodoTask.COLUMN_ID + " = ?", whereArgs);
+            removedSubTasks = db.delete(TTodoSubTask.TABLE_NAME, TTodoSubTask.COLUMN_TASK_ID + " = ?", whereArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
-        Log.i(TAG, removedSubTask + " subtasks removed from database");
+        Log.i(TAG, removedSubTasks + " subtasks removed from database");
+        return removedTasks;
+    }
 
-        String where = TTodoTask.COLUMN_ID + " = ?";
-        String whereArgs[] = {String.valueOf(id)};
-        return db.delete(TTodoTask.TABLE_NAME, where, whereArgs);
+    /**
+     * Removes all tasks in the bin and their subtasks from the database.
+     *
+     * @return the number of removed tasks (left) and subtasks (right)
+     */
+    public static Tuple<Integer, Integer> purgeBin(SQLiteDatabase db) {
+        return purgeBin(db, TTodoTask.COLUMN_TRASH + " > 0", null);
+    }
+
+    /**
+     * Removes the tasks that were put into the bin before the given time (in seconds) and their
+     * subtasks from the database. Tasks without a trash time are kept.
+     *
+     * @return the number of removed tasks (left) and subtasks (right)
+     */
+    public static Tuple<Integer, Integer> purgeBin(SQLiteDatabase db, long trashedBefore) {
+        String whereArgs[] = {String.valueOf(trashedBefore)};
+        return purgeBin(db, TTodoTask.COLUMN_TRASH + " > 0 AND " + TTodoTask.COLUMN_TRASHED_AT + " < CAST(? AS INTEGER)", whereArgs);
+    }
+
+    /**
+     * Like {@link #purgeBin(SQLiteDatabase, long)} but removes at most limit tasks, the ones that were
+     * put into the bin first. Background jobs call it repeatedly to keep each transaction short.
+     *
+     * @return the number of removed tasks (left) and subtasks (right)
+     */
+    public static Tuple<Integer, Integer> purgeBin(SQLiteDatabase db, long trashedBefore, int limit) {
+        String whereArgs[] = {String.valueOf(trashedBefore), String.valueOf(limit)};
+        return purgeBin(db, TTodoTask.COLUMN_ID + " IN (SELECT " + TTodoTask.COLUMN_ID + " FROM " + TTodoTask.TABLE_NAME +
+                " WHERE " + TTodoTask.COLUMN_TRASH + " > 0 AND " + TTodoTask.COLUMN_TRASHED_AT + " < CAST(?1 AS INTEGER)" +
+                " ORDER BY " + TTodoTask.COLUMN_TRASHED_AT + ", " + TTodoTask.COLUMN_ID + " LIMIT CAST(?2 AS INTEGER))", whereArgs);
+    }
+
+    // one DELETE for the subtasks of the selected tasks and one for the tasks themselves, both in the same transaction
+    private static Tuple<Integer, Integer> purgeBin(SQLiteDatabase db, String taskSelection, String selectionArgs[]) {
+
+        int removedSubTasks, removedTasks;
+
+        db.beginTransaction();
+        try {
+            removedSubTasks = db.delete(TTodoSubTask.TABLE_NAME, TTodoSubTask.COLUMN_TASK_ID + " IN (SELECT " + TTodoTask.COLUMN_ID + " FROM " + TTodoTask.TABLE_NAME + " WHERE " + taskSelection + ")", selectionArgs);
+            removedTasks = db.delete(TTodoTask.TABLE_NAME, taskSelection, selectionArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.i(TAG, removedTasks + " tasks and " + removedSubTasks + " subtasks removed from the bin");
+        return Tuple.makePair(removedTasks, removedSubTasks);
     }
 
     public static ArrayList<TodoTask> getAllToDoTasks (SQLiteDatabase db) {
+        return getTasks(db, TTodoTask.COLUMN_TRASH + " =0");
+    }
+
+
+    public static ArrayList<TodoTask> getBin (SQLiteDatabase db) {
+        return getTasks(db, TTodoTask.COLUMN_TRASH + " >0");
+    }
+
+    // tasks outside of the bin that do not belong to an existing list
+    public static ArrayList<TodoTask> getTasksWithoutList(SQLiteDatabase db) {
+        return getTasks(db, TTodoTask.COLUMN_TRASH + " =0 AND " + TTodoTask.COLUMN_TODO_LIST_ID + " NOT IN (SELECT " + TTodoList.COLUMN_ID + " FROM " + TTodoList.TABLE_NAME + ")");
+    }
+
+    // returns all tasks matching the given selection together with their subtasks
+    private static ArrayList<TodoTask> getTasks(SQLiteDatabase db, String where) {
         ArrayList<TodoTask> todo = new ArrayList<>();
 
-        String where = TTodoTask.COLUMN_TRASH + " =0";
+        SparseArray<TodoTask> tasksById = new SparseArray<>();
 
         try {
             Cursor c = db.query(TTodoTask.TABLE_NAME, null, where, null, null, null, null);
             try {
                 if (c.moveToFirst()) {
+                    TodoTaskRowMapper mapper = new TodoTaskRowMapper(c);
                     do {
-                        int id = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_ID));
-                        int listId = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_TODO_LIST_ID));
-                        String taskName = c.getString(c.getColumnIndex(TTodoTask.COLUMN_NAME));
-                        String taskDescription = c.getString(c.getColumnIndex(TTodoTask.COLUMN_DESCRIPTION));
-                        int progress = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_PROGRESS));
-                        long deadline = c.getLong(c.getColumnIndex(TTodoTask.COLUMN_DEADLINE));
-                        int priority = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_PRIORITY));
-                        boolean done = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_DONE)) > 0;
-                        int reminderTime = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_DEADLINE_WARNING_TIME));
-                        boolean inTrash = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_TRASH)) > 0;
-
-
-                        TodoTask currentTask = new TodoTask();
-                        currentTask.setName(taskName);
-                        currentTask.setDescription(taskDescription);
-                        currentTask.setId(id);
-                        currentTask.setSubTasks(getSubTasksByTaskId(db, id));
-                        currentTask.setProgress(progress);
-                        currentTask.setDeadline(deadline);
-                        currentTask.setPriority(TodoTask.Priority.fromInt(priority));
-                        currentTask.setDone(done);
-                        currentTask.setReminderTime(reminderTime);
-                        currentTask.setInTrash(inTrash);
-                        currentTask.setListId(listId);
+                        TodoTask currentTask = mapper.map();
                         todo.add(currentTask);
+                        tasksById.put(currentTask.getId(), currentTask);
                     } while (c.moveToNext());
                 }
             } finally {
                 c.close();
-                }
-            } catch (Exception ex) {
+            }
+            attachSubTasks(db, tasksById, "t." + where);
+        } catch (Exception ex) {
         }
         return todo;
     }
 
 
-    public static ArrayList<TodoTask> getBin (SQLiteDatabase db) {
-        ArrayList<TodoTask> todo = new ArrayList<>();
+    // columns of the task table that make up a TaskSummary
+    private static final String TASK_SUMMARY_COLUMNS = "t." + TTodoTask.COLUMN_ID + ", t." + TTodoTask.COLUMN_NAME + ", t." + TTodoTask.COLUMN_DONE + ", t." + TTodoTask.COLUMN_DEADLINE + ", t." + TTodoTask.COLUMN_TODO_LIST_ID;
 
-        String where = TTodoTask.COLUMN_TRASH + " >0";
+    // returns a summary of all tasks that are not in the bin
+    public static ArrayList<TaskSummary> getTaskSummaries(SQLiteDatabase db) {
+        String rawQuery = "SELECT " + TASK_SUMMARY_COLUMNS + " FROM " + TTodoTask.TABLE_NAME + " t" +
+                " WHERE t." + TTodoTask.COLUMN_TRASH + "=0 ORDER BY t." + TTodoTask.COLUMN_ID + ";";
+        return getTaskSummaries(db, rawQuery, null);
+    }
+
+    /**
+     * Returns a summary of the tasks that are not in the bin and whose deadline lies within
+     * [{@param from}, {@param to}). They are grouped by the local epoch day of their deadline (see
+     * Helper#getLocalEpochDay), which is the key of the returned array.
+     */
+    public static SparseArray<ArrayList<TaskSummary>> getTaskSummariesByDay(SQLiteDatabase db, long from, long to) {
+        String rawQuery = "SELECT " + TASK_SUMMARY_COLUMNS + " FROM " + TTodoTask.TABLE_NAME + " t" +
+                " WHERE t." + TTodoTask.COLUMN_TRASH + "=0 AND t." + TTodoTask.COLUMN_DEADLINE + " >= CAST(?1 AS INTEGER) AND t." + TTodoTask.COLUMN_DEADLINE + " < CAST(?2 AS INTEGER)" +
+                " ORDER BY t." + TTodoTask.COLUMN_DEADLINE + ";";
+        String selectionArgs[] = {String.valueOf(from), String.valueOf(to)};
+
+        SparseArray<ArrayList<TaskSummary>> tasksPerDay = new SparseArray<>();
+
+        // the tasks arrive ordered by deadline, so each day is completed before the next one starts
+        ArrayList<TaskSummary> currentDay = null;
+        int currentDayKey = 0;
+        for (TaskSummary task : getTaskSummaries(db, rawQuery, selectionArgs)) {
+            int day = Helper.getLocalEpochDay(task.getDeadline());
+            if (currentDay == null || day != currentDayKey) {
+                currentDay = new ArrayList<>();
+                currentDayKey = day;
+                tasksPerDay.append(day, currentDay);
+            }
+            currentDay.add(task);
+        }
+
+        return tasksPerDay;
+    }
+
+    // returns a summary of the tasks of the lists named {@param listName} that are not in the bin
+    public static ArrayList<TaskSummary> getTaskSummariesOfList(SQLiteDatabase db, String listName) {
+        String rawQuery = "SELECT " + TASK_SUMMARY_COLUMNS + " FROM " + TTodoTask.TABLE_NAME + " t" +
+                " INNER JOIN " + TTodoList.TABLE_NAME + " l ON t." + TTodoTask.COLUMN_TODO_LIST_ID + " = l." + TTodoList.COLUMN_ID +
+                " WHERE l." + TTodoList.COLUMN_NAME + " = ? AND t." + TTodoTask.COLUMN_TRASH + "=0 ORDER BY t." + TTodoTask.COLUMN_ID + ";";
+        String selectionArgs[] = {listName};
+        return getTaskSummaries(db, rawQuery, selectionArgs);
+    }
+
+    private static ArrayList<TaskSummary> getTaskSummaries(SQLiteDatabase db, String rawQuery, String selectionArgs[]) {
+
+        ArrayList<TaskSummary> summaries = new ArrayList<>();
 
         try {
-            Cursor c = db.query(TTodoTask.TABLE_NAME, null, where, null, null, null, null);
+            Cursor cursor = db.rawQuery(rawQuery, selectionArgs);
             try {
-                if (c.moveToFirst()) {
+                if (cursor.moveToFirst()) {
+                    // the columns are selected in a fixed order
                     do {
-                        int id = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_ID));
-                        int listId = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_TODO_LIST_ID));
-                        String taskName = c.getString(c.getColumnIndex(TTodoTask.COLUMN_NAME));
-                        String taskDescription = c.getString(c.getColumnIndex(TTodoTask.COLUMN_DESCRIPTION));
-                        int progress = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_PROGRESS));
-                        long deadline = c.getLong(c.getColumnIndex(TTodoTask.COLUMN_DEADLINE));
-                        int priority = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_PRIORITY));
-                        boolean done = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_DONE)) > 0;
-                        int reminderTime = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_DEADLINE_WARNING_TIME));
-                        boolean inTrash = c.getInt(c.getColumnIndex(TTodoTask.COLUMN_TRASH)) > 0;
-
-
-                        TodoTask currentTask = new TodoTask();
-                        currentTask.setName(taskName);
-                        currentTask.setDescription(taskDescription);
-                        currentTask.setId(id);
-                        currentTask.setSubTasks(getSubTasksByTaskId(db, id));
-                        currentTask.setProgress(progress);
-                        currentTask.setDeadline(deadline);
-                        currentTask.setPriority(TodoTask.Priority.fromInt(priority));
-                        currentTask.setDone(done);
-                        currentTask.setReminderTime(reminderTime);
-                        currentTask.setInTrash(inTrash);
-                        currentTask.setListId(listId);
-                        todo.add(currentTask);
-                    } while (c.moveToNext());
+                        summaries.add(new TaskSummary(cursor.getInt(0), cursor.getString(1), cursor.getInt(2) > 0, cursor.getLong(3), cursor.getInt(4)));
+                    } while (cursor.moveToNext());
                 }
             } finally {
-                c.close();
+                cursor.close();
             }
         } catch (Exception ex) {
+            Log.e(TAG, "Could not query task summaries.", ex);
+        }
 
+        return summaries;
+    }
+
+    /**
+     * Returns the ids of all tasks (including those in the bin) whose name, description or subtask
+     * titles contain words starting with the words of {@param query}. Tasks matching in the name
+     * come first, then those matching in the description, then the remaining ones.
+     *
+     * Words are matched from their start, i.e. "ask" finds "Ask" but not "Task". Case is ignored,
+     * also for letters outside of ASCII (see toMatchExpression).
+     *
+     * @return the ranked ids or null if the query contains no words (i.e. everything matches)
+     */
+    public static int[] searchTasks(SQLiteDatabase db, String query) {
+
+        ArrayList<String> words = splitSearchQuery(query);
+        if (words.isEmpty())
+            return null;
+
+        // One MATCH per word, so the OR of the case variants of a word never depends on the
+        // precedence rules of the FTS query syntax the platform was compiled with.
+        String rawQuery = "SELECT " + TTodoTaskSearch.COLUMN_DOCID + " FROM (" + matchAllWords(words.size()) + ")" +
+                " ORDER BY (" + TTodoTaskSearch.COLUMN_DOCID + " IN (" + matchAllWords(words.size()) + ")) * 2" +
+                " + (" + TTodoTaskSearch.COLUMN_DOCID + " IN (" + matchAllWords(words.size()) + ")) DESC, " +
+                TTodoTaskSearch.COLUMN_DOCID + ";";
+        String selectionArgs[] = new String[words.size() * 3];
+        for (int i = 0; i < words.size(); i++) {
+            selectionArgs[i] = toMatchExpression(words.get(i), null);
+            selectionArgs[words.size() + i] = toMatchExpression(words.get(i), TTodoTaskSearch.COLUMN_NAME);
+            selectionArgs[2 * words.size() + i] = toMatchExpression(words.get(i), TTodoTaskSearch.COLUMN_DESCRIPTION);
         }
-        return todo;
+
+        int ids[] = new int[0];
+
+        try {
+            Cursor cursor = db.rawQuery(rawQuery, selectionArgs);
+            try {
+                ids = new int[cursor.getCount()];
+                int i = 0;
+                while (cursor.moveToNext())
+                    ids[i++] = cursor.getInt(0);
+            } finally {
+                cursor.close();
+            }
+        } catch (Exception ex) {
+            Log.e(TAG, "Could not search for tasks.", ex);
+        }
+
+        return ids;
     }
 
+    // ids of the documents matching all of the given number of expressions
+    private static String matchAllWords(int count) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                sql.append(" INTERSECT ");
+            sql.append("SELECT ").append(TTodoTaskSearch.COLUMN_DOCID).append(" FROM ").append(TTodoTaskSearch.TABLE_NAME)
+                    .append(" WHERE ").append(TTodoTaskSearch.TABLE_NAME).append(" MATCH ?");
+        }
+        return sql.toString();
+    }
+
+    // Splits the query like the "simple" tokenizer of the index does: every ASCII character that is
+    // neither a letter nor a digit separates words. This also removes all FTS operators.
+    static ArrayList<String> splitSearchQuery(String query) {
+        ArrayList<String> words = new ArrayList<>();
+        if (query == null)
+            return words;
+
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (c >= 0x80 || Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    // upper bound for the number of case variants of a single word, see toMatchExpression
+    private static final int MAX_CASE_VARIANTS = 16;
+
+    /**
+     * Turns a word into a prefix query, optionally restricted to a column of the index.
+     *
+     * The "simple" tokenizer only folds the case of ASCII letters, so a word starting with an upper
+     * case umlaut is indexed as it is and a search in lower case would not find it. Every letter
+     * outside of ASCII is therefore tried in lower and upper case and the variants are combined
+     * with OR. Once the limit of variants is reached the word is cut off before the next such
+     * letter, which only widens the prefix.
+     */
+    static String toMatchExpression(String word, String column) {
+        ArrayList<String> variants = new ArrayList<>();
+        variants.add("");
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            char lower = Character.toLowerCase(c);
+            char upper = Character.toUpperCase(c);
+            boolean foldedByIndex = c < 0x80 || lower == upper;
+            if (!foldedByIndex && variants.size() * 2 > MAX_CASE_VARIANTS)
+                break;
+
+            int count = variants.size();
+            for (int v = 0; v < count; v++) {
+                String prefix = variants.get(v);
+                if (foldedByIndex) {
+                    variants.set(v, prefix + c);
+                } else {
+                    variants.set(v, prefix + lower);
+                    variants.add(prefix + upper);
+                }
+            }
+        }
+
+        StringBuilder expression = new StringBuilder();
+        for (String variant : variants) {
+            if (expression.length() > 0)
+                expression.append(" OR ");
+            if (column != null)
+                expression.append(column).append(':');
+            expression.append(variant).append('*');
+        }
+        return expression.toString();
+    }
+
+    // returns the tasks with the given ids together with their subtasks
+    public static ArrayList<TodoTask> getTasksById(SQLiteDatabase db, int ids[]) {
+        if (ids == null || ids.length == 0)
+            return new ArrayList<>();
+
+        return getTasks(db, TTodoTask.COLUMN_ID + " IN (" + toIdList(ids) + ")");
+    }
+
+    // returns the ids of the tasks the given subtasks belong to, subtasks that do not exist are skipped
+    public static HashSet<Integer> getTaskIdsOfSubTasks(SQLiteDatabase db, int subTaskIds[]) {
+        HashSet<Integer> taskIds = new HashSet<>();
+        if (subTaskIds == null || subTaskIds.length == 0)
+            return taskIds;
+
+        String columns[] = {TTodoSubTask.COLUMN_TASK_ID};
+        Cursor cursor = db.query(true, TTodoSubTask.TABLE_NAME, columns, TTodoSubTask.COLUMN_ID + " IN (" + toIdList(subTaskIds) + ")", null, null, null, null, null);
+        try {
+            while (cursor.moveToNext())
+                taskIds.add(cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+        return taskIds;
+    }
+
+    // returns the lists with the given ids without their tasks, lists that do not exist are skipped
+    public static ArrayList<TodoList> getTodoListsById(SQLiteDatabase db, int ids[]) {
+        if (ids == null || ids.length == 0)
+            return new ArrayList<>();
+
+        return getTodoListRows(db, TTodoList.COLUMN_ID + " IN (" + toIdList(ids) + ")");
+    }
+
+    // Ids and names of all lists without their tasks, e.g. to let the user choose a list. Unlike
+    // the lists of TodoRepository this does not need the tasks to be loaded.
+    public static ArrayList<TodoList> getTodoListNames(SQLiteDatabase db) {
+        return getTodoListRows(db, null);
+    }
+
+    private static ArrayList<TodoList> getTodoListRows(SQLiteDatabase db, String where) {
+        ArrayList<TodoList> lists = new ArrayList<>();
+        String columns[] = {TTodoList.COLUMN_ID, TTodoList.COLUMN_NAME};
+        Cursor cursor = db.query(TTodoList.TABLE_NAME, columns, where, null, null, null, TTodoList.COLUMN_ID);
+        try {
+            while (cursor.moveToNext()) {
+                TodoList list = new TodoList();
+                list.setId(cursor.getInt(0));
+                list.setName(cursor.getString(1));
+                list.setUnchanged();
+                lists.add(list);
+            }
+        } finally {
+            cursor.close();
+        }
+        return lists;
+    }
+
+    private static String toIdList(int ids[]) {
+        StringBuilder idList = new StringBuilder();
+        for (int id : ids) {
+            if (idList.length() > 0)
+                idList.append(",");
+            idList.append(id);
+        }
+        return idList.toString();
+    }
+
+    /**
+     * Sort orders supported by the paginated task queries. Every order is completed by the task id,
+     * which makes the position of each task unique.
+     */
+    public enum TaskOrder {
+        LIST_POSITION(TTodoTask.COLUMN_LIST_POSITION),
+        // tasks without deadline (-1 or NULL, the column default) come last like in the task adapter;
+        // the key must never be NULL, because NULL fails both comparisons with a continuation token
+        DEADLINE("(CASE WHEN COALESCE(" + TTodoTask.COLUMN_DEADLINE + ", -1) < 0 THEN " + Long.MAX_VALUE + " ELSE " + TTodoTask.COLUMN_DEADLINE + " END)"),
+        PRIORITY(TTodoTask.COLUMN_PRIORITY);
+
+        private final String sortKey;
+
+        TaskOrder(String sortKey) {
+            this.sortKey = sortKey;
+        }
+    }
+
+    // returns a page of all tasks that are not in the bin
+    public static TaskPage getTaskPage(SQLiteDatabase db, TaskOrder order, String continuationToken, int pageSize) {
+        return getTaskPage(db, TTodoTask.COLUMN_TRASH + " =0", null, order, continuationToken, pageSize);
+    }
+
+    public static TaskPage getTaskPageOfList(SQLiteDatabase db, int listId, TaskOrder order, String continuationToken, int pageSize) {
+        String whereArgs[] = {String.valueOf(listId)};
+        return getTaskPage(db, TTodoTask.COLUMN_TRASH + " =0 AND " + TTodoTask.COLUMN_TODO_LIST_ID + " =?", whereArgs, order, continuationToken, pageSize);
+    }
+
+    public static TaskPage getBinPage(SQLiteDatabase db, TaskOrder order, String continuationToken, int pageSize) {
+        return getTaskPage(db, TTodoTask.COLUMN_TRASH + " >0", null, order, continuationToken, pageSize);
+    }
+
+    /**
+     * Returns at most {@param pageSize} tasks matching {@param where} that follow the position encoded
+     * in {@param continuationToken} (null for the first page). Instead of skipping an offset the query
+     * continues right after the sort key and id of the last delivered task. Only the subtasks of the
+     * tasks on the page are loaded.
+     */
+    private static TaskPage getTaskPage(SQLiteDatabase db, String where, String whereArgs[], TaskOrder order, String continuationToken, int pageSize) {
+
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("The page size must be positive.");
+
+        ArrayList<String> args = new ArrayList<>();
+        if (whereArgs != null)
+            Collections.addAll(args, whereArgs);
+
+        StringBuilder selection = new StringBuilder(where);
+        if (continuationToken != null) {
+            long position[] = parseContinuationToken(continuationToken);
+            long lastKey = position[0];
+            long lastId = position[1];
+            // the key is inlined, because a bound string would be compared as text with the expression
+            selection.append(" AND (").append(order.sortKey).append(" > ").append(lastKey)
+                    .append(" OR (").append(order.sortKey).append(" = ").append(lastKey)
+                    .append(" AND ").append(TTodoTask.COLUMN_ID).append(" > ").append(lastId).append("))");
+        }
+
+        String rawQuery = "SELECT *, " + order.sortKey + " AS " + SORT_KEY + " FROM " + TTodoTask.TABLE_NAME +
+                " WHERE " + selection +
+                " ORDER BY " + SORT_KEY + ", " + TTodoTask.COLUMN_ID +
+                " LIMIT " + (pageSize + 1) + ";"; // one more row tells whether there is another page
+
+        ArrayList<TodoTask> tasks = new ArrayList<>();
+        SparseArray<TodoTask> tasksById = new SparseArray<>();
+        String nextToken = null;
+
+        Cursor cursor = db.rawQuery(rawQuery, args.toArray(new String[args.size()]));
+        try {
+            if (cursor.moveToFirst()) {
+                TodoTaskRowMapper mapper = new TodoTaskRowMapper(cursor);
+                int sortKeyIndex = cursor.getColumnIndexOrThrow(SORT_KEY);
+                long lastKey = 0;
+                do {
+                    if (tasks.size() == pageSize) {
+                        nextToken = formatContinuationToken(lastKey, tasks.get(pageSize - 1).getId());
+                        break;
+                    }
+                    lastKey = cursor.getLong(sortKeyIndex);
+                    TodoTask task = mapper.map();
+                    tasks.add(task);
+                    tasksById.put(task.getId(), task);
+                } while (cursor.moveToNext());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (tasks.size() > 0) {
+            StringBuilder ids = new StringBuilder();
+            for (TodoTask task : tasks) {
+                if (ids.length() > 0)
+                    ids.append(",");
+                ids.append(task.getId());
+            }
+            attachSubTasks(db, tasksById, "t." + TTodoTask.COLUMN_ID + " IN (" + ids + ")");
+        }
+
+        return new TaskPage(tasks, nextToken);
+    }
+
+    // a continuation token holds the sort key and the id of the last task of a page: "<key>:<id>"
+    static String formatContinuationToken(long lastKey, long lastId) {
+        return lastKey + ":" + lastId;
+    }
+
+    // returns the sort key and the id of the last task of the previous page
+    static long[] parseContinuationToken(String continuationToken) {
+        try {
+            int separator = continuationToken.indexOf(':');
+            return new long[]{Long.parseLong(continuationToken.substring(0, separator)),
+                    Long.parseLong(continuationToken.substring(separator + 1))};
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + continuationToken, e);
+        }
+    }
+
+    // The version is taken from sqlite_sequence, which also counts the entries that were pruned already.
+    private static final String CHANGE_LOG_VERSION_QUERY = "SELECT seq FROM sqlite_sequence WHERE name = '" + TChangeLog.TABLE_NAME + "';";
+
+    /**
+     * Returns the version of the last change that was made to a list, task or subtask, or 0 if
+     * nothing was changed yet. Pass it to {@link #getChangesSince} later on to find out what has
+     * changed in the meantime.
+     */
+    public static long getChangeLogVersion(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery(CHANGE_LOG_VERSION_QUERY, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the changes after the given version ordered by version. A row that was changed several
+     * times shows up once per change.
+     *
+     * @return null if some of these changes were pruned already. The caller has to reload
+     * everything in that case.
+     */
+    public static ArrayList<ChangeLogEntry> getChangesSince(SQLiteDatabase db, long version) {
+
+        String columns[] = {TChangeLog.COLUMN_VERSION, TChangeLog.COLUMN_ENTITY, TChangeLog.COLUMN_ENTITY_ID, TChangeLog.COLUMN_OPERATION};
+        String whereArgs[] = {String.valueOf(version)};
+        ArrayList<ChangeLogEntry> changes = new ArrayList<ChangeLogEntry>();
+
+        // the first returned change has to directly follow the given version
+        long expectedVersion = version + 1;
+        Cursor cursor = db.query(TChangeLog.TABLE_NAME, columns, TChangeLog.COLUMN_VERSION + " > CAST(? AS INTEGER)", whereArgs, null, null, TChangeLog.COLUMN_VERSION);
+        try {
+            while (cursor.moveToNext()) {
+                ChangeLogEntry change = new ChangeLogEntry(cursor.getLong(0), cursor.getInt(1), cursor.getInt(2), cursor.getInt(3));
+                if (changes.isEmpty() && change.getVersion() != expectedVersion)
+                    return null;
+                changes.add(change);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (changes.isEmpty() && getChangeLogVersion(db) > version)
+            return null;
+
+        return changes;
+    }
+
+    // removes all but the last keep entries of the change log
+    public static int pruneChangeLog(SQLiteDatabase db, int keep) {
+        String whereArgs[] = {String.valueOf(getChangeLogVersion(db) - keep)};
+        int removed = db.delete(TChangeLog.TABLE_NAME, TChangeLog.COLUMN_VERSION + " <= CAST(? AS INTEGER)", whereArgs);
+
+        Log.i(TAG, removed + " entries removed from the change log");
+        return removed;
+    }
 
     public static ArrayList<TodoList> getAllToDoLists (SQLiteDatabase db) {
 
         ArrayList<TodoList> todoLists = new ArrayList<>();
+        SparseArray<TodoTask> tasksById = new SparseArray<>();
+
+        // One ordered join delivers every list followed by its tasks (lists without tasks yield a
+        // single row with NULL task columns). The subtasks of all these tasks are fetched by a second
+        // query. This replaces the former cascade of one query per list and one query per task.
+        String rawQuery = "SELECT l." + TTodoList.COLUMN_ID + " AS " + JOINED_LIST_ID + ", l." + TTodoList.COLUMN_NAME + " AS " + JOINED_LIST_NAME + ", t.*" +
+                " FROM " + TTodoList.TABLE_NAME + " l LEFT JOIN " + TTodoTask.TABLE_NAME + " t" +
+                " ON t." + TTodoTask.COLUMN_TODO_LIST_ID + " = l." + TTodoList.COLUMN_ID + " AND t." + TTodoTask.COLUMN_TRASH + "=0" +
+                " ORDER BY l." + TTodoList.COLUMN_ID + ", t." + TTodoTask.COLUMN_ID + ";";
 
         try {
-            Cursor cursor = db.query(TTodoList.TABLE_NAME, null, null, null, null, null, null);
+            Cursor cursor = db.rawQuery(rawQuery, null);
 
             try {
+                TodoList currentList = null;
                 if (cursor.moveToFirst()) {
+                    int listIdIndex = cursor.getColumnIndexOrThrow(JOINED_LIST_ID);
+                    int listNameIndex = cursor.getColumnIndexOrThrow(JOINED_LIST_NAME);
+                    int taskIdIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_ID);
+                    TodoTaskRowMapper mapper = new TodoTaskRowMapper(cursor);
                     do {
-                        int id = cursor.getInt(cursor.getColumnIndex(TTodoList.COLUMN_ID));
-                        String listName = cursor.getString(cursor.getColumnIndex(TTodoList.COLUMN_NAME));
-
-                        TodoList currentList = new TodoList();
-                        currentList.setName(listName);
-                        currentList.setId(id);
-                        currentList.setTasks(getTasksByListId(db, id, listName));
-                        todoLists.add(currentList);
+                        int listId = cursor.getInt(listIdIndex);
+                        if (currentList == null || currentList.getId() != listId) {
+                            currentList = new TodoList();
+                            currentList.setId(listId);
+                            currentList.setName(cursor.getString(listNameIndex));
+                            currentList.setUnchanged();
+                            todoLists.add(currentList);
+                        }
+
+                        if (!cursor.isNull(taskIdIndex)) {
+                            TodoTask currentTask = mapper.map();
+                            currentTask.setListName(currentList.getName());
+                            currentList.getTasks().add(currentTask);
+                            tasksById.put(currentTask.getId(), currentTask);
+                        }
                     } while (cursor.moveToNext());
                 }
             } finally {
                 cursor.close();
             }
+
+            attachSubTasks(db, tasksById, "t." + TTodoTask.COLUMN_TRASH + "=0 AND t." + TTodoTask.COLUMN_TODO_LIST_ID + " IN (SELECT " + TTodoList.COLUMN_ID + " FROM " + TTodoList.TABLE_NAME + ")");
         } catch (Exception ex) {
         }
 
         return todoLists;
     }
 
-    private static ArrayList<TodoTask> getTasksByListId(SQLiteDatabase db, int listId, String listName) {
-
-        ArrayList<TodoTask> tasks = new ArrayList<TodoTask>();
-        String where = TTodoTask.COLUMN_TODO_LIST_ID + " = " + listId + " AND " + TTodoTask.COLUMN_TRASH + "=0";
-        Cursor cursor = db.query(TTodoTask.TABLE_NAME, null, where, null, null, null, null);
+    /**
+     * Returns one summary per list with figures that are aggregated by SQLite. The rules for overdue
+     * and soon due tasks are those of TodoTask#getDeadlineColor: an open task with a deadline is
+     * overdue after its deadline and due soon from its reminder time on (or {@param defaultReminderTime}
+     * seconds before the deadline if it has no reminder time).
+     *
+     * @param now current timestamp in seconds
+     */
+    public static ArrayList<TodoListSummary> getTodoListSummaries(SQLiteDatabase db, long now, long defaultReminderTime) {
+
+        String open = "t." + TTodoTask.COLUMN_DONE + "=0 AND t." + TTodoTask.COLUMN_DEADLINE + " > 0";
+        // the arguments are bound as strings, so they are cast to be compared as numbers
+        String nowArg = "CAST(?1 AS INTEGER)";
+        String reminderStart = "(CASE WHEN t." + TTodoTask.COLUMN_DEADLINE_WARNING_TIME + " > 0 THEN t." + TTodoTask.COLUMN_DEADLINE_WARNING_TIME +
+                " ELSE t." + TTodoTask.COLUMN_DEADLINE + " - CAST(?2 AS INTEGER) END)";
+
+        String rawQuery = "SELECT l." + TTodoList.COLUMN_ID + ", l." + TTodoList.COLUMN_NAME +
+                ", COUNT(t." + TTodoTask.COLUMN_ID + ")" +
+                ", SUM(CASE WHEN t." + TTodoTask.COLUMN_DONE + " > 0 THEN 1 ELSE 0 END)" +
+                ", MIN(CASE WHEN " + open + " THEN t." + TTodoTask.COLUMN_DEADLINE + " END)" +
+                ", SUM(CASE WHEN " + open + " AND t." + TTodoTask.COLUMN_DEADLINE + " < " + nowArg + " THEN 1 ELSE 0 END)" +
+                ", SUM(CASE WHEN " + open + " AND t." + TTodoTask.COLUMN_DEADLINE + " > " + nowArg + " AND " + nowArg + " >= " + reminderStart + " THEN 1 ELSE 0 END)" +
+                " FROM " + TTodoList.TABLE_NAME + " l LEFT JOIN " + TTodoTask.TABLE_NAME + " t" +
+                " ON t." + TTodoTask.COLUMN_TODO_LIST_ID + " = l." + TTodoList.COLUMN_ID + " AND t." + TTodoTask.COLUMN_TRASH + "=0" +
+                " GROUP BY l." + TTodoList.COLUMN_ID +
+                " ORDER BY l." + TTodoList.COLUMN_ID + ";";
+        String selectionArgs[] = {String.valueOf(now), String.valueOf(defaultReminderTime)};
+
+        ArrayList<TodoListSummary> summaries = new ArrayList<>();
 
         try {
-            if(cursor.moveToFirst()) {
-                do {
-
-                    TodoTask currentTask = extractTodoTask(cursor);
-                    currentTask.setListName(listName);
-                    currentTask.setSubTasks(getSubTasksByTaskId(db, currentTask.getId()));
-                    tasks.add(currentTask);
-                } while (cursor.moveToNext());
+            Cursor cursor = db.rawQuery(rawQuery, selectionArgs);
+            try {
+                if (cursor.moveToFirst()) {
+                    do {
+                        long nextDeadline = cursor.isNull(4) ? -1 : cursor.getLong(4);
+                        summaries.add(new TodoListSummary(cursor.getInt(0), cursor.getString(1), cursor.getInt(2),
+                                cursor.getInt(3), nextDeadline, cursor.getInt(5), cursor.getInt(6)));
+                    } while (cursor.moveToNext());
+                }
+            } finally {
+                cursor.close();
             }
-        }
-        finally {
-            cursor.close();
+        } catch (Exception ex) {
+            Log.e(TAG, "Could not query the list summaries.", ex);
         }
 
-        return tasks;
+        return summaries;
+    }
+
+    // returns the subtasks of the given tasks by task id, tasks without subtasks are not contained
+    public static SparseArray<ArrayList<TodoSubTask>> getSubTasksOfTasks(SQLiteDatabase db, int taskIds[]) {
+        if (taskIds == null || taskIds.length == 0)
+            return new SparseArray<>();
+
+        return querySubTasks(db, "t." + TTodoTask.COLUMN_ID + " IN (" + toIdList(taskIds) + ")");
+    }
+
+    /**
+     * Loads the subtasks of all tasks matching {@param taskSelection} with a single query and sets
+     * them as the subtasks of the corresponding task of {@param tasksById}. Every task of
+     * {@param tasksById} is marked as loaded, tasks without subtasks get an empty list. The selection
+     * refers to the task table by its alias "t".
+     */
+    private static void attachSubTasks(SQLiteDatabase db, SparseArray<TodoTask> tasksById, String taskSelection) {
+
+        if (tasksById.size() == 0)
+            return;
+
+        SparseArray<ArrayList<TodoSubTask>> subTasks = querySubTasks(db, taskSelection);
+        for (int i = 0; i < tasksById.size(); i++) {
+            ArrayList<TodoSubTask> subTasksOfTask = subTasks.get(tasksById.keyAt(i));
+            tasksById.valueAt(i).setSubTasks(subTasksOfTask == null ? new ArrayList<TodoSubTask>() : subTasksOfTask);
+        }
     }
 
-    private static ArrayList<TodoSubTask> getSubTasksByTaskId(SQLiteDatabase db, long taskId) {
+    // Subtasks are delivered ordered by their task, so consecutive rows mostly belong to the same task.
+    // Subtasks in the bin are left out unless their task is in the bin as well, which is what the
+    // subtask counters of the tasks count.
+    private static SparseArray<ArrayList<TodoSubTask>> querySubTasks(SQLiteDatabase db, String taskSelection) {
+
+        SparseArray<ArrayList<TodoSubTask>> subTasksByTaskId = new SparseArray<>();
 
-        ArrayList<TodoSubTask> subTasks = new ArrayList<TodoSubTask>();
-        String where = TTodoSubTask.COLUMN_TASK_ID + " = " + taskId;
-        Cursor cursor = db.query(TTodoSubTask.TABLE_NAME, null, where, null, null, null, null);
-        cursor.moveToFirst();
+        String rawQuery = "SELECT s.* FROM " + TTodoSubTask.TABLE_NAME + " s INNER JOIN " + TTodoTask.TABLE_NAME + " t" +
+                " ON s." + TTodoSubTask.COLUMN_TASK_ID + " = t." + TTodoTask.COLUMN_ID +
+                " WHERE (" + taskSelection + ") AND (s." + TTodoSubTask.COLUMN_TRASH + " = 0 OR t." + TTodoTask.COLUMN_TRASH + " > 0)" +
+                " ORDER BY s." + TTodoSubTask.COLUMN_TASK_ID + ", s." + TTodoSubTask.COLUMN_ID + ";";
+        Cursor cursor = db.rawQuery(rawQuery, null);
 
         try {
-            if(cursor.moveToFirst()) {
+            int currentTaskId = -1;
+            ArrayList<TodoSubTask> currentSubTasks = null;
+            if (cursor.moveToFirst()) {
+                TodoSubTaskRowMapper mapper = new TodoSubTaskRowMapper(cursor);
                 do {
-                    int id = cursor.getInt(cursor.getColumnIndex(TTodoSubTask.COLUMN_ID));
-                    String title = cursor.getString(cursor.getColumnIndex(TTodoSubTask.COLUMN_TITLE));
-                    boolean done = cursor.getInt(cursor.getColumnIndex(TTodoSubTask.COLUMN_DONE)) > 0;
-                    boolean trash = cursor.getInt(cursor.getColumnIndex(TTodoSubTask.COLUMN_TRASH)) > 0;
-
-                    TodoSubTask currentSubTask = new TodoSubTask();
-                    currentSubTask.setId(id);
-                    currentSubTask.setName(title);
-                    currentSubTask.setDone(done);
-                    currentSubTask.setTaskId(taskId);
-                    currentSubTask.setInTrash(trash);
-                    subTasks.add(currentSubTask);
+                    int taskId = mapper.getTaskId();
+                    if (currentSubTasks == null || currentTaskId != taskId) {
+                        currentTaskId = taskId;
+                        currentSubTasks = new ArrayList<>();
+                        subTasksByTaskId.put(taskId, currentSubTasks);
+                    }
+                    currentSubTasks.add(mapper.map());
                 } while (cursor.moveToNext());
             }
         }
         finally {
             cursor.close();
         }
-
-        return subTasks;
+        return subTasksByTaskId;
     }
 
     public static int saveTodoSubTaskInDb(SQLiteDatabase db, TodoSubTask subTask) {
 
         int returnCode;
 
-        if(subTask.getDBState() != ObjectStates.NO_DB_ACTION) {
-            ContentValues values = new ContentValues();
-            values.put(TTodoSubTask.COLUMN_TITLE, subTask.getName());
-            values.put(TTodoSubTask.COLUMN_DONE, subTask.getDone());
-            values.put(TTodoSubTask.COLUMN_TASK_ID, subTask.getTaskId());
-            values.put(TTodoSubTask.COLUMN_TRASH, subTask.isInTrash());
+        // an update writes only the changed columns and is skipped if there are none
+        int fields = subTask.getDBState() == ObjectStates.INSERT_TO_DB ? TodoBatchWriter.ALL_FIELDS : TodoBatchWriter.writableFields(subTask);
+
+        if(subTask.getDBState() != ObjectStates.NO_DB_ACTION && fields != 0) {
+            ContentValues values = TodoBatchWriter.contentValues(subTask, fields);
+            int bytes = TodoBatchWriter.sizeOf(subTask, fields);
 
             if(subTask.getDBState() == ObjectStates.INSERT_TO_DB) {
                 try {
                     returnCode = (int) db.insertOrThrow(TTodoSubTask.TABLE_NAME, null, values);
-                    Log.d(TAG, "Todo subtask " + subTask.getName() + " was inserted into the database (return code: " + returnCode + ").");
+                    subTask.setId(returnCode);
+                    WriteStatistics.record(bytes);
+                    Log.d(TAG, "Todo subtask " + subTask.getName() + " was inserted into the database (return code: " + returnCode + ", " + bytes + " bytes).");
                 }
                 catch(SQLException sqle){
                     sqle.printStackTrace();
@@ -397,41 +966,186 @@ public class DBQueryHandler {
                 String[] whereArgs = {String.valueOf(subTask.getId())};
                 db.update(TTodoSubTask.TABLE_NAME, values, whereClause, whereArgs);
                 returnCode = subTask.getId();
-                Log.d(TAG, "Todo subtask " + subTask.getName() + " was updated (return code: "+returnCode+").");
+                WriteStatistics.record(bytes);
+                Log.d(TAG, "Todo subtask " + subTask.getName() + " was updated (return code: "+returnCode+", " + bytes + " bytes).");
             } else
                 returnCode = NO_CHANGES;
 
             subTask.setUnchanged();
             //subTask.setDbState(ObjectStates.NO_DB_ACTION);
         } else {
+            subTask.setUnchanged();
             returnCode = NO_CHANGES;
         }
 
         return returnCode;
     }
 
+    /**
+     * Moves {@param task} within its list directly behind {@param previous}, or to the top of the list
+     * if {@param previous} is null. Positions are sparse, so the task gets a position in the gap
+     * between its new neighbours and only its position column is written; other unsaved changes of
+     * the task stay unsaved. If the move leaves less than {@link #MIN_GAP} to a neighbour, the list
+     * should be renumbered in the background (see {@link #rebalanceList}). Only if the gap is used up
+     * before that happened, the list is renumbered right away. Like every write, this must not be
+     * called on the main thread.
+     *
+     * @return the new position of the task (left) and whether its list should be renumbered (right)
+     */
+    public static Tuple<Integer, Boolean> moveTask(SQLiteDatabase db, TodoTask task, TodoTask previous) {
+        db.beginTransaction();
+        try {
+            Tuple<Integer, Boolean> position = findPositionBehind(db, task, previous);
+            if (position.getLeft() == NO_POSITION) {
+                rebalanceList(db, task.getListId());
+                position = findPositionBehind(db, task, previous);
+            }
+
+            SQLiteStatement update = db.compileStatement("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_LIST_POSITION + " = ?" +
+                    " WHERE " + TTodoTask.COLUMN_ID + " = ?;");
+            try {
+                update.bindLong(1, position.getLeft());
+                update.bindLong(2, task.getId());
+                update.executeUpdateDelete();
+            } finally {
+                update.close();
+            }
+            db.setTransactionSuccessful();
+
+            task.setPositionInList(position.getLeft());
+            task.setSaved(TodoTask.FIELD_LIST_POSITION);
+            WriteStatistics.record(TodoBatchWriter.sizeOf(task, TodoTask.FIELD_LIST_POSITION));
+
+            Log.d(TAG, "Todo task " + task.getName() + " was moved to position " + position.getLeft() + ".");
+            return position;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Renumbers all tasks of the list, including those in the bin, in their current order with gaps
+     * of {@link #POSITION_STEP}. Rows that already have their new position are not written.
+     *
+     * @return the number of written rows
+     */
+    public static int rebalanceList(SQLiteDatabase db, int listId) {
+        String selectionArgs[] = {String.valueOf(listId)};
+        ArrayList<Integer> ids = new ArrayList<>();
+        ArrayList<Integer> positions = new ArrayList<>();
+
+        // read completely before writing, the updates would change the order of the cursor
+        Cursor cursor = db.rawQuery("SELECT " + TTodoTask.COLUMN_ID + ", " + TTodoTask.COLUMN_LIST_POSITION + " FROM " + TTodoTask.TABLE_NAME +
+                " WHERE " + TTodoTask.COLUMN_TODO_LIST_ID + " = CAST(?1 AS INTEGER)" +
+                " ORDER BY " + TTodoTask.COLUMN_LIST_POSITION + ", " + TTodoTask.COLUMN_ID + ";", selectionArgs);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+                positions.add(cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int rows = 0;
+        SQLiteStatement update = db.compileStatement("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_LIST_POSITION + " = ?" +
+                " WHERE " + TTodoTask.COLUMN_ID + " = ?;");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                long position = (long) POSITION_STEP * (i + 1);
+                if (positions.get(i) == position)
+                    continue;
+                update.bindLong(1, position);
+                update.bindLong(2, ids.get(i));
+                rows += update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+        }
+
+        Log.i(TAG, "Positions of list " + listId + " renumbered (" + rows + " of " + ids.size() + " tasks written).");
+        return rows;
+    }
+
+    // New tasks and tasks that were put into another list without a position are appended to the
+    // end of their list.
+    static void placeNewTask(SQLiteDatabase db, TodoTask task) {
+        int positionFields = task.getDirtyFields() & (TodoTask.FIELD_LIST_ID | TodoTask.FIELD_LIST_POSITION);
+        if (task.getDBState() == ObjectStates.INSERT_TO_DB || (task.getDBState() == ObjectStates.UPDATE_DB && positionFields == TodoTask.FIELD_LIST_ID))
+            task.setPositionInList(getEndPosition(db, task.getListId()));
+    }
+
+    private static int getEndPosition(SQLiteDatabase db, int listId) {
+        String selectionArgs[] = {String.valueOf(listId)};
+        Long last = queryPosition(db, LAST_POSITION_QUERY, selectionArgs);
+        if (last == null)
+            return POSITION_STEP;
+        if (last + POSITION_STEP > MAX_POSITION) {
+            rebalanceList(db, listId);
+            last = queryPosition(db, LAST_POSITION_QUERY, selectionArgs);
+        }
+        return (int) (last + POSITION_STEP);
+    }
+
+    // A free position behind previous (in front of the first task if it is null) or NO_POSITION
+    // (left), and whether less than MIN_GAP is left to a neighbour at this position (right).
+    private static Tuple<Integer, Boolean> findPositionBehind(SQLiteDatabase db, TodoTask task, TodoTask previous) {
+        String listId = String.valueOf(task.getListId());
+        String taskId = String.valueOf(task.getId());
+
+        if (previous == null) {
+            Long first = queryPosition(db, FIRST_POSITION_QUERY, new String[]{listId, taskId});
+            if (first == null)
+                return Tuple.makePair(POSITION_STEP, false);
+            return Tuple.makePair(first - POSITION_STEP >= MIN_POSITION ? (int) (first - POSITION_STEP) : NO_POSITION, false);
+        }
+
+        Long lower = queryPosition(db, TASK_POSITION_QUERY, new String[]{String.valueOf(previous.getId())});
+        if (lower == null) // the neighbour is gone meanwhile
+            return Tuple.makePair(getEndPosition(db, task.getListId()), false);
+
+        Long upper = queryPosition(db, NEXT_POSITION_QUERY, new String[]{listId, taskId, String.valueOf(lower), String.valueOf(previous.getId())});
+        if (upper == null)
+            return Tuple.makePair(lower + POSITION_STEP <= MAX_POSITION ? (int) (lower + POSITION_STEP) : NO_POSITION, false);
+        if (upper - lower < 2)
+            return Tuple.makePair(NO_POSITION, true);
+        return Tuple.makePair((int) (lower + (upper - lower) / 2), (upper - lower) / 2 < MIN_GAP);
+    }
+
+    private static Long queryPosition(SQLiteDatabase db, String query, String selectionArgs[]) {
+        Cursor cursor = db.rawQuery(query, selectionArgs);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0))
+                return cursor.getLong(0);
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+
     public static int saveTodoTaskInDb(SQLiteDatabase db, TodoTask todoTask) {
 
         int returnCode;
 
-        if(todoTask.getDBState() != ObjectStates.NO_DB_ACTION) {
+        placeNewTask(db, todoTask);
+
+        // an update writes only the changed columns and is skipped if there are none
+        int fields = todoTask.getDBState() == ObjectStates.INSERT_TO_DB ? TodoBatchWriter.ALL_FIELDS : TodoBatchWriter.writableFields(todoTask);
 
-            ContentValues values = new ContentValues();
-            values.put(TTodoTask.COLUMN_NAME, todoTask.getName());
-            values.put(TTodoTask.COLUMN_DESCRIPTION, todoTask.getDescription());
-            values.put(TTodoTask.COLUMN_PROGRESS, todoTask.getProgress());
-            values.put(TTodoTask.COLUMN_DEADLINE, todoTask.getDeadline());
-            values.put(TTodoTask.COLUMN_DEADLINE_WARNING_TIME, todoTask.getReminderTime());
-            values.put(TTodoTask.COLUMN_PRIORITY, todoTask.getPriority().getValue());
-            values.put(TTodoTask.COLUMN_TODO_LIST_ID, todoTask.getListId());
-            values.put(TTodoTask.COLUMN_LIST_POSITION, todoTask.getListPosition());
-            values.put(TTodoTask.COLUMN_DONE, todoTask.getDone());
-            values.put(TTodoTask.COLUMN_TRASH, todoTask.isInTrash());
+        if(todoTask.getDBState() != ObjectStates.NO_DB_ACTION && fields != 0) {
+
+            ContentValues values = TodoBatchWriter.contentValues(todoTask, fields);
+            int bytes = TodoBatchWriter.sizeOf(todoTask, fields);
 
             if(todoTask.getDBState() == ObjectStates.INSERT_TO_DB) {
                 try {
                     returnCode = (int) db.insertOrThrow(TTodoTask.TABLE_NAME, null, values);
-                    Log.d(TAG, "Todo task " + todoTask.getName() + " was inserted into the database (return code: " + returnCode + ").");
+                    todoTask.setId(returnCode);
+                    WriteStatistics.record(bytes);
+                    Log.d(TAG, "Todo task " + todoTask.getName() + " was inserted into the database (return code: " + returnCode + ", " + bytes + " bytes).");
                 }
                 catch (SQLException e) {
                     e.printStackTrace();
@@ -442,15 +1156,18 @@ public class DBQueryHandler {
                 String[] whereArgs = {String.valueOf(todoTask.getId())};
                 db.update(TTodoTask.TABLE_NAME, values, whereClause, whereArgs);
                 returnCode = todoTask.getId();
-                Log.d(TAG, "Todo task " + todoTask.getName() + " was updated (return code: "+returnCode+").");
+                WriteStatistics.record(bytes);
+                Log.d(TAG, "Todo task " + todoTask.getName() + " was updated (return code: "+returnCode+", " + bytes + " bytes).");
             } else
                 returnCode = NO_CHANGES;
 
             todoTask.setUnchanged();
             //todoTask.setDbState(ObjectStates.NO_DB_ACTION);
 
-        } else
-          returnCode = NO_CHANGES;
+        } else {
+            todoTask.setUnchanged();
+            returnCode = NO_CHANGES;
+        }
 
         return returnCode;
     }
@@ -462,14 +1179,19 @@ public class DBQueryHandler {
 
         // Log.i(TAG, "Changes of list " + currentList.getName() + " were stored in the database.");
 
-        if(todoList.getDBState() != ObjectStates.NO_DB_ACTION) {
-            ContentValues values = new ContentValues();
-            values.put(TTodoList.COLUMN_NAME, todoList.getName());
+        // an update writes only the changed columns and is skipped if there are none
+        int fields = todoList.getDBState() == ObjectStates.INSERT_TO_DB ? TodoBatchWriter.ALL_FIELDS : TodoBatchWriter.writableFields(todoList);
+
+        if(todoList.getDBState() != ObjectStates.NO_DB_ACTION && fields != 0) {
+            ContentValues values = TodoBatchWriter.contentValues(todoList, fields);
+            int bytes = TodoBatchWriter.sizeOf(todoList, fields);
 
             if(todoList.getDBState() == ObjectStates.INSERT_TO_DB) {
                 try {
                     returnCode = (int) db.insertOrThrow(TTodoList.TABLE_NAME, null, values);
-                    Log.d(TAG, "Todo list " + todoList.getName() + " was inserted into the database (return code: " + returnCode + ").");
+                    todoList.setId(returnCode);
+                    WriteStatistics.record(bytes);
+                    Log.d(TAG, "Todo list " + todoList.getName() + " was inserted into the database (return code: " + returnCode + ", " + bytes + " bytes).");
                 }
                 catch (SQLException e) {
                     e.printStackTrace();
@@ -481,19 +1203,54 @@ public class DBQueryHandler {
                 String[] whereArgs = {String.valueOf(todoList.getId())};
                 db.update(TTodoList.TABLE_NAME, values, whereClause, whereArgs);
                 returnCode =  todoList.getId();
-                Log.d(TAG, "Todo list " + todoList.getName() + " was updated (return code: "+returnCode+").");
+                WriteStatistics.record(bytes);
+                Log.d(TAG, "Todo list " + todoList.getName() + " was updated (return code: "+returnCode+", " + bytes + " bytes).");
             } else
                 returnCode = NO_CHANGES;
 
             todoList.setUnchanged();
             //todoList.setDbState(ObjectStates.NO_DB_ACTION);
         } else {
+            todoList.setUnchanged();
             returnCode = NO_CHANGES;
         }
 
         return returnCode;
     }
 
+    /**
+     * Writes all created or changed objects of {@param todos} within a single transaction. Objects
+     * without changes are skipped. Subtasks should follow their task, because a newly inserted task
+     * passes its id on to its subtasks.
+     *
+     * @return the database id of each object in the order of {@param todos}. Objects that were not
+     * written get {@link #NO_CHANGES} or {@link #NO_INSERT_TO_DB} like in the single object methods.
+     */
+    public static int[] saveTodosInDb(SQLiteDatabase db, Collection<? extends BaseTodo> todos) {
+
+        int ids[] = new int[todos.size()];
+        int written = 0;
+
+        TodoBatchWriter writer = new TodoBatchWriter(db);
+        db.beginTransaction();
+        try {
+            int i = 0;
+            for (BaseTodo todo : todos) {
+                ids[i] = writer.write(todo);
+                if (ids[i] >= 0)
+                    written++;
+                i++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            writer.close();
+        }
+
+        Log.d(TAG, written + " of " + ids.length + " objects were written to the database.");
+        return ids;
+    }
+
     public static int deleteTodoSubTask(SQLiteDatabase db, TodoSubTask subTask) {
         long id = subTask.getId();
 
@@ -503,20 +1260,7 @@ public class DBQueryHandler {
     }
 
     public static int putTaskInTrash(SQLiteDatabase db, TodoTask todoTask) {
-        long id = todoTask.getId();
-        ContentValues args = new ContentValues();
-        args.put(TTodoTask.COLUMN_TRASH, 1);
-
-        int removedSubTask = 0;
-        for(TodoSubTask subTask : todoTask.getSubTasks())
-            removedSubTask += putSubtaskInTrash(db, subTask);
-
-        Log.i(TAG, removedSubTask + " subtasks put into bin");
-
-        String where = TTodoTask.COLUMN_ID + " = ?";
-        String whereArgs[] = {String.valueOf(id)};
-
-        return db.update(TTodoTask.TABLE_NAME, args, where, whereArgs);
+        return setTaskTrashState(db, todoTask.getId(), true);
     }
 
     public static int putSubtaskInTrash(SQLiteDatabase db, TodoSubTask subTask) {
@@ -531,20 +1275,7 @@ public class DBQueryHandler {
     }
 
     public static int recoverTasks(SQLiteDatabase db, TodoTask todoTask) {
-        long id = todoTask.getId();
-        ContentValues args = new ContentValues();
-        args.put(TTodoTask.COLUMN_TRASH, 0);
-
-        int removedSubTask = 0;
-        for(TodoSubTask subTask : todoTask.getSubTasks())
-            removedSubTask += recoverSubtasks(db, subTask);
-
-        Log.i(TAG, removedSubTask + " subtasks put into bin");
-
-        String where = TTodoTask.COLUMN_ID + " = ?";
-        String whereArgs[] = {String.valueOf(id)};
-
-        return db.update(TTodoTask.TABLE_NAME, args, where, whereArgs);
+        return setTaskTrashState(db, todoTask.getId(), false);
     }
 
     public static int recoverSubtasks(SQLiteDatabase db, TodoSubTask subTask) {
@@ -558,4 +1289,46 @@ public class DBQueryHandler {
         return db.update(TTodoSubTask.TABLE_NAME, args, where, whereArgs);
     }
 
+    // Moves the task and all of its subtasks into the bin or out of it within one transaction. The
+    // subtasks are changed while their task is in the bin, so that the triggers do not count the task
+    // once for each of them (see TTodoTask). Its counters are reset or counted here instead.
+    private static int setTaskTrashState(SQLiteDatabase db, int taskId, boolean inTrash) {
+
+        String whereArgs[] = {String.valueOf(taskId)};
+        int changedSubTasks, changedTasks;
+
+        ContentValues subTaskArgs = new ContentValues();
+        subTaskArgs.put(TTodoSubTask.COLUMN_TRASH, inTrash ? 1 : 0);
+        String subTaskSelection = TTodoSubTask.COLUMN_TASK_ID + " = ?";
+
+        db.beginTransaction();
+        try {
+            if (inTrash) {
+                ContentValues taskArgs = new ContentValues();
+                taskArgs.put(TTodoTask.COLUMN_TRASH, 1);
+                taskArgs.put(TTodoTask.COLUMN_TRASHED_AT, Helper.getCurrentTimestamp());
+                taskArgs.put(TTodoTask.COLUMN_NUM_SUBTASKS, 0);
+                taskArgs.put(TTodoTask.COLUMN_NUM_SUBTASKS_DONE, 0);
+                changedTasks = db.update(TTodoTask.TABLE_NAME, taskArgs, TTodoTask.COLUMN_ID + " = ?", whereArgs);
+                changedSubTasks = db.update(TTodoSubTask.TABLE_NAME, subTaskArgs, subTaskSelection, whereArgs);
+            } else {
+                changedSubTasks = db.update(TTodoSubTask.TABLE_NAME, subTaskArgs, subTaskSelection, whereArgs);
+                SQLiteStatement recover = db.compileStatement("UPDATE " + TTodoTask.TABLE_NAME + " SET " + TTodoTask.COLUMN_TRASH + " = 0, " +
+                        TTodoTask.COLUMN_TRASHED_AT + " = NULL, " + TTodoTask.subTaskCounters("?1") + " WHERE " + TTodoTask.COLUMN_ID + " = ?1;");
+                try {
+                    recover.bindLong(1, taskId);
+                    changedTasks = recover.executeUpdateDelete();
+                } finally {
+                    recover.close();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.i(TAG, changedSubTasks + (inTrash ? " subtasks put into bin" : " subtasks recovered from bin"));
+        return changedTasks;
+    }
+
 }
@@ -0,0 +1,435 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports all lists, tasks and subtasks (including the bin) to a gzip compressed JSON file and
+ * restores them from it.
+ *
+ * Both directions stream: rows go from the cursor straight to the {@link JsonWriter} and from the
+ * {@link JsonReader} straight into compiled insert statements, so memory use does not depend on
+ * the size of the database. A backup looks like
+ *
+ *   {"format": "privacy-friendly-todo-list", "version": 1, "schema": 6,
+ *    "tables": {"todo_list": [{"_id": 1, "name": "..."}, ...], "todo_task": [...], "todo_subtask": [...]}}
+ *
+ * Restoring replaces all lists, tasks and subtasks by those of the backup, the rows keep their
+ * ids. Columns the current schema does not know are skipped, missing ones get their default value.
+ */
+
+public class DatabaseBackup {
+
+    private static final String TAG = DatabaseBackup.class.getSimpleName();
+
+    public static final String FORMAT = "privacy-friendly-todo-list";
+    public static final int FORMAT_VERSION = 1;
+    public static final String FILE_NAME = "todo-list-backup.json.gz";
+
+    // rows per transaction while restoring
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    // the rows of a backup are collected in temporary tables with this prefix before they replace
+    // the content of the real tables
+    private static final String STAGING_PREFIX = "restore_";
+
+    private static final String KEY_FORMAT = "format";
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_SCHEMA = "schema";
+    private static final String KEY_TABLES = "tables";
+
+    // referenced tables come first
+    private static final String TABLES[] = {TTodoList.TABLE_NAME, TTodoTask.TABLE_NAME, TTodoSubTask.TABLE_NAME};
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DatabaseBackup() {
+    }
+
+    /**
+     * Writes all rows of the list, task and subtask tables to {@param out} and closes it. The rows
+     * are read in one transaction, so the backup is consistent even if the app writes meanwhile.
+     *
+     * @return the number of exported rows
+     */
+    public static int export(SQLiteDatabase db, OutputStream out) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        int rows = 0;
+
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(out, BUFFER_SIZE), "UTF-8"), BUFFER_SIZE));
+        db.beginTransactionNonExclusive();
+        try {
+            writer.beginObject();
+            writer.name(KEY_FORMAT).value(FORMAT);
+            writer.name(KEY_VERSION).value(FORMAT_VERSION);
+            writer.name(KEY_SCHEMA).value(db.getVersion());
+            writer.name(KEY_TABLES).beginObject();
+            for (String table : TABLES) {
+                writer.name(table);
+                rows += exportTable(db, table, writer);
+            }
+            writer.endObject();
+            writer.endObject();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            writer.close();
+        }
+
+        Log.i(TAG, rows + " rows exported in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return rows;
+    }
+
+    private static int exportTable(SQLiteDatabase db, String table, JsonWriter writer) throws IOException {
+        int rows = 0;
+        Cursor cursor = db.query(table, null, null, null, null, null, null);
+        try {
+            String columns[] = cursor.getColumnNames();
+            writer.beginArray();
+            while (cursor.moveToNext()) {
+                writer.beginObject();
+                for (int i = 0; i < columns.length; i++) {
+                    writer.name(columns[i]);
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            writer.nullValue();
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            writer.value(cursor.getLong(i));
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            writer.value(cursor.getDouble(i));
+                            break;
+                        default:
+                            writer.value(cursor.getString(i));
+                            break;
+                    }
+                }
+                writer.endObject();
+                rows++;
+            }
+            writer.endArray();
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Reads a backup written by {@link #export} from {@param in} and closes it.
+     *
+     * The rows are first inserted into temporary tables, every {@param batchSize} rows in a
+     * transaction of their own. Once the whole backup was read, a single transaction empties the
+     * list, task and subtask tables and copies the rows over. Unlike INSERT OR REPLACE, the DELETE
+     * and INSERT statements run all triggers, so the search index and the subtask counters stay
+     * in step. If the backup is broken, the database is left as it was.
+     *
+     * @return the number of restored rows
+     */
+    public static int restore(SQLiteDatabase db, InputStream in, int batchSize) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        RowInserter inserter = new RowInserter(db, batchSize);
+        boolean tablesRead = false;
+
+        JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new GZIPInputStream(in, BUFFER_SIZE), "UTF-8"), BUFFER_SIZE));
+        try {
+            boolean formatChecked = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (KEY_FORMAT.equals(name)) {
+                    if (!FORMAT.equals(reader.nextString()))
+                        throw new IOException("Not a backup of this app.");
+                    formatChecked = true;
+                } else if (KEY_VERSION.equals(name)) {
+                    int version = reader.nextInt();
+                    if (version > FORMAT_VERSION)
+                        throw new IOException("Backup format " + version + " is not supported.");
+                } else if (KEY_TABLES.equals(name)) {
+                    if (!formatChecked)
+                        throw new IOException("Not a backup of this app.");
+                    restoreTables(reader, inserter);
+                    tablesRead = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            inserter.commit();
+
+            // a backup without tables would silently empty the database
+            if (!tablesRead)
+                throw new IOException("The backup contains no tables.");
+            replaceTables(db, inserter.getStagedTables());
+        } finally {
+            inserter.close();
+            dropStagingTables(db);
+            reader.close();
+        }
+
+        // the triggers logged every restored row, loaders have to start from scratch anyway
+        DBQueryHandler.pruneChangeLog(db, 0);
+
+        Log.i(TAG, inserter.getRowCount() + " rows restored in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return inserter.getRowCount();
+    }
+
+    // Empties the tables (subtasks first) and fills them from the staging tables (lists first). A
+    // table that was missing in the backup stays empty.
+    private static void replaceTables(SQLiteDatabase db, HashSet<String> stagedTables) {
+        db.beginTransaction();
+        try {
+            for (int i = TABLES.length - 1; i >= 0; i--)
+                db.delete(TABLES[i], null, null);
+            for (String table : TABLES) {
+                if (stagedTables.contains(table))
+                    db.execSQL("INSERT INTO " + table + " SELECT * FROM " + getStagingTable(table) + ";");
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static String getStagingTable(String table) {
+        return "temp." + STAGING_PREFIX + table;
+    }
+
+    private static void dropStagingTables(SQLiteDatabase db) {
+        for (String table : TABLES)
+            db.execSQL("DROP TABLE IF EXISTS " + getStagingTable(table) + ";");
+    }
+
+    // Creates an empty staging table from the definition of the real one, so the columns come in
+    // the same order and missing columns get the same default values. Temporary tables only exist
+    // on one connection; like all writes, the ones of a restore run on the primary connection.
+    private static void createStagingTable(SQLiteDatabase db, String table) {
+        String definition;
+        Cursor cursor = db.rawQuery("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?;", new String[]{table});
+        try {
+            if (!cursor.moveToFirst())
+                throw new SQLiteException("Table " + table + " does not exist.");
+            definition = cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+
+        db.execSQL("DROP TABLE IF EXISTS " + getStagingTable(table) + ";");
+        db.execSQL("CREATE TEMP TABLE " + STAGING_PREFIX + table + " " + definition.substring(definition.indexOf('(')));
+    }
+
+    private static void restoreTables(JsonReader reader, RowInserter inserter) throws IOException {
+        HashSet<String> tables = new HashSet<>();
+        for (String table : TABLES)
+            tables.add(table);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String table = reader.nextName();
+            if (!tables.contains(table)) {
+                reader.skipValue();
+                continue;
+            }
+
+            inserter.setTable(table);
+            reader.beginArray();
+            while (reader.hasNext())
+                inserter.insert(reader);
+            reader.endArray();
+        }
+        reader.endObject();
+    }
+
+    // inserts rows into the staging tables in batches of transactions and reuses one compiled
+    // statement per column set
+    private static class RowInserter {
+
+        private final SQLiteDatabase db;
+        private final int batchSize;
+
+        private String table;
+        private HashSet<String> tableColumns;
+        private final HashSet<String> stagedTables = new HashSet<>();
+        private final HashMap<String, SQLiteStatement> statements = new HashMap<>();
+
+        // the current row, reused for every row
+        private final ArrayList<String> columns = new ArrayList<>();
+        private final ArrayList<Object> values = new ArrayList<>();
+        private final StringBuilder key = new StringBuilder();
+
+        private int rowsInBatch = 0;
+        private int rows = 0;
+
+        RowInserter(SQLiteDatabase db, int batchSize) {
+            this.db = db;
+            this.batchSize = Math.max(1, batchSize);
+        }
+
+        void setTable(String table) {
+            this.table = table;
+            this.tableColumns = new HashSet<>();
+            Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ");", null);
+            try {
+                int nameIndex = cursor.getColumnIndexOrThrow("name");
+                while (cursor.moveToNext())
+                    tableColumns.add(cursor.getString(nameIndex));
+            } finally {
+                cursor.close();
+            }
+
+            if (stagedTables.add(table))
+                createStagingTable(db, table);
+        }
+
+        HashSet<String> getStagedTables() {
+            return stagedTables;
+        }
+
+        void insert(JsonReader reader) throws IOException {
+            columns.clear();
+            values.clear();
+            key.setLength(0);
+            key.append(table);
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String column = reader.nextName();
+                if (!tableColumns.contains(column)) {
+                    reader.skipValue();
+                    continue;
+                }
+                columns.add(column);
+                values.add(readValue(reader));
+                key.append(',').append(column);
+            }
+            reader.endObject();
+
+            if (columns.isEmpty())
+                return;
+
+            if (rowsInBatch == 0)
+                db.beginTransaction();
+
+            SQLiteStatement statement = statements.get(key.toString());
+            if (statement == null) {
+                statement = db.compileStatement(insertSql());
+                statements.put(key.toString(), statement);
+            }
+            statement.clearBindings();
+            for (int i = 0; i < values.size(); i++) {
+                Object value = values.get(i);
+                if (value == null)
+                    statement.bindNull(i + 1);
+                else if (value instanceof Long)
+                    statement.bindLong(i + 1, (Long) value);
+                else if (value instanceof Double)
+                    statement.bindDouble(i + 1, (Double) value);
+                else
+                    statement.bindString(i + 1, (String) value);
+            }
+            statement.executeInsert();
+
+            rows++;
+            if (++rowsInBatch == batchSize)
+                commit();
+        }
+
+        void commit() {
+            if (rowsInBatch == 0)
+                return;
+            db.setTransactionSuccessful();
+            db.endTransaction();
+            rowsInBatch = 0;
+        }
+
+        // rolls back an unfinished batch
+        void close() {
+            if (rowsInBatch > 0) {
+                db.endTransaction();
+                rows -= rowsInBatch;
+                rowsInBatch = 0;
+            }
+            for (SQLiteStatement statement : statements.values())
+                statement.close();
+            statements.clear();
+        }
+
+        int getRowCount() {
+            return rows;
+        }
+
+        private String insertSql() {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(getStagingTable(table)).append(" (");
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                    placeholders.append(", ");
+                }
+                sql.append(columns.get(i));
+                placeholders.append("?");
+            }
+            return sql.append(") VALUES (").append(placeholders).append(");").toString();
+        }
+
+        private static Object readValue(JsonReader reader) throws IOException {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            if (token == JsonToken.BOOLEAN)
+                return reader.nextBoolean() ? 1L : 0L;
+            if (token == JsonToken.NUMBER) {
+                String number = reader.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            }
+            return reader.nextString();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database work off the main thread.
+ *
+ * Commands (everything that writes) are executed one after another on a single writer thread, so
+ * they are applied in the order they were submitted. Queries run on a small pool of reader threads.
+ * A query waits for the commands submitted before it, so a screen that saves something and reloads
+ * right afterwards always sees its own change.
+ *
+ * Results are handed to the given {@link Callback} on the main thread. Cancelling the returned
+ * future drops the callback, even if the operation itself has already finished; a command that has
+ * not been started yet is skipped altogether.
+ */
+
+public class DatabaseExecutor {
+
+    private static final String TAG = DatabaseExecutor.class.getSimpleName();
+
+    private static final int READER_THREADS = 2;
+
+    private static DatabaseExecutor mInstance = null;
+
+    private final ExecutorService writer;
+    private final ExecutorService readers;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // the command submitted last, queries wait for it before they start
+    private Future<?> lastCommand = null;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public static synchronized DatabaseExecutor getInstance() {
+        if (mInstance == null) {
+            mInstance = new DatabaseExecutor();
+        }
+        return mInstance;
+    }
+
+    private DatabaseExecutor() {
+        writer = Executors.newSingleThreadExecutor(new DatabaseThreadFactory("todo-db-writer"));
+        readers = Executors.newFixedThreadPool(READER_THREADS, new DatabaseThreadFactory("todo-db-reader"));
+    }
+
+    public <T> Future<T> query(final Callable<T> query, Callback<T> callback) {
+        final Future<?> precedingCommand;
+        synchronized (this) {
+            precedingCommand = lastCommand;
+        }
+
+        DeliveringTask<T> task = new DeliveringTask<>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                if (precedingCommand != null)
+                    awaitQuietly(precedingCommand);
+                return query.call();
+            }
+        }, callback);
+        readers.execute(task);
+        return task;
+    }
+
+    public <T> Future<T> command(Callable<T> command, Callback<T> callback) {
+        DeliveringTask<T> task = new DeliveringTask<>(command, callback);
+        synchronized (this) {
+            lastCommand = task;
+            writer.execute(task);
+        }
+        return task;
+    }
+
+    public Future<?> command(final Runnable command) {
+        return command(new Callable<Void>() {
+            @Override
+            public Void call() {
+                command.run();
+                return null;
+            }
+        }, null);
+    }
+
+    private static void awaitQuietly(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException | CancellationException e) {
+            // the command reports its own failure, the query runs on the current state
+        }
+    }
+
+    private class DeliveringTask<T> extends FutureTask<T> {
+
+        private final Callback<T> callback;
+        private volatile boolean dropped = false;
+
+        DeliveringTask(Callable<T> callable, Callback<T> callback) {
+            super(callable);
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            dropped = true;
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        protected void done() {
+            final T result;
+            try {
+                result = get();
+            } catch (CancellationException e) {
+                return;
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Database operation failed.", e.getCause());
+                return;
+            }
+
+            if (callback == null || dropped)
+                return;
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!dropped)
+                        callback.onResult(result);
+                }
+            });
+        }
+    }
+
+    private static class DatabaseThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DatabaseThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+}
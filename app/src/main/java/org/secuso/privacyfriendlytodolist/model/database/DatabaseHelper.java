@@ -18,21 +18,18 @@
 package org.secuso.privacyfriendlytodolist.model.database;
 
 import android.content.Context;
-import android.content.res.AssetManager;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.text.TextUtils;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
+import org.secuso.privacyfriendlytodolist.model.database.tables.TChangeLog;
 import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
 import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoSubTask;
 import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.Locale;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTaskSearch;
+import org.secuso.privacyfriendlytodolist.view.Settings;
 
 /**
  *
@@ -42,6 +39,8 @@ import java.util.Locale;
  *
  *  - Create all tables mentioned above (#createAll)
  *  - Delete all tables (#deleteAll)
+ *  - Configure the journal mode of each connection (#onConfigure)
+ *  - Migrate the schema of an existing database to the current version (see SchemaMigrator)
  */
 
 public class DatabaseHelper extends SQLiteOpenHelper {
@@ -49,12 +48,28 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String TAG = DatabaseHelper.class.getSimpleName();
 
     private static DatabaseHelper mInstance = null;
-    private Context context;
+    private final SchemaMigrator migrator;
 
-    public static final int DATABASE_VERSION = 2;
+    public static final int DATABASE_VERSION = 9;
     public static final String DATABASE_NAME = "TodoDatabase.db";
 
-    public static DatabaseHelper getInstance(Context context) {
+    // In WAL mode a checkpoint is run as soon as the log holds this many pages. Android lowers the
+    // SQLite default of 1000 pages to 100, which makes large batched writes checkpoint several times
+    // within one transaction. The size limit below keeps the file small after each checkpoint.
+    private static final int WAL_AUTO_CHECKPOINT_PAGES = 1000;
+
+    // upper bound in bytes for the WAL file that is left on disk after a checkpoint
+    private static final int WAL_SIZE_LIMIT = 1024 * 1024;
+
+    // value of PRAGMA auto_vacuum for incremental vacuum
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    // number of change log entries that are kept when the database is opened
+    private static final int CHANGE_LOG_SIZE = 1000;
+
+    // The helper is shared by the activities, the reminder service and the widget, which may
+    // request it from different threads at the same time.
+    public static synchronized DatabaseHelper getInstance(Context context) {
         if (mInstance == null) {
             mInstance = new DatabaseHelper(context.getApplicationContext());
         }
@@ -63,7 +78,15 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     private DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
-        this.context = context;
+        this.migrator = new SchemaMigrator(context.getAssets());
+
+        // With write-ahead logging the framework keeps a pool of connections: one connection writes
+        // while the other ones keep reading the last committed state.
+        setWriteAheadLoggingEnabled(isWriteAheadLoggingEnabled(context));
+    }
+
+    public static boolean isWriteAheadLoggingEnabled(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(Settings.WRITE_AHEAD_LOGGING_KEY, false);
     }
 
 
@@ -71,6 +94,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL("DROP TABLE " + TTodoList.TABLE_NAME);
         db.execSQL("DROP TABLE " + TTodoTask.TABLE_NAME);
         db.execSQL("DROP TABLE " + TTodoSubTask.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + TTodoTaskSearch.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + TChangeLog.TABLE_NAME);
     }
 
     public void deleteAll() {
@@ -82,6 +107,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(TTodoList.TABLE_CREATE);
         db.execSQL(TTodoTask.TABLE_CREATE);
         db.execSQL(TTodoSubTask.TABLE_CREATE);
+        db.execSQL(TTodoTask.INDEX_LIST_CREATE);
+        db.execSQL(TTodoTask.INDEX_STATE_CREATE);
+        db.execSQL(TTodoTask.INDEX_POSITION_CREATE);
+        db.execSQL(TTodoSubTask.INDEX_TASK_CREATE);
+        for (String trigger : TTodoTask.SUBTASK_COUNT_TRIGGERS_CREATE)
+            db.execSQL(trigger);
+        db.execSQL(TTodoTaskSearch.TABLE_CREATE);
+        for (String trigger : TTodoTaskSearch.TRIGGERS_CREATE)
+            db.execSQL(trigger);
+        db.execSQL(TChangeLog.TABLE_CREATE);
+        for (String trigger : TChangeLog.LIST_TRIGGERS_CREATE)
+            db.execSQL(trigger);
+        for (String trigger : TChangeLog.TASK_TRIGGERS_CREATE)
+            db.execSQL(trigger);
+        for (String trigger : TChangeLog.SUBTASK_TRIGGERS_CREATE)
+            db.execSQL(trigger);
     }
 
     public void createAll() {
@@ -89,6 +130,85 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
 
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+
+        if (db.isWriteAheadLoggingEnabled()) {
+            executePragma(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTO_CHECKPOINT_PAGES + ";");
+            executePragma(db, "PRAGMA journal_size_limit=" + WAL_SIZE_LIMIT + ";");
+            Log.i(TAG, "Write-ahead logging enabled");
+        }
+    }
+
+    // pragmas that return their new value must not be run by execSQL
+    private void executePragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long queryPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Switches the database to incremental auto vacuum, so that free pages can be given back to the
+     * file system with {@link #reclaimFreePages}. For an existing database the mode only takes
+     * effect after a full VACUUM, which rewrites the file once and must not run in a transaction.
+     *
+     * @return true if the mode was changed, false if it was enabled already
+     */
+    public boolean enableIncrementalVacuum(SQLiteDatabase db) {
+        if (queryPragma(db, "PRAGMA auto_vacuum;") == AUTO_VACUUM_INCREMENTAL)
+            return false;
+
+        db.execSQL("PRAGMA auto_vacuum=INCREMENTAL;");
+        db.execSQL("VACUUM;");
+        Log.i(TAG, "Incremental vacuum enabled");
+        return true;
+    }
+
+    /**
+     * Removes the free pages from the database file, at most pagesPerStep pages at a time so that
+     * other connections only have to wait for short periods.
+     *
+     * @return the number of bytes the file shrank by
+     */
+    public long reclaimFreePages(SQLiteDatabase db, int pagesPerStep) {
+        long freePages = queryPragma(db, "PRAGMA freelist_count;");
+        long remaining = freePages;
+
+        while (remaining > 0) {
+            executePragma(db, "PRAGMA incremental_vacuum(" + pagesPerStep + ");");
+            long left = queryPragma(db, "PRAGMA freelist_count;");
+            if (left >= remaining) {
+                // nothing was freed, incremental vacuum is not enabled
+                break;
+            }
+            remaining = left;
+        }
+
+        return (freePages - remaining) * db.getPageSize();
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+
+        if (!db.isReadOnly()) {
+            DBQueryHandler.pruneChangeLog(db, CHANGE_LOG_SIZE);
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         createAll(db);
@@ -97,69 +217,30 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Taken from https://riggaroo.co.za/android-sqlite-database-use-onupgrade-correctly/ .
+     * The framework calls this method within a transaction, so a process that is killed during a
+     * long upgrade would have to start over. That transaction is committed (it holds no changes yet)
+     * and every migration step commits on its own. A new transaction is opened afterwards for the
+     * framework, which sets the new version and ends it.
      * @param db the writeable database to update.
      * @param oldVersion the old version to update from
      * @param newVersion the new version to update to
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        Log.e(TAG, "Updating table from " + oldVersion + " to " + newVersion);
-        // You will not need to modify this unless you need to do some android specific things.
+        Log.i(TAG, "Updating database from " + oldVersion + " to " + newVersion);
         // When upgrading the database, all you need to do is add a file to the assets folder and name it:
         // from_1_to_2.sql with the version that you are upgrading to as the last version.
-        for (int i = oldVersion; i < newVersion; ++i) {
-            String migrationName = String.format(Locale.ENGLISH, "from_%d_to_%d.sql", i, (i + 1));
-            Log.d(TAG, "Looking for migration file: " + migrationName);
-            readAndExecuteSQLScript(db, context, migrationName);
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        try {
+            migrator.migrate(db, oldVersion, newVersion);
+        } finally {
+            db.beginTransaction();
         }
-
     }
 
     @Override
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         onUpgrade(db, oldVersion, newVersion);
     }
-
-    private void readAndExecuteSQLScript(SQLiteDatabase db, Context ctx, String fileName) {
-        if (TextUtils.isEmpty(fileName)) {
-            Log.d(TAG, "SQL script file name is empty");
-            return;
-        }
-
-        Log.d(TAG, "Script found. Executing...");
-        AssetManager assetManager = ctx.getAssets();
-        BufferedReader reader = null;
-
-        try {
-            InputStream is = assetManager.open(fileName);
-            InputStreamReader isr = new InputStreamReader(is);
-            reader = new BufferedReader(isr);
-            executeSQLScript(db, reader);
-        } catch (IOException e) {
-            Log.e(TAG, "IOException:", e);
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    Log.e(TAG, "IOException:", e);
-                }
-            }
-        }
-
-    }
-
-    private void executeSQLScript(SQLiteDatabase db, BufferedReader reader) throws IOException {
-        String line;
-        StringBuilder statement = new StringBuilder();
-        while ((line = reader.readLine()) != null) {
-            statement.append(line);
-            statement.append("\n");
-            if (line.endsWith(";")) {
-                db.execSQL(statement.toString());
-                statement = new StringBuilder();
-            }
-        }
-    }
 }
@@ -0,0 +1,101 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.secuso.privacyfriendlytodolist.model.BaseTodo;
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Copies of lists, tasks and subtasks that are saved on the {@link DatabaseExecutor} while the
+ * originals stay in use on the main thread.
+ *
+ * Saving writes ids, list positions and the clean state into the objects it is given. Those are
+ * the copies, so the writer thread never touches an object the screens use. {@link #applySaved()}
+ * takes the result over into the originals afterwards; it must be called on the main thread, e.g.
+ * from the callback of the command.
+ *
+ * A task is copied together with its subtasks. A subtask that is passed in as well is copied only
+ * once, so a new task still passes its id on to it.
+ */
+
+public class DetachedTodos {
+
+    private final IdentityHashMap<BaseTodo, BaseTodo> copies = new IdentityHashMap<>();
+    private final ArrayList<BaseTodo> copiesInOrder;
+
+    // must be called on the main thread
+    public DetachedTodos(Collection<? extends BaseTodo> todos) {
+        copiesInOrder = new ArrayList<>(todos.size());
+        for (BaseTodo todo : todos)
+            copiesInOrder.add(copyOf(todo));
+    }
+
+    // the copies in the order of the originals
+    public ArrayList<BaseTodo> getCopies() {
+        return copiesInOrder;
+    }
+
+    public BaseTodo getCopy(BaseTodo original) {
+        return copies.get(original);
+    }
+
+    // must be called on the main thread after the copies were saved, new objects keep their ids
+    // in the identity map
+    public void applySaved() {
+        TodoIdentityMap identityMap = TodoIdentityMap.getInstance();
+        for (Map.Entry<BaseTodo, BaseTodo> entry : copies.entrySet()) {
+            entry.getKey().applySaved(entry.getValue());
+            identityMap.register(entry.getKey());
+        }
+    }
+
+    private BaseTodo copyOf(BaseTodo todo) {
+        BaseTodo copy = copies.get(todo);
+        if (copy != null)
+            return copy;
+
+        if (todo instanceof TodoTask) {
+            TodoTask task = (TodoTask) todo;
+            TodoTask taskCopy = new TodoTask(task);
+            if (task.areSubTasksLoaded()) {
+                ArrayList<TodoSubTask> subTasks = new ArrayList<>(task.getSubTasks().size());
+                for (TodoSubTask subTask : task.getSubTasks())
+                    subTasks.add((TodoSubTask) copyOf(subTask));
+                taskCopy.setSubTasks(subTasks);
+            }
+            copy = taskCopy;
+        } else if (todo instanceof TodoSubTask) {
+            copy = new TodoSubTask((TodoSubTask) todo);
+        } else if (todo instanceof TodoList) {
+            // lists are saved without their tasks
+            copy = new TodoList((TodoList) todo);
+        } else {
+            throw new IllegalArgumentException("Cannot copy unknown descendant of BaseTodo.");
+        }
+        copies.put(todo, copy);
+        return copy;
+    }
+}
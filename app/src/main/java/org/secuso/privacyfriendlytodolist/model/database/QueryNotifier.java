@@ -0,0 +1,156 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps subscribed {@link TaskQuery}s up to date.
+ *
+ * {@link TodoRepository} reports every write through {@link #notifyChanged()}. Reports that arrive
+ * within {@link #COALESCE_DELAY} are combined, then every subscribed query is run again on the
+ * {@link DatabaseExecutor} and its listener receives a {@link TaskQueryDiff} against the previous
+ * result on the main thread. The tasks of the diff are the ones of the {@link TodoIdentityMap}.
+ * Listeners are not called if nothing they observe has changed.
+ *
+ * Subscribing and unsubscribing must happen on the main thread.
+ */
+
+public class QueryNotifier {
+
+    // milliseconds to wait for further changes before the queries are run again
+    public static final long COALESCE_DELAY = 50;
+
+    private static QueryNotifier mInstance = null;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<Subscription> subscriptions = new ArrayList<>();
+    private boolean dispatchScheduled = false;
+
+    public interface Listener {
+        void onChanged(TaskQueryDiff diff);
+    }
+
+    public static synchronized QueryNotifier getInstance() {
+        if (mInstance == null) {
+            mInstance = new QueryNotifier();
+        }
+        return mInstance;
+    }
+
+    private QueryNotifier() {
+    }
+
+    /**
+     * Runs {@param query} in the background and reports its result to {@param listener} as an initial
+     * diff. Afterwards the listener is informed about every change until the subscription is cancelled.
+     */
+    public Subscription subscribe(Context context, TaskQuery query, Listener listener) {
+        Subscription subscription = new Subscription(TodoRepository.getInstance(context), query, listener);
+        subscriptions.add(subscription);
+        subscription.refresh();
+        return subscription;
+    }
+
+    // may be called from any thread
+    public void notifyChanged() {
+        synchronized (this) {
+            if (dispatchScheduled)
+                return;
+            dispatchScheduled = true;
+        }
+        mainHandler.postDelayed(dispatch, COALESCE_DELAY);
+    }
+
+    private final Runnable dispatch = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (QueryNotifier.this) {
+                dispatchScheduled = false;
+            }
+            for (Subscription subscription : new ArrayList<>(subscriptions))
+                subscription.refresh();
+        }
+    };
+
+    public class Subscription {
+
+        private final TodoRepository repository;
+        private final TaskQuery query;
+        private final Listener listener;
+
+        // only used by the single running refresh
+        private final TaskQueryDiffer differ = new TaskQueryDiffer();
+
+        private Future<TaskQueryDiff> pendingRefresh = null;
+        private boolean stale = false; // changes were reported while a refresh was running
+        private boolean active = true;
+
+        private Subscription(TodoRepository repository, TaskQuery query, Listener listener) {
+            this.repository = repository;
+            this.query = query;
+            this.listener = listener;
+        }
+
+        public TaskQuery getQuery() {
+            return query;
+        }
+
+        public void unsubscribe() {
+            active = false;
+            subscriptions.remove(this);
+            if (pendingRefresh != null)
+                pendingRefresh.cancel(false);
+        }
+
+        private void refresh() {
+            if (!active)
+                return;
+            if (pendingRefresh != null) {
+                stale = true;
+                return;
+            }
+
+            pendingRefresh = DatabaseExecutor.getInstance().query(new Callable<TaskQueryDiff>() {
+                @Override
+                public TaskQueryDiff call() {
+                    return differ.diff(query.run(repository));
+                }
+            }, new DatabaseExecutor.Callback<TaskQueryDiff>() {
+                @Override
+                public void onResult(TaskQueryDiff diff) {
+                    pendingRefresh = null;
+                    if (diff.isInitial() || !diff.isEmpty()) {
+                        TodoIdentityMap.getInstance().merge(diff);
+                        listener.onChanged(diff);
+                    }
+                    if (stale) {
+                        stale = false;
+                        refresh();
+                    }
+                }
+            });
+        }
+    }
+}
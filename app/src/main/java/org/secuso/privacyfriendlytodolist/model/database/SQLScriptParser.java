@@ -0,0 +1,177 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits a SQL script into single statements.
+ *
+ * Statements end with a semicolon outside of string literals, quoted identifiers and comments.
+ * Comments are dropped. The body of a CREATE TRIGGER statement may contain semicolons and ends
+ * with the END keyword that closes its BEGIN (CASE ... END expressions inside the body are skipped).
+ */
+final class SQLScriptParser {
+
+    private final String script;
+    private int pos;
+
+    private final StringBuilder statement = new StringBuilder();
+    private final List<String> statements = new ArrayList<String>();
+
+    // keyword tracking of the current statement
+    private int wordCount;
+    private boolean isTrigger;
+    private boolean inTriggerBody;
+    private boolean triggerBodyClosed;
+    private int caseDepth;
+
+    private SQLScriptParser(String script) {
+        this.script = script;
+    }
+
+    static List<String> parse(Reader reader) throws IOException {
+        StringBuilder script = new StringBuilder();
+        char buffer[] = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            script.append(buffer, 0, read);
+        }
+        return parse(script.toString());
+    }
+
+    static List<String> parse(String script) {
+        SQLScriptParser parser = new SQLScriptParser(script);
+        parser.run();
+        return parser.statements;
+    }
+
+    private void run() {
+        while (pos < script.length()) {
+            char c = script.charAt(pos);
+
+            if (c == '-' && peek(1) == '-') {
+                skipLineComment();
+            } else if (c == '/' && peek(1) == '*') {
+                skipBlockComment();
+            } else if (c == '\'' || c == '"' || c == '`') {
+                copyQuoted(c, c);
+            } else if (c == '[') {
+                copyQuoted('[', ']');
+            } else if (isWordChar(c)) {
+                copyWord();
+            } else if (c == ';') {
+                pos++;
+                if (isTrigger && inTriggerBody && !triggerBodyClosed) {
+                    // end of a statement within the trigger body
+                    statement.append(c);
+                } else {
+                    finishStatement();
+                }
+            } else {
+                statement.append(c);
+                pos++;
+            }
+        }
+        finishStatement();
+    }
+
+    private char peek(int offset) {
+        int index = pos + offset;
+        return index < script.length() ? script.charAt(index) : 0;
+    }
+
+    private void skipLineComment() {
+        int end = script.indexOf('\n', pos);
+        pos = end == -1 ? script.length() : end;
+    }
+
+    private void skipBlockComment() {
+        int end = script.indexOf("*/", pos + 2);
+        pos = end == -1 ? script.length() : end + 2;
+        // a comment separates tokens like whitespace does
+        statement.append(' ');
+    }
+
+    // copies a literal including its quotes, a doubled closing quote is an escaped quote
+    private void copyQuoted(char open, char close) {
+        int start = pos++;
+        while (pos < script.length()) {
+            char c = script.charAt(pos++);
+            if (c == close) {
+                if (open != close || peek(0) != close)
+                    break;
+                pos++;
+            }
+        }
+        statement.append(script, start, pos);
+    }
+
+    private void copyWord() {
+        int start = pos;
+        while (pos < script.length() && isWordChar(script.charAt(pos))) {
+            pos++;
+        }
+        String word = script.substring(start, pos);
+        statement.append(word);
+        onWord(word.toUpperCase(Locale.ENGLISH));
+    }
+
+    private void onWord(String word) {
+        wordCount++;
+        if (wordCount == 1) {
+            isTrigger = false;
+        } else if (wordCount <= 3 && word.equals("TRIGGER") && statement.toString().trim().toUpperCase(Locale.ENGLISH).startsWith("CREATE")) {
+            // CREATE TRIGGER or CREATE TEMP TRIGGER
+            isTrigger = true;
+        } else if (isTrigger && !inTriggerBody && word.equals("BEGIN")) {
+            inTriggerBody = true;
+        } else if (inTriggerBody && !triggerBodyClosed) {
+            if (word.equals("CASE")) {
+                caseDepth++;
+            } else if (word.equals("END")) {
+                if (caseDepth > 0)
+                    caseDepth--;
+                else
+                    triggerBodyClosed = true;
+            }
+        }
+    }
+
+    private void finishStatement() {
+        String sql = statement.toString().trim();
+        if (sql.length() > 0) {
+            statements.add(sql);
+        }
+        statement.setLength(0);
+        wordCount = 0;
+        isTrigger = false;
+        inTriggerBody = false;
+        triggerBodyClosed = false;
+        caseDepth = 0;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
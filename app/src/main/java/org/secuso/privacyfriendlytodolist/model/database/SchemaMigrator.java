@@ -0,0 +1,156 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.content.ContentValues;
+import android.content.res.AssetManager;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.Helper;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TSchemaMigration;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Upgrades the database schema step by step with the migration scripts in the assets folder. The
+ * script from_X_to_Y.sql moves the schema from version X to version Y = X + 1.
+ *
+ * Every step runs in a transaction of its own, which also records the step in
+ * {@link TSchemaMigration} and sets the user version of the database to the new version. A process
+ * that is killed during an upgrade therefore leaves the database at the last completed step and the
+ * next start continues from there.
+ */
+final class SchemaMigrator {
+
+    private static final String TAG = SchemaMigrator.class.getSimpleName();
+
+    private final AssetManager assets;
+
+    SchemaMigrator(AssetManager assets) {
+        this.assets = assets;
+    }
+
+    static String getStepName(int fromVersion) {
+        return String.format(Locale.ENGLISH, "from_%d_to_%d.sql", fromVersion, fromVersion + 1);
+    }
+
+    /**
+     * Applies all steps from fromVersion up to toVersion. Called within a transaction the steps
+     * become part of it and are only committed together with it.
+     *
+     * @throws SQLiteException if a script is missing or one of its statements fails. The failed
+     *                         step is rolled back, the steps before it stay applied.
+     */
+    void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        long start = SystemClock.elapsedRealtime();
+        db.execSQL(TSchemaMigration.TABLE_CREATE);
+
+        for (int version = fromVersion; version < toVersion; ++version) {
+            applyStep(db, version);
+        }
+
+        Log.i(TAG, "Migration from version " + fromVersion + " to " + toVersion + " finished in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    private void applyStep(SQLiteDatabase db, int fromVersion) {
+        String step = getStepName(fromVersion);
+        List<String> statements = readScript(step);
+
+        long start = SystemClock.elapsedRealtime();
+        int executed = 0;
+
+        db.beginTransaction();
+        try {
+            if (isApplied(db, step)) {
+                Log.i(TAG, step + " was already applied");
+            } else {
+                for (String statement : statements) {
+                    if (isTransactionControl(statement)) {
+                        // every step runs in its own transaction, see above
+                        Log.d(TAG, "Skipping statement: " + statement);
+                        continue;
+                    }
+                    db.execSQL(statement);
+                    executed++;
+                }
+                recordStep(db, step, fromVersion + 1, SystemClock.elapsedRealtime() - start);
+            }
+            db.setVersion(fromVersion + 1);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.i(TAG, step + ": " + executed + " statements applied in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    private List<String> readScript(String step) {
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(assets.open(step), "UTF-8");
+            return SQLScriptParser.parse(reader);
+        } catch (IOException e) {
+            // continuing without the step would leave the schema behind the version of the app
+            throw new SQLiteException("Migration script " + step + " could not be read: " + e.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "IOException:", e);
+                }
+            }
+        }
+    }
+
+    // BEGIN, COMMIT and ROLLBACK would interfere with the transaction of the step and
+    // PRAGMA foreign_keys has no effect inside of a transaction
+    private static boolean isTransactionControl(String statement) {
+        String sql = statement.toUpperCase(Locale.ENGLISH);
+        return sql.startsWith("BEGIN") || sql.startsWith("COMMIT") || sql.startsWith("END") ||
+                sql.startsWith("ROLLBACK") || sql.replace(" ", "").startsWith("PRAGMAFOREIGN_KEYS");
+    }
+
+    private static boolean isApplied(SQLiteDatabase db, String step) {
+        Cursor cursor = db.query(TSchemaMigration.TABLE_NAME, new String[]{TSchemaMigration.COLUMN_STEP},
+                TSchemaMigration.COLUMN_STEP + " = ?", new String[]{step}, null, null, null);
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void recordStep(SQLiteDatabase db, String step, int toVersion, long duration) {
+        ContentValues values = new ContentValues();
+        values.put(TSchemaMigration.COLUMN_STEP, step);
+        values.put(TSchemaMigration.COLUMN_TO_VERSION, toVersion);
+        values.put(TSchemaMigration.COLUMN_APPLIED_AT, Helper.getCurrentTimestamp());
+        values.put(TSchemaMigration.COLUMN_DURATION, duration);
+        db.insert(TSchemaMigration.TABLE_NAME, null, values);
+    }
+}
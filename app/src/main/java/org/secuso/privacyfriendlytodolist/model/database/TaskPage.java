@@ -0,0 +1,54 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.util.ArrayList;
+
+/**
+ * One page of tasks returned by {@link DBQueryHandler#getTaskPage} and the related methods.
+ *
+ * The continuation token marks the position of the last task of this page in the requested order.
+ * Passing it to the next call returns the tasks that follow. Unlike an offset it stays valid if
+ * tasks before that position are inserted or deleted in the meantime.
+ */
+
+public class TaskPage {
+
+    private final ArrayList<TodoTask> tasks;
+    private final String continuationToken;
+
+    TaskPage(ArrayList<TodoTask> tasks, String continuationToken) {
+        this.tasks = tasks;
+        this.continuationToken = continuationToken;
+    }
+
+    public ArrayList<TodoTask> getTasks() {
+        return tasks;
+    }
+
+    // returns null if this is the last page
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasNextPage() {
+        return continuationToken != null;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Describes a set of tasks outside of the bin that can be observed through the
+ * {@link QueryNotifier}, e.g. the open tasks of a certain list ordered by their deadline.
+ */
+
+public class TaskQuery {
+
+    public static final int ALL_LISTS = -1;
+
+    public enum State {
+        ALL,
+        OPEN,
+        DONE
+    }
+
+    private final int listId;
+    private final State state;
+    private final DBQueryHandler.TaskOrder order;
+
+    // all tasks of the list in their list order
+    public TaskQuery(int listId) {
+        this(listId, State.ALL, DBQueryHandler.TaskOrder.LIST_POSITION);
+    }
+
+    public TaskQuery(int listId, State state, DBQueryHandler.TaskOrder order) {
+        this.listId = listId;
+        this.state = state;
+        this.order = order;
+    }
+
+    public int getListId() {
+        return listId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public DBQueryHandler.TaskOrder getOrder() {
+        return order;
+    }
+
+    ArrayList<TodoTask> run(TodoRepository repository) {
+        ArrayList<TodoTask> source;
+        if (listId == ALL_LISTS) {
+            source = repository.getAllTasks();
+        } else {
+            TodoList list = repository.getTodoList(listId);
+            source = list != null ? list.getTasks() : new ArrayList<TodoTask>();
+        }
+
+        ArrayList<TodoTask> tasks = new ArrayList<>(source.size());
+        for (TodoTask task : source) {
+            if (state == State.ALL || task.getDone() == (state == State.DONE))
+                tasks.add(task);
+        }
+        Collections.sort(tasks, new TaskComparator(order));
+        return tasks;
+    }
+
+    // same order as the paginated queries sort by TaskOrder: by the sort key, then by the id, and
+    // tasks without deadline come last
+    static class TaskComparator implements Comparator<TodoTask> {
+
+        private final DBQueryHandler.TaskOrder order;
+
+        TaskComparator(DBQueryHandler.TaskOrder order) {
+            this.order = order;
+        }
+
+        @Override
+        public int compare(TodoTask t1, TodoTask t2) {
+            int comp;
+            if (order == DBQueryHandler.TaskOrder.DEADLINE) {
+                comp = compareLongs(deadlineKey(t1), deadlineKey(t2));
+            } else if (order == DBQueryHandler.TaskOrder.PRIORITY) {
+                comp = compareLongs(t1.getPriority().getValue(), t2.getPriority().getValue());
+            } else {
+                comp = compareLongs(t1.getListPosition(), t2.getListPosition());
+            }
+
+            if (comp == 0)
+                comp = compareLongs(t1.getId(), t2.getId());
+            return comp;
+        }
+
+        private static long deadlineKey(TodoTask task) {
+            return task.getDeadline() < 0 ? Long.MAX_VALUE : task.getDeadline();
+        }
+
+        private static int compareLongs(long l1, long l2) {
+            return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.util.ArrayList;
+
+/**
+ * Difference between two consecutive results of an observed {@link TaskQuery}.
+ *
+ * Tasks are compared by their database id. A task counts as changed if one of its displayed
+ * values or one of its subtasks differs from the previous result. The reported tasks are new
+ * objects, the previous ones may still be in use on the main thread. The first result of a
+ * subscription is initial: all of its tasks are reported as inserted.
+ */
+
+public class TaskQueryDiff {
+
+    private final boolean initial;
+    private final ArrayList<TodoTask> tasks;
+    private final ArrayList<TodoTask> inserted;
+    private final ArrayList<TodoTask> changed;
+    private final ArrayList<Integer> removedIds;
+
+    TaskQueryDiff(boolean initial, ArrayList<TodoTask> tasks, ArrayList<TodoTask> inserted, ArrayList<TodoTask> changed, ArrayList<Integer> removedIds) {
+        this.initial = initial;
+        this.tasks = tasks;
+        this.inserted = inserted;
+        this.changed = changed;
+        this.removedIds = removedIds;
+    }
+
+    public boolean isInitial() {
+        return initial;
+    }
+
+    public boolean isEmpty() {
+        return inserted.isEmpty() && changed.isEmpty() && removedIds.isEmpty();
+    }
+
+    // the complete new result in the order of the query
+    public ArrayList<TodoTask> getTasks() {
+        return tasks;
+    }
+
+    public ArrayList<TodoTask> getInserted() {
+        return inserted;
+    }
+
+    public ArrayList<TodoTask> getChanged() {
+        return changed;
+    }
+
+    // ids of the tasks of the previous result that are no longer part of it
+    public ArrayList<Integer> getRemovedIds() {
+        return removedIds;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Computes the {@link TaskQueryDiff} between consecutive results of a query.
+ *
+ * Every result consists of the objects of the {@link TodoRepository}, which are fingerprinted before
+ * they are handed to the main thread. Of the previous result only the ids and fingerprints are
+ * kept, which is all that is needed to tell what changed.
+ */
+
+class TaskQueryDiffer {
+
+    // fingerprints of the previous result by task id, null before the first result
+    private HashMap<Integer, Long> fingerprints = null;
+
+    TaskQueryDiff diff(ArrayList<TodoTask> result) {
+        boolean initial = fingerprints == null;
+        HashMap<Integer, Long> newFingerprints = new HashMap<>(result.size() * 2);
+        ArrayList<TodoTask> inserted = new ArrayList<>();
+        ArrayList<TodoTask> changed = new ArrayList<>();
+        ArrayList<Integer> removedIds = new ArrayList<>();
+
+        for (TodoTask task : result) {
+            long fingerprint = fingerprint(task);
+            newFingerprints.put(task.getId(), fingerprint);
+
+            Long previous = initial ? null : fingerprints.get(task.getId());
+            if (previous == null)
+                inserted.add(task);
+            else if (previous != fingerprint)
+                changed.add(task);
+        }
+
+        if (!initial) {
+            for (Integer id : fingerprints.keySet())
+                if (!newFingerprints.containsKey(id))
+                    removedIds.add(id);
+        }
+
+        fingerprints = newFingerprints;
+        return new TaskQueryDiff(initial, result, inserted, changed, removedIds);
+    }
+
+    // a hash of everything that is displayed of the task
+    static long fingerprint(TodoTask task) {
+        long hash = 17;
+        hash = 31 * hash + hashOf(task.getName());
+        hash = 31 * hash + hashOf(task.getDescription());
+        hash = 31 * hash + (task.getDone() ? 1 : 0);
+        hash = 31 * hash + task.getProgress();
+        hash = 31 * hash + task.getPriority().getValue();
+        hash = 31 * hash + task.getDeadline();
+        hash = 31 * hash + task.getReminderTime();
+        hash = 31 * hash + task.getListPosition();
+        hash = 31 * hash + task.getListId();
+        hash = 31 * hash + task.getSubTaskCount();
+        hash = 31 * hash + task.getDoneSubTaskCount();
+        for (TodoSubTask subTask : task.getSubTasks()) {
+            hash = 31 * hash + subTask.getId();
+            hash = 31 * hash + hashOf(subTask.getName());
+            hash = 31 * hash + (subTask.getDone() ? 1 : 0);
+        }
+        return hash;
+    }
+
+    private static int hashOf(String value) {
+        return value == null ? 0 : value.hashCode();
+    }
+}
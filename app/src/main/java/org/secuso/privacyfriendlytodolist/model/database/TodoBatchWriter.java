@@ -0,0 +1,295 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.content.ContentValues;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import org.secuso.privacyfriendlytodolist.model.BaseTodo;
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoList;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+import java.util.HashMap;
+
+/**
+ * Writes changed lists, tasks and subtasks with compiled statements. Every statement is compiled
+ * the first time it is needed and then reused for all following objects of the same kind.
+ *
+ * Inserts write all columns. Updates write only the columns whose dirty bit is set (see
+ * {@link BaseTodo#getDirtyFields()}), so there is one update statement per combination of changed
+ * columns. Objects that were marked as changed without a new value are not written at all.
+ *
+ * The writer does not open a transaction on its own, see {@link DBQueryHandler#saveTodosInDb}.
+ * It must be closed after use to release the compiled statements.
+ */
+
+class TodoBatchWriter {
+
+    private static final String TAG = TodoBatchWriter.class.getSimpleName();
+
+    static final int ALL_FIELDS = -1;
+
+    // the n-th column belongs to the dirty bit 1 << n
+    private static final String TASK_COLUMNS[] = {
+            TTodoTask.COLUMN_NAME,
+            TTodoTask.COLUMN_DESCRIPTION,
+            TTodoTask.COLUMN_PROGRESS,
+            TTodoTask.COLUMN_DEADLINE,
+            TTodoTask.COLUMN_DEADLINE_WARNING_TIME,
+            TTodoTask.COLUMN_PRIORITY,
+            TTodoTask.COLUMN_TODO_LIST_ID,
+            TTodoTask.COLUMN_LIST_POSITION,
+            TTodoTask.COLUMN_DONE,
+            TTodoTask.COLUMN_TRASH};
+
+    private static final String SUBTASK_COLUMNS[] = {
+            TTodoSubTask.COLUMN_TITLE,
+            TTodoSubTask.COLUMN_DONE,
+            TTodoSubTask.COLUMN_TASK_ID,
+            TTodoSubTask.COLUMN_TRASH};
+
+    private static final String LIST_COLUMNS[] = {
+            TTodoList.COLUMN_NAME};
+
+    private final SQLiteDatabase db;
+
+    // by table name, updates by table name and the bits of the written columns
+    private final HashMap<String, SQLiteStatement> statements = new HashMap<>();
+
+    TodoBatchWriter(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Writes the object if it was created or changed and marks it as unchanged afterwards.
+     *
+     * @return the database id of the object, {@link DBQueryHandler#NO_CHANGES} if there was nothing
+     * to write or {@link DBQueryHandler#NO_INSERT_TO_DB} if the insert failed
+     */
+    int write(BaseTodo todo) {
+
+        DBQueryHandler.ObjectStates state = todo.getDBState();
+        if (state == DBQueryHandler.ObjectStates.NO_DB_ACTION)
+            return DBQueryHandler.NO_CHANGES;
+
+        boolean insert = state == DBQueryHandler.ObjectStates.INSERT_TO_DB;
+        if (todo instanceof TodoTask)
+            DBQueryHandler.placeNewTask(db, (TodoTask) todo);
+
+        String table = tableOf(todo);
+        String columns[] = columnsOf(todo);
+        int fields = insert ? ALL_FIELDS : writableFields(todo);
+
+        if (fields == 0) {
+            todo.setUnchanged();
+            return DBQueryHandler.NO_CHANGES;
+        }
+
+        String key = insert ? table : table + ":" + fields;
+        SQLiteStatement statement = statements.get(key);
+        if (statement == null) {
+            statement = db.compileStatement(insert ? insertSql(table, columns) : updateSql(todo, fields));
+            statements.put(key, statement);
+        }
+
+        Object values[] = valuesOf(todo);
+        statement.clearBindings();
+        int index = 1;
+        int bytes = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if ((fields & (1 << i)) != 0) {
+                bind(statement, index++, values[i]);
+                bytes += WriteStatistics.sizeOf(values[i]);
+            }
+        }
+
+        int returnCode;
+        if (insert) {
+            try {
+                returnCode = (int) statement.executeInsert();
+            } catch (SQLException e) {
+                Log.e(TAG, "Insert of " + todo.getName() + " failed.", e);
+                returnCode = DBQueryHandler.NO_INSERT_TO_DB;
+            }
+            if (returnCode >= 0) {
+                todo.setId(returnCode);
+                WriteStatistics.record(bytes);
+                // subtasks that are written afterwards need to reference the new task
+                if (todo instanceof TodoTask) {
+                    for (TodoSubTask subTask : ((TodoTask) todo).getSubTasks())
+                        subTask.setTaskId(returnCode);
+                }
+            } else {
+                returnCode = DBQueryHandler.NO_INSERT_TO_DB;
+            }
+        } else {
+            // the id is bound after the columns of the SET clause
+            statement.bindLong(index, todo.getId());
+            statement.executeUpdateDelete();
+            WriteStatistics.record(bytes);
+            returnCode = todo.getId();
+        }
+
+        todo.setUnchanged();
+        return returnCode;
+    }
+
+    void close() {
+        for (SQLiteStatement statement : statements.values())
+            statement.close();
+        statements.clear();
+    }
+
+    // the values of the given columns for ContentValues based writes
+    static ContentValues contentValues(BaseTodo todo, int fields) {
+        String columns[] = columnsOf(todo);
+        Object values[] = valuesOf(todo);
+        ContentValues contentValues = new ContentValues();
+        for (int i = 0; i < columns.length; i++) {
+            if ((fields & (1 << i)) == 0)
+                continue;
+            if (values[i] == null)
+                contentValues.putNull(columns[i]);
+            else if (values[i] instanceof String)
+                contentValues.put(columns[i], (String) values[i]);
+            else
+                contentValues.put(columns[i], (Long) values[i]);
+        }
+        return contentValues;
+    }
+
+    static int sizeOf(BaseTodo todo, int fields) {
+        Object values[] = valuesOf(todo);
+        int bytes = 0;
+        for (int i = 0; i < values.length; i++) {
+            if ((fields & (1 << i)) != 0)
+                bytes += WriteStatistics.sizeOf(values[i]);
+        }
+        return bytes;
+    }
+
+    // dirty bits of the columns the table actually has
+    static int writableFields(BaseTodo todo) {
+        return todo.getDirtyFields() & allFieldsOf(columnsOf(todo));
+    }
+
+    private static int allFieldsOf(String columns[]) {
+        return (1 << columns.length) - 1;
+    }
+
+    private static String tableOf(BaseTodo todo) {
+        if (todo instanceof TodoTask)
+            return TTodoTask.TABLE_NAME;
+        if (todo instanceof TodoSubTask)
+            return TTodoSubTask.TABLE_NAME;
+        if (todo instanceof TodoList)
+            return TTodoList.TABLE_NAME;
+        throw new IllegalArgumentException("Cannot save unknown descendant of BaseTodo in the database.");
+    }
+
+    private static String idColumnOf(BaseTodo todo) {
+        if (todo instanceof TodoTask)
+            return TTodoTask.COLUMN_ID;
+        if (todo instanceof TodoSubTask)
+            return TTodoSubTask.COLUMN_ID;
+        return TTodoList.COLUMN_ID;
+    }
+
+    private static String[] columnsOf(BaseTodo todo) {
+        if (todo instanceof TodoTask)
+            return TASK_COLUMNS;
+        if (todo instanceof TodoSubTask)
+            return SUBTASK_COLUMNS;
+        if (todo instanceof TodoList)
+            return LIST_COLUMNS;
+        throw new IllegalArgumentException("Cannot save unknown descendant of BaseTodo in the database.");
+    }
+
+    // texts as String, everything else as Long, in the order of the columns
+    private static Object[] valuesOf(BaseTodo todo) {
+        if (todo instanceof TodoTask) {
+            TodoTask task = (TodoTask) todo;
+            return new Object[] {
+                    task.getName(),
+                    task.getDescription(),
+                    (long) task.getProgress(),
+                    task.getDeadline(),
+                    task.getReminderTime(),
+                    (long) task.getPriority().getValue(),
+                    (long) task.getListId(),
+                    (long) task.getListPosition(),
+                    task.getDone() ? 1L : 0L,
+                    task.isInTrash() ? 1L : 0L};
+        }
+        if (todo instanceof TodoSubTask) {
+            TodoSubTask subTask = (TodoSubTask) todo;
+            return new Object[] {
+                    subTask.getName(),
+                    subTask.getDone() ? 1L : 0L,
+                    subTask.getTaskId(),
+                    subTask.isInTrash() ? 1L : 0L};
+        }
+        return new Object[] {todo.getName()};
+    }
+
+    private static void bind(SQLiteStatement statement, int index, Object value) {
+        if (value == null)
+            statement.bindNull(index);
+        else if (value instanceof String)
+            statement.bindString(index, (String) value);
+        else
+            statement.bindLong(index, (Long) value);
+    }
+
+    private static String insertSql(String table, String columns[]) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(columns[i]);
+            values.append("?");
+        }
+        return sql.append(") VALUES (").append(values).append(");").toString();
+    }
+
+    // the update of the columns whose dirty bits are set in fields, the id is the last parameter
+    static String updateSql(BaseTodo todo, int fields) {
+        String columns[] = columnsOf(todo);
+        StringBuilder sql = new StringBuilder("UPDATE ").append(tableOf(todo)).append(" SET ");
+        boolean first = true;
+        for (int i = 0; i < columns.length; i++) {
+            if ((fields & (1 << i)) == 0)
+                continue;
+            if (!first)
+                sql.append(", ");
+            sql.append(columns[i]).append("=?");
+            first = false;
+        }
+        return sql.append(" WHERE ").append(idColumnOf(todo)).append("=?;").toString();
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.os.Looper;
+import android.util.SparseArray;
+
+import org.secuso.privacyfriendlytodolist.model.BaseTodo;
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps one object per database id for the lists, tasks and subtasks the screens use.
+ *
+ * {@link TodoRepository} hands out the objects of its cache, which are shared between threads and
+ * must not be changed. Everything loaded for a screen is merged in here on the main thread: the
+ * first time an id is seen a copy of the loaded object is made, afterwards the values of the
+ * loaded object are taken over into the object already in use. A reload therefore allocates
+ * nothing for objects that are on screen, and a change made on one screen shows on the others.
+ * Objects with unsaved changes keep their values until they were saved.
+ *
+ * The map belongs to the main thread and throws an {@link IllegalStateException} when it is used
+ * from any other thread. It only holds weak references, the ids are never reused, because all
+ * tables use AUTOINCREMENT keys.
+ */
+
+public final class TodoIdentityMap {
+
+    private static TodoIdentityMap instance;
+
+    private final Thread owner;
+
+    private final SparseArray<WeakReference<TodoList>> lists = new SparseArray<>();
+    private final SparseArray<WeakReference<TodoTask>> tasks = new SparseArray<>();
+    private final SparseArray<WeakReference<TodoSubTask>> subTasks = new SparseArray<>();
+
+    // number of objects that were created and of loaded objects that were merged into existing ones
+    private int created;
+    private int reused;
+
+    // number of objects put into the map since the last removal of cleared references
+    private int addedSinceSweep;
+
+    // belongs to the thread that creates it
+    TodoIdentityMap() {
+        owner = Thread.currentThread();
+    }
+
+    public static TodoIdentityMap getInstance() {
+        if (Looper.myLooper() != Looper.getMainLooper())
+            throw new IllegalStateException("The identity map may only be used on the main thread.");
+        if (instance == null)
+            instance = new TodoIdentityMap();
+        return instance;
+    }
+
+    // the object in use for the loaded list, its tasks are replaced by the ones in use
+    public TodoList list(TodoList loaded) {
+        checkThread();
+        TodoList list = get(lists, loaded.getId());
+        if (list == null) {
+            list = new TodoList(loaded);
+            put(lists, list);
+        } else if (list != loaded) {
+            reused++;
+            if (list.getDirtyFields() == 0)
+                list.applyLoaded(loaded);
+        }
+        if (list == loaded) {
+            tasks(list.getTasks());
+        } else {
+            // the container the screens hold stays valid
+            ArrayList<TodoTask> listTasks = list.getTasks();
+            ArrayList<TodoTask> loadedTasks = loaded.getTasks();
+            listTasks.clear();
+            for (int i = 0; i < loadedTasks.size(); i++)
+                listTasks.add(task(loadedTasks.get(i)));
+        }
+        return list;
+    }
+
+    public TodoTask task(TodoTask loaded) {
+        checkThread();
+        TodoTask task = get(tasks, loaded.getId());
+        if (task == loaded)
+            return task;
+        if (task == null) {
+            task = new TodoTask(loaded);
+            put(tasks, task);
+        } else {
+            reused++;
+            if (task.getDirtyFields() == 0)
+                task.applyLoaded(loaded);
+        }
+
+        if (loaded.areSubTasksLoaded()) {
+            mergeSubTasks(task, loaded.getSubTasks());
+        } else if (task.areSubTasksLoaded() && (task.getSubTaskCount() != loaded.getSubTaskCount() ||
+                task.getDoneSubTaskCount() != loaded.getDoneSubTaskCount())) {
+            // the subtasks in use are out of date and are loaded again when they are needed
+            task.releaseSubTasks();
+        }
+        return task;
+    }
+
+    public TodoSubTask subTask(TodoSubTask loaded) {
+        checkThread();
+        TodoSubTask subTask = get(subTasks, loaded.getId());
+        if (subTask == loaded)
+            return subTask;
+        if (subTask == null) {
+            subTask = new TodoSubTask(loaded);
+            put(subTasks, subTask);
+        } else {
+            reused++;
+            if (subTask.getDirtyFields() == 0)
+                subTask.applyLoaded(loaded);
+        }
+        return subTask;
+    }
+
+    // replaces the loaded lists by the ones in use
+    public void lists(List<TodoList> loaded) {
+        for (int i = 0; i < loaded.size(); i++)
+            loaded.set(i, list(loaded.get(i)));
+    }
+
+    // replaces the loaded tasks by the ones in use
+    public void tasks(List<TodoTask> loaded) {
+        for (int i = 0; i < loaded.size(); i++)
+            loaded.set(i, task(loaded.get(i)));
+    }
+
+    // replaces the loaded subtasks by the ones in use
+    public void subTasks(List<TodoSubTask> loaded) {
+        for (int i = 0; i < loaded.size(); i++)
+            loaded.set(i, subTask(loaded.get(i)));
+    }
+
+    // Replaces the tasks of the diff that a listener applies by the ones in use. Unchanged tasks of
+    // a later diff are already in use and stay as they were loaded.
+    public void merge(TaskQueryDiff diff) {
+        if (diff.isInitial()) {
+            tasks(diff.getTasks());
+        } else {
+            tasks(diff.getInserted());
+            tasks(diff.getChanged());
+        }
+    }
+
+    // Registers an object that was just inserted into the database. If the id was loaded in the
+    // meantime, the object that is already in use is kept.
+    public void register(BaseTodo todo) {
+        checkThread();
+        if (todo instanceof TodoTask)
+            putIfAbsent(tasks, (TodoTask) todo);
+        else if (todo instanceof TodoSubTask)
+            putIfAbsent(subTasks, (TodoSubTask) todo);
+        else if (todo instanceof TodoList && !((TodoList) todo).isDummyList())
+            putIfAbsent(lists, (TodoList) todo);
+    }
+
+    public int getCreatedCount() {
+        return created;
+    }
+
+    public int getReusedCount() {
+        return reused;
+    }
+
+    // The subtasks in use are updated in place, so the list object the screens hold stays valid.
+    // Subtasks that were not saved yet are kept at the end.
+    private void mergeSubTasks(TodoTask task, ArrayList<TodoSubTask> loaded) {
+        if (!task.areSubTasksLoaded()) {
+            ArrayList<TodoSubTask> merged = new ArrayList<>(loaded.size());
+            for (int i = 0; i < loaded.size(); i++)
+                merged.add(subTask(loaded.get(i)));
+            task.setSubTasks(merged);
+            return;
+        }
+
+        ArrayList<TodoSubTask> subTasks = task.getSubTasks();
+        ArrayList<TodoSubTask> unsaved = null;
+        for (int i = 0; i < subTasks.size(); i++) {
+            if (subTasks.get(i).getDBState() == DBQueryHandler.ObjectStates.INSERT_TO_DB) {
+                if (unsaved == null)
+                    unsaved = new ArrayList<>();
+                unsaved.add(subTasks.get(i));
+            }
+        }
+        for (int i = 0; i < loaded.size(); i++) {
+            TodoSubTask subTask = subTask(loaded.get(i));
+            if (i < subTasks.size())
+                subTasks.set(i, subTask);
+            else
+                subTasks.add(subTask);
+        }
+        while (subTasks.size() > loaded.size())
+            subTasks.remove(subTasks.size() - 1);
+        if (unsaved != null)
+            subTasks.addAll(unsaved);
+    }
+
+    private void checkThread() {
+        if (Thread.currentThread() != owner)
+            throw new IllegalStateException("The identity map may only be used on the thread that created it.");
+    }
+
+    private static <T extends BaseTodo> T get(SparseArray<WeakReference<T>> map, int id) {
+        WeakReference<T> reference = map.get(id);
+        return reference == null ? null : reference.get();
+    }
+
+    private <T extends BaseTodo> void putIfAbsent(SparseArray<WeakReference<T>> map, T todo) {
+        if (todo.getId() >= 0 && get(map, todo.getId()) == null)
+            put(map, todo);
+    }
+
+    private <T extends BaseTodo> void put(SparseArray<WeakReference<T>> map, T todo) {
+        map.put(todo.getId(), new WeakReference<T>(todo));
+        created++;
+
+        if (++addedSinceSweep > map.size()) {
+            sweep(lists);
+            sweep(tasks);
+            sweep(subTasks);
+            addedSinceSweep = 0;
+        }
+    }
+
+    // removes the entries whose objects were garbage collected
+    private static <T extends BaseTodo> void sweep(SparseArray<WeakReference<T>> map) {
+        for (int i = map.size() - 1; i >= 0; i--) {
+            if (map.valueAt(i).get() == null)
+                map.removeAt(i);
+        }
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import org.secuso.privacyfriendlytodolist.model.BaseTodo;
+import org.secuso.privacyfriendlytodolist.model.MaintenanceService;
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.Tuple;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TChangeLog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of all lists, tasks and subtasks outside of the bin.
+ *
+ * The graph is loaded once. Every read first compares the version of the change log with the one
+ * the cache was built from (a single row lookup). If something was changed in the meantime, only
+ * the affected lists and tasks are read again. A changed subtask that is not in memory is traced
+ * back to its task through the database.
+ * Writes go straight to {@link DBQueryHandler} and reach the cache through the change log as well,
+ * no matter if they were made through this class or not. Writes made through this class are also
+ * reported to the {@link QueryNotifier} and replace the {@link TodoSnapshot}.
+ *
+ * Lists and tasks always stay in memory. Subtasks count against a memory budget: if it is exceeded,
+ * the cache drops the subtasks of the lists that were not requested for the longest time and loads
+ * them again by {@link #getTodoList} when needed.
+ *
+ * Reads hand out the objects of the cache itself. These are never changed once they are in the
+ * cache: a list or task that changes is replaced by a new object, so a reader may keep what it got
+ * on any thread while the cache moves on. Callers must not change them either. Screens take them
+ * over through {@link TodoIdentityMap}, which keeps the objects they may edit.
+ */
+
+public class TodoRepository {
+
+    private static final String TAG = TodoRepository.class.getSimpleName();
+
+    private static TodoRepository mInstance = null;
+
+    // rough heap usage of a subtask without its strings
+    private static final int SUBTASK_OVERHEAD = 96;
+
+    private final Context context;
+    private final SQLiteOpenHelper dbHelper;
+    private final long memoryBudget;
+
+    private boolean loaded = false;
+    private long version;
+
+    // The containers belong to the cache, the lists and tasks in them are replaced but not changed.
+    // A task holds its subtasks unless they were evicted together with the ones of its list.
+    private final ArrayList<TodoList> lists = new ArrayList<>();
+    private final SparseArray<TodoList> listsById = new SparseArray<>();
+    private final ArrayList<TodoTask> tasksWithoutList = new ArrayList<>();
+    private final SparseArray<TodoTask> tasksById = new SparseArray<>();
+
+    // task ids of the subtasks that are in memory
+    private final SparseIntArray taskIdsBySubTaskId = new SparseIntArray();
+
+    // estimated size of the loaded subtasks per list id in the order of the last access, so the
+    // coldest list comes first. Lists whose subtasks were evicted are not contained.
+    private final LinkedHashMap<Integer, Long> subTaskBytes = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private int hits;
+    private int misses;
+
+    public static synchronized TodoRepository getInstance(Context context) {
+        if (mInstance == null) {
+            Context appContext = context.getApplicationContext();
+            mInstance = new TodoRepository(appContext, DatabaseHelper.getInstance(appContext), Runtime.getRuntime().maxMemory() / 32);
+        }
+        return mInstance;
+    }
+
+    // a repository of its own for the given database, used by the tests
+    TodoRepository(Context context, SQLiteOpenHelper dbHelper, long memoryBudget) {
+        this.context = context;
+        this.dbHelper = dbHelper;
+        this.memoryBudget = memoryBudget;
+    }
+
+    // reads
+
+    // all lists together with their tasks, the subtasks of cold lists may be missing
+    public synchronized ArrayList<TodoList> getTodoLists() {
+        count(refresh());
+        return new ArrayList<>(lists);
+    }
+
+    // the list with its tasks and all of their subtasks or null if there is no such list
+    public synchronized TodoList getTodoList(int listId) {
+        boolean fromMemory = refresh();
+        TodoList list = listsById.get(listId);
+        if (list == null) {
+            count(fromMemory);
+            return null;
+        }
+
+        fromMemory &= loadSubTasks(list);
+        list = listsById.get(listId);
+        evictColdLists(listId);
+        count(fromMemory);
+        return list;
+    }
+
+    // all tasks outside of the bin including all of their subtasks
+    public synchronized ArrayList<TodoTask> getAllTasks() {
+        boolean fromMemory = refresh();
+        ArrayList<TodoTask> tasks = new ArrayList<>(tasksById.size());
+        for (int i = 0; i < lists.size(); i++) {
+            fromMemory &= loadSubTasks(lists.get(i));
+            tasks.addAll(lists.get(i).getTasks());
+        }
+        tasks.addAll(tasksWithoutList);
+        evictColdLists(-1);
+        count(fromMemory);
+        return tasks;
+    }
+
+    public synchronized int getTaskCount() {
+        count(refresh());
+        return tasksById.size();
+    }
+
+    public synchronized int getListCount() {
+        count(refresh());
+        return lists.size();
+    }
+
+    // reads that were answered from memory
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    // reads that had to load lists, tasks or subtasks from the database
+    public synchronized int getMissCount() {
+        return misses;
+    }
+
+    // writes, observed queries are informed about each of them
+
+    public int saveTodo(BaseTodo todo) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int id;
+        if (todo instanceof TodoList)
+            id = DBQueryHandler.saveTodoListInDb(db, (TodoList) todo);
+        else if (todo instanceof TodoTask)
+            id = DBQueryHandler.saveTodoTaskInDb(db, (TodoTask) todo);
+        else if (todo instanceof TodoSubTask)
+            id = DBQueryHandler.saveTodoSubTaskInDb(db, (TodoSubTask) todo);
+        else
+            throw new IllegalArgumentException("Cannot save unknown descendant of BaseTodo in the database.");
+        changed();
+        return id;
+    }
+
+    public int[] saveTodos(Collection<? extends BaseTodo> todos) {
+        int ids[] = DBQueryHandler.saveTodosInDb(dbHelper.getWritableDatabase(), todos);
+        changed();
+        return ids;
+    }
+
+    // Moves the task behind previous (to the top if null) within its list, see DBQueryHandler#moveTask.
+    // A list that runs out of free positions is renumbered by the MaintenanceService.
+    public int moveTask(TodoTask task, TodoTask previous) {
+        Tuple<Integer, Boolean> moved = DBQueryHandler.moveTask(dbHelper.getWritableDatabase(), task, previous);
+        if (moved.getRight())
+            MaintenanceService.rebalanceList(context, task.getListId());
+        changed();
+        return moved.getLeft();
+    }
+
+    public int putTaskInTrash(TodoTask task) {
+        int rows = DBQueryHandler.putTaskInTrash(dbHelper.getWritableDatabase(), task);
+        changed();
+        return rows;
+    }
+
+    public int recoverTask(TodoTask task) {
+        int rows = DBQueryHandler.recoverTasks(dbHelper.getWritableDatabase(), task);
+        changed();
+        return rows;
+    }
+
+    public int putSubtaskInTrash(TodoSubTask subTask) {
+        int rows = DBQueryHandler.putSubtaskInTrash(dbHelper.getWritableDatabase(), subTask);
+        changed();
+        return rows;
+    }
+
+    public void deleteTodoList(int listId) {
+        DBQueryHandler.deleteTodoList(dbHelper.getWritableDatabase(), listId);
+        changed();
+    }
+
+    public Tuple<Integer, Integer> purgeBin() {
+        Tuple<Integer, Integer> removed = DBQueryHandler.purgeBin(dbHelper.getWritableDatabase());
+        changed();
+        return removed;
+    }
+
+    private void changed() {
+        QueryNotifier.getInstance().notifyChanged();
+        TodoSnapshot.invalidate(context);
+    }
+
+    // cache maintenance
+
+    private void count(boolean fromMemory) {
+        if (fromMemory)
+            hits++;
+        else
+            misses++;
+    }
+
+    // brings the cache up to date and returns true if nothing had to be loaded
+    private boolean refresh() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        if (!loaded) {
+            loadAll(db);
+            return false;
+        }
+
+        long currentVersion = DBQueryHandler.getChangeLogVersion(db);
+        if (currentVersion == version)
+            return true;
+
+        ArrayList<ChangeLogEntry> changes = DBQueryHandler.getChangesSince(db, version);
+        if (changes == null) {
+            loadAll(db);
+            return false;
+        }
+
+        HashSet<Integer> changedListIds = new HashSet<>();
+        HashSet<Integer> changedTaskIds = new HashSet<>();
+        HashSet<Integer> unknownSubTaskIds = new HashSet<>();
+        for (ChangeLogEntry change : changes) {
+            switch (change.getEntity()) {
+                case TChangeLog.ENTITY_LIST:
+                    changedListIds.add(change.getEntityId());
+                    break;
+                case TChangeLog.ENTITY_TASK:
+                    changedTaskIds.add(change.getEntityId());
+                    break;
+                case TChangeLog.ENTITY_SUBTASK:
+                    int taskId = taskIdsBySubTaskId.get(change.getEntityId(), -1);
+                    if (taskId == -1)
+                        unknownSubTaskIds.add(change.getEntityId());
+                    else
+                        changedTaskIds.add(taskId);
+                    break;
+            }
+            version = change.getVersion();
+        }
+        if (changes.isEmpty())
+            version = currentVersion;
+
+        // A subtask that was deleted cannot be found anymore. If it was outside of the bin, the
+        // counters of its task were updated by the same statement, so the task is part of the
+        // changes anyway. A subtask in the bin is only cached with the other subtasks of its task.
+        changedTaskIds.addAll(DBQueryHandler.getTaskIdsOfSubTasks(db, toArray(unknownSubTaskIds)));
+
+        reloadLists(db, changedListIds, changedTaskIds);
+        reloadTasks(db, changedTaskIds);
+        evictColdLists(-1);
+        return false;
+    }
+
+    private void loadAll(SQLiteDatabase db) {
+        // read the version first, changes made while loading are then applied again on the next read
+        version = DBQueryHandler.getChangeLogVersion(db);
+
+        lists.clear();
+        listsById.clear();
+        tasksWithoutList.clear();
+        tasksById.clear();
+        taskIdsBySubTaskId.clear();
+        subTaskBytes.clear();
+        cachedBytes = 0;
+
+        for (TodoList list : DBQueryHandler.getAllToDoLists(db)) {
+            lists.add(list);
+            listsById.put(list.getId(), list);
+            for (TodoTask task : list.getTasks()) {
+                tasksById.put(task.getId(), task);
+                index(task);
+            }
+            account(list);
+        }
+        for (TodoTask task : DBQueryHandler.getTasksWithoutList(db)) {
+            tasksWithoutList.add(task);
+            tasksById.put(task.getId(), task);
+            index(task);
+        }
+
+        loaded = true;
+        evictColdLists(-1);
+        Log.i(TAG, "Loaded " + lists.size() + " lists and " + tasksById.size() + " tasks (hits: " + hits + ", misses: " + misses + ")");
+    }
+
+    // Applies the current state of the given lists. The tasks of deleted lists are added to
+    // taskIds, so they are read again as tasks without list.
+    private void reloadLists(SQLiteDatabase db, HashSet<Integer> listIds, HashSet<Integer> taskIds) {
+        if (listIds.isEmpty())
+            return;
+
+        for (TodoList row : DBQueryHandler.getTodoListsById(db, toArray(listIds))) {
+            listIds.remove(row.getId());
+            TodoList list = listsById.get(row.getId());
+            if (list == null) {
+                insertOrderedById(lists, row);
+                listsById.put(row.getId(), row);
+                // there are no tasks whose subtasks could be missing yet
+                subTaskBytes.put(row.getId(), 0L);
+                adoptTasksWithoutList(row, taskIds);
+            } else {
+                // the tasks carry the name of their list as well
+                ArrayList<TodoTask> tasks = new ArrayList<>(list.getTasks().size());
+                for (TodoTask task : list.getTasks()) {
+                    TodoTask renamed = new TodoTask(task);
+                    if (task.areSubTasksLoaded())
+                        renamed.setSubTasks(task.getSubTasks());
+                    renamed.setListName(row.getName());
+                    tasks.add(renamed);
+                }
+                replace(list, row, tasks);
+            }
+        }
+
+        // the remaining lists were deleted
+        for (Integer listId : listIds) {
+            TodoList list = listsById.get(listId);
+            if (list == null)
+                continue;
+
+            for (TodoTask task : list.getTasks())
+                taskIds.add(task.getId());
+            lists.remove(list);
+            listsById.remove(listId);
+            Long bytes = subTaskBytes.remove(listId);
+            if (bytes != null)
+                cachedBytes -= bytes;
+        }
+    }
+
+    // tasks that referred to a list before it was created are read again to be moved into it
+    private void adoptTasksWithoutList(TodoList list, HashSet<Integer> taskIds) {
+        for (TodoTask task : tasksWithoutList)
+            if (task.getListId() == list.getId())
+                taskIds.add(task.getId());
+    }
+
+    // Replaces the given tasks with their current state in the database. The tasks of a list are
+    // changed in a new container, so every changed list is replaced once.
+    private void reloadTasks(SQLiteDatabase db, HashSet<Integer> taskIds) {
+        if (taskIds.isEmpty())
+            return;
+
+        HashMap<Integer, ArrayList<TodoTask>> changedLists = new HashMap<>();
+        for (Integer id : taskIds)
+            remove(id, changedLists);
+
+        for (TodoTask task : DBQueryHandler.getTasksById(db, toArray(taskIds))) {
+            if (task.isInTrash())
+                continue;
+
+            tasksById.put(task.getId(), task);
+            TodoList list = listsById.get(task.getListId());
+            if (list == null) {
+                tasksWithoutList.add(task);
+                index(task);
+            } else {
+                task.setListName(list.getName());
+                insertOrderedById(tasksOf(list, changedLists), task);
+                Long bytes = subTaskBytes.get(list.getId());
+                if (bytes == null) {
+                    // keep the list consistent with its evicted siblings
+                    task.releaseSubTasks();
+                } else {
+                    long taskBytes = estimateSubTaskBytes(task);
+                    subTaskBytes.put(list.getId(), bytes + taskBytes);
+                    cachedBytes += taskBytes;
+                    index(task);
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, ArrayList<TodoTask>> entry : changedLists.entrySet()) {
+            TodoList list = listsById.get(entry.getKey());
+            replace(list, new TodoList(list), entry.getValue());
+        }
+    }
+
+    private void remove(int taskId, HashMap<Integer, ArrayList<TodoTask>> changedLists) {
+        TodoTask task = tasksById.get(taskId);
+        if (task == null)
+            return;
+
+        tasksById.remove(taskId);
+        unindex(task);
+
+        TodoList list = listsById.get(task.getListId());
+        if (list != null && tasksOf(list, changedLists).remove(task)) {
+            Long bytes = subTaskBytes.get(list.getId());
+            if (bytes != null) {
+                long taskBytes = estimateSubTaskBytes(task);
+                subTaskBytes.put(list.getId(), bytes - taskBytes);
+                cachedBytes -= taskBytes;
+            }
+        } else {
+            tasksWithoutList.remove(task);
+        }
+    }
+
+    // the new container for the tasks of the list, created on first use
+    private static ArrayList<TodoTask> tasksOf(TodoList list, HashMap<Integer, ArrayList<TodoTask>> changedLists) {
+        ArrayList<TodoTask> tasks = changedLists.get(list.getId());
+        if (tasks == null) {
+            tasks = new ArrayList<>(list.getTasks());
+            changedLists.put(list.getId(), tasks);
+        }
+        return tasks;
+    }
+
+    // puts the replacement with the given tasks in place of the list
+    private void replace(TodoList list, TodoList replacement, ArrayList<TodoTask> tasks) {
+        replacement.setTasks(tasks);
+        lists.set(lists.indexOf(list), replacement);
+        listsById.put(replacement.getId(), replacement);
+        for (TodoTask task : tasks)
+            tasksById.put(task.getId(), task);
+    }
+
+    private void index(TodoTask task) {
+        if (!task.areSubTasksLoaded())
+            return;
+        for (TodoSubTask subTask : task.getSubTasks())
+            taskIdsBySubTaskId.put(subTask.getId(), task.getId());
+    }
+
+    private void unindex(TodoTask task) {
+        if (!task.areSubTasksLoaded())
+            return;
+        for (TodoSubTask subTask : task.getSubTasks())
+            taskIdsBySubTaskId.delete(subTask.getId());
+    }
+
+    // loads the subtasks of the list if they were evicted and returns true if nothing had to be loaded
+    private boolean loadSubTasks(TodoList list) {
+        // get() also marks the list as recently used
+        if (subTaskBytes.get(list.getId()) != null)
+            return true;
+
+        int taskIds[] = new int[list.getTasks().size()];
+        for (int i = 0; i < taskIds.length; i++)
+            taskIds[i] = list.getTasks().get(i).getId();
+
+        SparseArray<ArrayList<TodoSubTask>> subTasks = DBQueryHandler.getSubTasksOfTasks(dbHelper.getReadableDatabase(), taskIds);
+        ArrayList<TodoTask> tasks = new ArrayList<>(list.getTasks().size());
+        for (TodoTask task : list.getTasks()) {
+            ArrayList<TodoSubTask> subTasksOfTask = subTasks.get(task.getId());
+            TodoTask loadedTask = new TodoTask(task);
+            loadedTask.setSubTasks(subTasksOfTask == null ? new ArrayList<TodoSubTask>() : subTasksOfTask);
+            index(loadedTask);
+            tasks.add(loadedTask);
+        }
+        TodoList loadedList = new TodoList(list);
+        replace(list, loadedList, tasks);
+        account(loadedList);
+        return false;
+    }
+
+    // records the size of the subtasks of the list, which must be loaded
+    private void account(TodoList list) {
+        long bytes = 0;
+        for (TodoTask task : list.getTasks())
+            bytes += estimateSubTaskBytes(task);
+        Long previous = subTaskBytes.put(list.getId(), bytes);
+        cachedBytes += bytes - (previous == null ? 0 : previous);
+    }
+
+    // replaces the tasks of the least recently used lists by ones without subtasks until the budget is met
+    private void evictColdLists(int keepListId) {
+        Iterator<Map.Entry<Integer, Long>> iterator = subTaskBytes.entrySet().iterator();
+        while (cachedBytes > memoryBudget && iterator.hasNext()) {
+            Map.Entry<Integer, Long> entry = iterator.next();
+            if (entry.getKey() == keepListId)
+                continue;
+
+            TodoList list = listsById.get(entry.getKey());
+            ArrayList<TodoTask> tasks = new ArrayList<>(list.getTasks().size());
+            for (TodoTask task : list.getTasks()) {
+                unindex(task);
+                // the copy counts by the counters
+                tasks.add(new TodoTask(task));
+            }
+            replace(list, new TodoList(list), tasks);
+            cachedBytes -= entry.getValue();
+            iterator.remove();
+            Log.d(TAG, "Subtasks of list " + entry.getKey() + " evicted");
+        }
+    }
+
+    private static long estimateSubTaskBytes(TodoTask task) {
+        long bytes = 0;
+        if (!task.areSubTasksLoaded())
+            return bytes;
+
+        for (TodoSubTask subTask : task.getSubTasks()) {
+            bytes += SUBTASK_OVERHEAD;
+            if (subTask.getName() != null)
+                bytes += 2 * subTask.getName().length();
+        }
+        return bytes;
+    }
+
+    private static <T extends BaseTodo> void insertOrderedById(ArrayList<T> todos, T todo) {
+        int index = todos.size();
+        while (index > 0 && todos.get(index - 1).getId() > todo.getId())
+            index--;
+        todos.add(index, todo);
+    }
+
+    private static int[] toArray(Collection<Integer> ids) {
+        int array[] = new int[ids.size()];
+        int i = 0;
+        for (Integer id : ids)
+            array[i++] = id;
+        return array;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoListSummary;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary copy of what the main screen shows first: the lists with the first page of their
+ * tasks and the first page of all tasks. It is read at startup through a memory-mapped file, so the
+ * first screen can be drawn before the database is opened.
+ *
+ * The file starts with a header of a magic number, the format version, the database version, the
+ * length of the payload and its CRC32 checksum. A snapshot that does not match in any of these is
+ * ignored and the screen is loaded from the database as usual.
+ *
+ * {@link TodoRepository} deletes the snapshot with every write and a new one is written on the
+ * {@link DatabaseExecutor} once no further changes arrive for {@link #WRITE_DELAY}. If the process
+ * ends in between, the next start simply finds no snapshot.
+ *
+ * The tasks of a snapshot are detached copies that are meant to be displayed until the real ones
+ * are loaded.
+ */
+
+public class TodoSnapshot {
+
+    private static final String TAG = TodoSnapshot.class.getSimpleName();
+
+    public static final String FILE_NAME = "startup.snapshot";
+
+    // tasks per page, enough to fill the first screen
+    public static final int PAGE_SIZE = 30;
+
+    // milliseconds to wait for further changes before the snapshot is written again
+    public static final long WRITE_DELAY = 1000;
+
+    private static final int MAGIC = 0x54444c53; // "TDLS"
+    private static final int FORMAT_VERSION = 3; // 2: subtask counters of the tasks, 3: whether the subtasks are loaded
+    private static final int HEADER_SIZE = 5 * 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static boolean writeScheduled = false;
+
+    private final ArrayList<TodoList> lists;
+    private final ArrayList<TodoTask> firstPage;
+
+    private TodoSnapshot(ArrayList<TodoList> lists, ArrayList<TodoTask> firstPage) {
+        this.lists = lists;
+        this.firstPage = firstPage;
+    }
+
+    // all lists, each with the first page of its tasks
+    public ArrayList<TodoList> getLists() {
+        return lists;
+    }
+
+    // the first page of all tasks outside of the bin
+    public ArrayList<TodoTask> getFirstPage() {
+        return firstPage;
+    }
+
+    /**
+     * Maps the snapshot file and decodes it.
+     *
+     * @return null if there is no snapshot or it is outdated or damaged
+     */
+    public static TodoSnapshot read(Context context) {
+        long start = SystemClock.elapsedRealtime();
+        File file = getFile(context);
+        if (!file.exists())
+            return null;
+
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() < HEADER_SIZE)
+                    return null;
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getInt() != DatabaseHelper.DATABASE_VERSION) {
+                    Log.i(TAG, "Snapshot is outdated.");
+                    return null;
+                }
+
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length != buffer.remaining() || checksum != checksumOf(buffer)) {
+                    Log.w(TAG, "Snapshot is damaged.");
+                    return null;
+                }
+
+                TodoSnapshot snapshot = decode(buffer);
+                Log.i(TAG, "Snapshot with " + snapshot.lists.size() + " lists read in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                return snapshot;
+            } finally {
+                raf.close();
+            }
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.w(TAG, "Could not read the snapshot.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the snapshot, because the database was changed, and schedules a new one. Must not be
+     * called on the main thread.
+     */
+    public static void invalidate(Context context) {
+        File file = getFile(context);
+        if (file.exists() && !file.delete())
+            Log.w(TAG, "Could not delete the outdated snapshot.");
+        scheduleWrite(context);
+    }
+
+    // may be called from any thread
+    public static void scheduleWrite(Context context) {
+        final Context appContext = context.getApplicationContext();
+        synchronized (TodoSnapshot.class) {
+            if (writeScheduled)
+                return;
+            writeScheduled = true;
+        }
+
+        mainHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (TodoSnapshot.class) {
+                    writeScheduled = false;
+                }
+                // runs after all writes submitted so far
+                DatabaseExecutor.getInstance().command(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            write(DatabaseHelper.getInstance(appContext).getReadableDatabase(), getFile(appContext));
+                        } catch (IOException e) {
+                            Log.w(TAG, "Could not write the snapshot.", e);
+                        }
+                    }
+                });
+            }
+        }, WRITE_DELAY);
+    }
+
+    static void write(SQLiteDatabase db, File file) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        // the lists and pages are read in one transaction, so they fit together
+        db.beginTransactionNonExclusive();
+        try {
+            ArrayList<TodoListSummary> lists = DBQueryHandler.getTodoListSummaries(db, System.currentTimeMillis() / 1000, 0);
+            out.writeInt(lists.size());
+            for (TodoListSummary list : lists) {
+                out.writeInt(list.getId());
+                writeString(out, list.getName());
+                writeTasks(out, DBQueryHandler.getTaskPageOfList(db, list.getId(), DBQueryHandler.TaskOrder.LIST_POSITION, null, PAGE_SIZE).getTasks());
+            }
+            writeTasks(out, DBQueryHandler.getTaskPage(db, DBQueryHandler.TaskOrder.LIST_POSITION, null, PAGE_SIZE).getTasks());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        out.flush();
+
+        byte payload[] = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        // written next to the old snapshot and renamed, so a reader never sees half a file
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream fileOut = new DataOutputStream(new FileOutputStream(tmp));
+        try {
+            fileOut.writeInt(MAGIC);
+            fileOut.writeInt(FORMAT_VERSION);
+            fileOut.writeInt(DatabaseHelper.DATABASE_VERSION);
+            fileOut.writeInt(payload.length);
+            fileOut.writeInt((int) crc.getValue());
+            fileOut.write(payload);
+        } finally {
+            fileOut.close();
+        }
+        if (!tmp.renameTo(file))
+            throw new IOException("Could not replace " + file);
+
+        Log.i(TAG, "Snapshot of " + (HEADER_SIZE + payload.length) + " bytes written in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    // CRC32 of the remaining bytes, the position of the buffer is left untouched
+    private static int checksumOf(ByteBuffer buffer) {
+        ByteBuffer payload = buffer.slice();
+        CRC32 crc = new CRC32();
+        byte chunk[] = new byte[8192];
+        while (payload.hasRemaining()) {
+            int n = Math.min(chunk.length, payload.remaining());
+            payload.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int) crc.getValue();
+    }
+
+    // encoding
+
+    private static void writeTasks(DataOutputStream out, ArrayList<TodoTask> tasks) throws IOException {
+        out.writeInt(tasks.size());
+        for (TodoTask task : tasks) {
+            out.writeInt(task.getId());
+            out.writeInt(task.getListId());
+            out.writeInt(task.getListPosition());
+            writeString(out, task.getName());
+            writeString(out, task.getDescription());
+            out.writeLong(task.getDeadline());
+            out.writeLong(task.getReminderTime());
+            out.writeInt(task.getProgress());
+            out.writeInt(task.getPriority().getValue());
+            out.writeBoolean(task.getDone());
+            // the subtasks of cold lists are not loaded, the list rows show the counters instead
+            out.writeInt(task.getSubTaskCount());
+            out.writeInt(task.getDoneSubTaskCount());
+
+            out.writeBoolean(task.areSubTasksLoaded());
+            if (!task.areSubTasksLoaded())
+                continue;
+            out.writeInt(task.getSubTasks().size());
+            for (TodoSubTask subTask : task.getSubTasks()) {
+                out.writeInt(subTask.getId());
+                writeString(out, subTask.getName());
+                out.writeBoolean(subTask.getDone());
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte bytes[] = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // decoding
+
+    private static TodoSnapshot decode(ByteBuffer buffer) {
+        SparseArray<String> listNames = new SparseArray<>();
+
+        int listCount = buffer.getInt();
+        ArrayList<TodoList> lists = new ArrayList<>(listCount);
+        for (int i = 0; i < listCount; i++) {
+            TodoList list = new TodoList();
+            list.setId(buffer.getInt());
+            list.setName(readString(buffer));
+            list.setTasks(readTasks(buffer, listNames));
+            list.setUnchanged();
+            listNames.put(list.getId(), list.getName());
+            lists.add(list);
+        }
+
+        ArrayList<TodoTask> firstPage = readTasks(buffer, listNames);
+        return new TodoSnapshot(lists, firstPage);
+    }
+
+    private static ArrayList<TodoTask> readTasks(ByteBuffer buffer, SparseArray<String> listNames) {
+        int count = buffer.getInt();
+        ArrayList<TodoTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TodoTask task = new TodoTask();
+            task.setId(buffer.getInt());
+            task.setListId(buffer.getInt());
+            task.setPositionInList(buffer.getInt());
+            task.setName(readString(buffer));
+            task.setDescription(readString(buffer));
+            task.setDeadline(buffer.getLong());
+            task.setReminderTime(buffer.getLong());
+            task.setProgress(buffer.getInt());
+            task.setPriority(TodoTask.Priority.fromInt(buffer.getInt()));
+            task.setDone(buffer.get() != 0);
+            task.setSubTaskCounts(buffer.getInt(), buffer.getInt());
+            task.setListName(listNames.get(task.getListId()));
+
+            if (buffer.get() == 0) {
+                task.setUnchanged();
+                tasks.add(task);
+                continue;
+            }
+            int subTaskCount = buffer.getInt();
+            ArrayList<TodoSubTask> subTasks = new ArrayList<>(subTaskCount);
+            for (int j = 0; j < subTaskCount; j++) {
+                TodoSubTask subTask = new TodoSubTask();
+                subTask.setId(buffer.getInt());
+                subTask.setName(readString(buffer));
+                subTask.setDone(buffer.get() != 0);
+                subTask.setTaskId(task.getId());
+                subTask.setUnchanged();
+                subTasks.add(subTask);
+            }
+            task.setSubTasks(subTasks);
+            task.setUnchanged();
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        if (length > buffer.remaining())
+            throw new BufferUnderflowException();
+        byte bytes[] = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
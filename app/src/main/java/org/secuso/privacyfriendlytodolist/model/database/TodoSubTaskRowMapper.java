@@ -0,0 +1,69 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoSubTask;
+
+/**
+ * Maps rows of a cursor over {@link TTodoSubTask#TABLE_NAME} to {@link TodoSubTask} objects.
+ *
+ * The column positions are resolved once when the mapper is created and every row is mapped to a
+ * new object (see {@link TodoTaskRowMapper}).
+ */
+
+class TodoSubTaskRowMapper {
+
+    private final Cursor cursor;
+
+    private final int idIndex;
+    private final int taskIdIndex;
+    private final int titleIndex;
+    private final int doneIndex;
+    private final int trashIndex;
+
+    TodoSubTaskRowMapper(Cursor cursor) {
+        this.cursor = cursor;
+
+        idIndex = cursor.getColumnIndexOrThrow(TTodoSubTask.COLUMN_ID);
+        taskIdIndex = cursor.getColumnIndexOrThrow(TTodoSubTask.COLUMN_TASK_ID);
+        titleIndex = cursor.getColumnIndexOrThrow(TTodoSubTask.COLUMN_TITLE);
+        doneIndex = cursor.getColumnIndexOrThrow(TTodoSubTask.COLUMN_DONE);
+        trashIndex = cursor.getColumnIndexOrThrow(TTodoSubTask.COLUMN_TRASH);
+    }
+
+    int getTaskId() {
+        return cursor.getInt(taskIdIndex);
+    }
+
+    // maps the row the cursor currently points to
+    TodoSubTask map() {
+
+        TodoSubTask subTask = new TodoSubTask();
+        subTask.setId(cursor.getInt(idIndex));
+        subTask.setTaskId(cursor.getInt(taskIdIndex));
+        subTask.setName(cursor.getString(titleIndex));
+        subTask.setDone(cursor.getInt(doneIndex) > 0);
+        subTask.setInTrash(cursor.getInt(trashIndex) > 0);
+        subTask.setUnchanged();
+
+        return subTask;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import android.database.Cursor;
+
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
+
+/**
+ * Maps rows of a cursor over {@link TTodoTask#TABLE_NAME} to {@link TodoTask} objects.
+ *
+ * The column positions are resolved once when the mapper is created. Mapping a row afterwards
+ * only consists of reads by index, so the mapper must only be used with the cursor it was
+ * created for. Every row is mapped to a new object, so objects that are already handed out are never
+ * modified by a later load, no matter on which thread it runs.
+ */
+
+class TodoTaskRowMapper {
+
+    private final Cursor cursor;
+
+    private final int idIndex;
+    private final int listIdIndex;
+    private final int listPositionIndex;
+    private final int nameIndex;
+    private final int descriptionIndex;
+    private final int priorityIndex;
+    private final int deadlineIndex;
+    private final int doneIndex;
+    private final int progressIndex;
+    private final int reminderTimeIndex;
+    private final int trashIndex;
+    private final int subTaskCountIndex;
+    private final int doneSubTaskCountIndex;
+
+    TodoTaskRowMapper(Cursor cursor) {
+        this.cursor = cursor;
+
+        idIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_ID);
+        listIdIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_TODO_LIST_ID);
+        listPositionIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_LIST_POSITION);
+        nameIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_NAME);
+        descriptionIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_DESCRIPTION);
+        priorityIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_PRIORITY);
+        deadlineIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_DEADLINE);
+        doneIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_DONE);
+        progressIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_PROGRESS);
+        reminderTimeIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_DEADLINE_WARNING_TIME);
+        trashIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_TRASH);
+        subTaskCountIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_NUM_SUBTASKS);
+        doneSubTaskCountIndex = cursor.getColumnIndexOrThrow(TTodoTask.COLUMN_NUM_SUBTASKS_DONE);
+    }
+
+    // maps the row the cursor currently points to
+    TodoTask map() {
+
+        TodoTask task = new TodoTask();
+        task.setId(cursor.getInt(idIndex));
+        task.setListId(cursor.getInt(listIdIndex));
+        task.setPositionInList(cursor.getInt(listPositionIndex));
+        task.setName(cursor.getString(nameIndex));
+        task.setDescription(cursor.getString(descriptionIndex));
+        task.setPriority(TodoTask.Priority.fromInt(cursor.getInt(priorityIndex)));
+        // timestamps are 64 bit values, a task without deadline has -1 (see TaskOrder.DEADLINE)
+        task.setDeadline(cursor.isNull(deadlineIndex) ? -1 : cursor.getLong(deadlineIndex));
+        task.setReminderTime(cursor.getLong(reminderTimeIndex));
+        task.setDone(cursor.getInt(doneIndex) > 0);
+        task.setProgress(cursor.getInt(progressIndex));
+        task.setInTrash(cursor.getInt(trashIndex) > 0);
+        task.setSubTaskCounts(cursor.getInt(subTaskCountIndex), cursor.getInt(doneSubTaskCountIndex));
+        task.setUnchanged();
+
+        return task;
+    }
+}
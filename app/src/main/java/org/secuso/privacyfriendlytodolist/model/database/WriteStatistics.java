@@ -0,0 +1,67 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import java.nio.charset.Charset;
+
+/**
+ * Counts the rows and the bytes of column values written by the save methods of
+ * {@link DBQueryHandler}. Integers count as eight bytes, texts with their UTF-8 length. The
+ * numbers ignore the overhead of SQLite itself, but show how much less an update of single
+ * columns writes compared to an update of the whole row.
+ */
+
+public class WriteStatistics {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static long rowsWritten = 0;
+    private static long bytesWritten = 0;
+    private static int lastSaveBytes = 0;
+
+    private WriteStatistics() {
+    }
+
+    static synchronized void record(int bytes) {
+        rowsWritten++;
+        bytesWritten += bytes;
+        lastSaveBytes = bytes;
+    }
+
+    static int sizeOf(Object value) {
+        if (value == null)
+            return 0;
+        if (value instanceof String)
+            return ((String) value).getBytes(UTF_8).length;
+        return 8;
+    }
+
+    // inserted or updated rows since the start of the process
+    public static synchronized long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public static synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // bytes of the row that was written last
+    public static synchronized int getLastSaveBytes() {
+        return lastSaveBytes;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database.tables;
+
+import java.util.Locale;
+
+/**
+ * This class defines the change log of the lists, tasks and subtasks.
+ *
+ * Triggers on the three tables add one row for every inserted, updated or deleted row. The version
+ * is an AUTOINCREMENT key, so it grows with every change and is never reused, even after old
+ * entries were pruned.
+ */
+
+public final class TChangeLog {
+
+    // columns + tablename
+    public static final String TABLE_NAME = "change_log";
+    public static final String COLUMN_VERSION = "version";
+    public static final String COLUMN_ENTITY = "entity";
+    public static final String COLUMN_ENTITY_ID = "entity_id";
+    public static final String COLUMN_OPERATION = "operation";
+
+    // values of COLUMN_ENTITY
+    public static final int ENTITY_LIST = 1;
+    public static final int ENTITY_TASK = 2;
+    public static final int ENTITY_SUBTASK = 3;
+
+    // values of COLUMN_OPERATION
+    public static final int OPERATION_INSERT = 1;
+    public static final int OPERATION_UPDATE = 2;
+    public static final int OPERATION_DELETE = 3;
+
+    // sql table creation (must be kept in sync with the migration scripts in the assets folder)
+    public static final String TABLE_CREATE = "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + "(" +
+            COLUMN_VERSION + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            COLUMN_ENTITY + " INTEGER NOT NULL, " +
+            COLUMN_ENTITY_ID + " INTEGER NOT NULL, " +
+            COLUMN_OPERATION + " INTEGER NOT NULL);";
+
+    private static String logTrigger(String table, String idColumn, int entity, String event, int operation) {
+        String row = operation == OPERATION_DELETE ? "old." : "new.";
+        return "CREATE TRIGGER IF NOT EXISTS trg_" + table + "_log_" + event.toLowerCase(Locale.ENGLISH) + " AFTER " + event + " ON " + table +
+                " BEGIN INSERT INTO " + TABLE_NAME + " (" + COLUMN_ENTITY + ", " + COLUMN_ENTITY_ID + ", " + COLUMN_OPERATION + ")" +
+                " VALUES (" + entity + ", " + row + idColumn + ", " + operation + "); END;";
+    }
+
+    private static String[] logTriggers(String table, String idColumn, int entity) {
+        return new String[]{
+                logTrigger(table, idColumn, entity, "INSERT", OPERATION_INSERT),
+                logTrigger(table, idColumn, entity, "UPDATE", OPERATION_UPDATE),
+                logTrigger(table, idColumn, entity, "DELETE", OPERATION_DELETE)};
+    }
+
+    public static final String LIST_TRIGGERS_CREATE[] = logTriggers(TTodoList.TABLE_NAME, TTodoList.COLUMN_ID, ENTITY_LIST);
+    public static final String TASK_TRIGGERS_CREATE[] = logTriggers(TTodoTask.TABLE_NAME, TTodoTask.COLUMN_ID, ENTITY_TASK);
+    public static final String SUBTASK_TRIGGERS_CREATE[] = logTriggers(TTodoSubTask.TABLE_NAME, TTodoSubTask.COLUMN_ID, ENTITY_SUBTASK);
+}
@@ -0,0 +1,39 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.secuso.privacyfriendlytodolist.model.database.tables;
+
+/**
+ * This class defines the sql table that records the applied migration steps of the database schema.
+ */
+public class TSchemaMigration {
+
+    // columns + tablename
+    public static final String TABLE_NAME = "schema_migration";
+    public static final String COLUMN_STEP = "step"; // name of the migration script
+    public static final String COLUMN_TO_VERSION = "to_version";
+    public static final String COLUMN_APPLIED_AT = "applied_at"; // absolut value in seconds
+    public static final String COLUMN_DURATION = "duration_ms";
+
+    // sql table creation
+    public static final String TABLE_CREATE = "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + "(" +
+            COLUMN_STEP + " TEXT PRIMARY KEY, " +
+            COLUMN_TO_VERSION + " INTEGER NOT NULL, " +
+            COLUMN_APPLIED_AT + " INTEGER NOT NULL, " +
+            COLUMN_DURATION + " INTEGER NOT NULL);";
+}
@@ -44,5 +44,9 @@ public final class TTodoSubTask {
             COLUMN_DONE + " INTEGER, " +
             COLUMN_TRASH + " INTEGER NOT NULL DEFAULT 0, FOREIGN KEY (" + COLUMN_TASK_ID + ") REFERENCES " + TTodoTask.TABLE_NAME + "(" + TTodoTask.COLUMN_ID + "));";
 
+    // index creation (must be kept in sync with the migration scripts in the assets folder)
+    public static final String INDEX_TASK_CREATE = "CREATE INDEX IF NOT EXISTS idx_todo_subtask_task ON " + TABLE_NAME + "(" +
+            COLUMN_TASK_ID + ");";
+
 }
 //  , " + COLUMN_TRASH + " INTEGER NOT NULL DEFAULT 0
\ No newline at end of file
@@ -37,10 +37,12 @@ public class TTodoTask {
     public static final String COLUMN_DONE = "done";
     public static final String COLUMN_PRIORITY = "priority";
     public static final String COLUMN_PROGRESS = "progress";
-    public static final String COLUMN_NUM_SUBTAKS = "num_subtasks";
+    public static final String COLUMN_NUM_SUBTASKS = "num_subtasks"; // subtasks outside of the bin, maintained by triggers
+    public static final String COLUMN_NUM_SUBTASKS_DONE = "num_subtasks_done"; // done subtasks outside of the bin, maintained by triggers
     public static final String COLUMN_DEADLINE_WARNING_TIME = "deadline_warning_time"; // absolut value in seconds
     public static final String COLUMN_LIST_POSITION = "position_in_todo_list";
     public static final String COLUMN_TRASH = "in_trash";
+    public static final String COLUMN_TRASHED_AT = "trashed_at"; // absolut value in seconds, NULL if not in the bin
 
 
     // sql table creation
@@ -54,8 +56,69 @@ public class TTodoTask {
             COLUMN_DEADLINE + " DATETIME DEFAULT NULL, " +
             COLUMN_DONE + " INTEGER NOT NULL DEFAULT 0, " +
             COLUMN_PROGRESS + " INTEGER NOT NULL DEFAULT 0, " +
-            COLUMN_NUM_SUBTAKS + "INTEGER NOT NULL DEFAULT 0, " +
+            COLUMN_NUM_SUBTASKS + " INTEGER NOT NULL DEFAULT 0, " +
+            COLUMN_NUM_SUBTASKS_DONE + " INTEGER NOT NULL DEFAULT 0, " +
             COLUMN_DEADLINE_WARNING_TIME + " NUMERIC NULL DEFAULT NULL, " +
             COLUMN_TRASH + " INTEGER NOT NULL DEFAULT 0, " +
+            COLUMN_TRASHED_AT + " INTEGER NULL DEFAULT NULL, " +
                 "FOREIGN KEY (" + COLUMN_TODO_LIST_ID + ") REFERENCES " + TTodoList.TABLE_NAME + "(" + TTodoList.COLUMN_ID + "));";
+
+    // index creation (must be kept in sync with the migration scripts in the assets folder)
+
+    // tasks of a list (list view, list overview)
+    public static final String INDEX_LIST_CREATE = "CREATE INDEX IF NOT EXISTS idx_todo_task_list ON " + TABLE_NAME + "(" +
+            COLUMN_TODO_LIST_ID + ", " + COLUMN_TRASH + ");";
+
+    // all tasks, bin and reminder queries
+    public static final String INDEX_STATE_CREATE = "CREATE INDEX IF NOT EXISTS idx_todo_task_state ON " + TABLE_NAME + "(" +
+            COLUMN_TRASH + ", " + COLUMN_DONE + ", " + COLUMN_DEADLINE_WARNING_TIME + ");";
+
+    // trigger creation (must be kept in sync with the migration scripts in the assets folder)
+
+    // The subtask counters of a task are counted again whenever one of its subtasks is inserted,
+    // deleted or changes its state or task. Counting the few subtasks of one task through the index
+    // idx_todo_subtask_task is cheap and cannot drift like incremented values.
+    // The WHEN clauses skip rows that cannot change a counter, and tasks in the bin are not counted
+    // at all (their counters are reset when they are put into the bin and counted again when they
+    // are restored). Each recount is an update of the task that is written to the change log, so
+    // without this every subtask of a set-based operation on a whole task or list would count and
+    // log its task once more.
+    public static final String TRIGGER_SUBTASK_COUNT_INSERT = "CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_insert AFTER INSERT ON " + TTodoSubTask.TABLE_NAME +
+            " WHEN new." + TTodoSubTask.COLUMN_TRASH + " = 0" +
+            " BEGIN " + countSubTasks("new." + TTodoSubTask.COLUMN_TASK_ID, "") + " END;";
+
+    public static final String TRIGGER_SUBTASK_COUNT_UPDATE = "CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_update AFTER UPDATE OF " +
+            TTodoSubTask.COLUMN_DONE + ", " + TTodoSubTask.COLUMN_TRASH + ", " + TTodoSubTask.COLUMN_TASK_ID + " ON " + TTodoSubTask.TABLE_NAME +
+            " WHEN old." + TTodoSubTask.COLUMN_TRASH + " IS NOT new." + TTodoSubTask.COLUMN_TRASH +
+            " OR old." + TTodoSubTask.COLUMN_TASK_ID + " IS NOT new." + TTodoSubTask.COLUMN_TASK_ID +
+            " OR (IFNULL(old." + TTodoSubTask.COLUMN_DONE + ", 0) > 0) != (IFNULL(new." + TTodoSubTask.COLUMN_DONE + ", 0) > 0)" +
+            " BEGIN " + countSubTasks("new." + TTodoSubTask.COLUMN_TASK_ID, "") +
+            " " + countSubTasks("old." + TTodoSubTask.COLUMN_TASK_ID, " AND old." + TTodoSubTask.COLUMN_TASK_ID + " != new." + TTodoSubTask.COLUMN_TASK_ID) + " END;";
+
+    public static final String TRIGGER_SUBTASK_COUNT_DELETE = "CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_count_delete AFTER DELETE ON " + TTodoSubTask.TABLE_NAME +
+            " WHEN old." + TTodoSubTask.COLUMN_TRASH + " = 0" +
+            " BEGIN " + countSubTasks("old." + TTodoSubTask.COLUMN_TASK_ID, "") + " END;";
+
+    public static final String SUBTASK_COUNT_TRIGGERS_CREATE[] = {
+            TRIGGER_SUBTASK_COUNT_INSERT,
+            TRIGGER_SUBTASK_COUNT_UPDATE,
+            TRIGGER_SUBTASK_COUNT_DELETE};
+
+    // recounts the subtasks of the task with the given id unless the task is in the bin
+    private static String countSubTasks(String taskId, String condition) {
+        return "UPDATE " + TABLE_NAME + " SET " + subTaskCounters(taskId) +
+                " WHERE " + COLUMN_ID + " = " + taskId + " AND " + COLUMN_TRASH + " = 0" + condition + ";";
+    }
+
+    // assignments of both subtask counters of the task with the given id for an UPDATE of this table
+    public static String subTaskCounters(String taskId) {
+        String subTasksOfTask = " FROM " + TTodoSubTask.TABLE_NAME + " s WHERE s." + TTodoSubTask.COLUMN_TASK_ID + " = " + taskId +
+                " AND s." + TTodoSubTask.COLUMN_TRASH + " = 0";
+        return COLUMN_NUM_SUBTASKS + " = (SELECT COUNT(*)" + subTasksOfTask + "), " +
+                COLUMN_NUM_SUBTASKS_DONE + " = (SELECT COUNT(*)" + subTasksOfTask + " AND s." + TTodoSubTask.COLUMN_DONE + " > 0)";
+    }
+
+    // neighbours and ends of a list when tasks are placed or moved
+    public static final String INDEX_POSITION_CREATE = "CREATE INDEX IF NOT EXISTS idx_todo_task_position ON " + TABLE_NAME + "(" +
+            COLUMN_TODO_LIST_ID + ", " + COLUMN_LIST_POSITION + ");";
 }
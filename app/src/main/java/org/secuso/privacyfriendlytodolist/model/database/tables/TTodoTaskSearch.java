@@ -0,0 +1,86 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.model.database.tables;
+
+/**
+ * This class is responsible for the full-text search index of To-Do tasks.
+ *
+ * The index is an FTS4 table with one row per task (docid == task id). It holds the name and the
+ * description of the task and the titles of all of its subtasks. Triggers on the task and subtask
+ * tables keep it up to date, so the application never writes to it directly.
+ */
+
+public final class TTodoTaskSearch {
+
+    // columns + tablename
+    public static final String TABLE_NAME = "todo_task_search";
+    public static final String COLUMN_DOCID = "docid";
+    public static final String COLUMN_NAME = "name";
+    public static final String COLUMN_DESCRIPTION = "description";
+    public static final String COLUMN_SUBTASKS = "subtasks";
+
+    // sql table creation (must be kept in sync with the migration scripts in the assets folder)
+    public static final String TABLE_CREATE = "CREATE VIRTUAL TABLE " + TABLE_NAME + " USING fts4(" +
+            COLUMN_NAME + ", " +
+            COLUMN_DESCRIPTION + ", " +
+            COLUMN_SUBTASKS + ");";
+
+    // subtask titles of a task separated by spaces
+    private static String subTaskTitles(String taskId) {
+        return "(SELECT group_concat(" + TTodoSubTask.COLUMN_TITLE + ", ' ') FROM " + TTodoSubTask.TABLE_NAME +
+                " WHERE " + TTodoSubTask.COLUMN_TASK_ID + " = " + taskId + ")";
+    }
+
+    private static String updateSubTasks(String taskId) {
+        return "UPDATE " + TABLE_NAME + " SET " + COLUMN_SUBTASKS + " = " + subTaskTitles(taskId) +
+                " WHERE " + COLUMN_DOCID + " = " + taskId + ";";
+    }
+
+    public static final String TRIGGER_TASK_INSERT = "CREATE TRIGGER IF NOT EXISTS trg_todo_task_search_insert AFTER INSERT ON " + TTodoTask.TABLE_NAME +
+            " BEGIN INSERT INTO " + TABLE_NAME + " (" + COLUMN_DOCID + ", " + COLUMN_NAME + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_SUBTASKS + ")" +
+            " VALUES (new." + TTodoTask.COLUMN_ID + ", new." + TTodoTask.COLUMN_NAME + ", new." + TTodoTask.COLUMN_DESCRIPTION + ", " + subTaskTitles("new." + TTodoTask.COLUMN_ID) + "); END;";
+
+    public static final String TRIGGER_TASK_UPDATE = "CREATE TRIGGER IF NOT EXISTS trg_todo_task_search_update AFTER UPDATE OF " + TTodoTask.COLUMN_NAME + ", " + TTodoTask.COLUMN_DESCRIPTION + " ON " + TTodoTask.TABLE_NAME +
+            " BEGIN UPDATE " + TABLE_NAME + " SET " + COLUMN_NAME + " = new." + TTodoTask.COLUMN_NAME + ", " + COLUMN_DESCRIPTION + " = new." + TTodoTask.COLUMN_DESCRIPTION +
+            " WHERE " + COLUMN_DOCID + " = new." + TTodoTask.COLUMN_ID + "; END;";
+
+    public static final String TRIGGER_TASK_DELETE = "CREATE TRIGGER IF NOT EXISTS trg_todo_task_search_delete AFTER DELETE ON " + TTodoTask.TABLE_NAME +
+            " BEGIN DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_DOCID + " = old." + TTodoTask.COLUMN_ID + "; END;";
+
+    public static final String TRIGGER_SUBTASK_INSERT = "CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_search_insert AFTER INSERT ON " + TTodoSubTask.TABLE_NAME +
+            " BEGIN " + updateSubTasks("new." + TTodoSubTask.COLUMN_TASK_ID) + " END;";
+
+    public static final String TRIGGER_SUBTASK_UPDATE = "CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_search_update AFTER UPDATE OF " + TTodoSubTask.COLUMN_TITLE + ", " + TTodoSubTask.COLUMN_TASK_ID + " ON " + TTodoSubTask.TABLE_NAME +
+            " BEGIN " + updateSubTasks("old." + TTodoSubTask.COLUMN_TASK_ID) + " " + updateSubTasks("new." + TTodoSubTask.COLUMN_TASK_ID) + " END;";
+
+    public static final String TRIGGER_SUBTASK_DELETE = "CREATE TRIGGER IF NOT EXISTS trg_todo_subtask_search_delete AFTER DELETE ON " + TTodoSubTask.TABLE_NAME +
+            " BEGIN " + updateSubTasks("old." + TTodoSubTask.COLUMN_TASK_ID) + " END;";
+
+    public static final String TRIGGERS_CREATE[] = {
+            TRIGGER_TASK_INSERT,
+            TRIGGER_TASK_UPDATE,
+            TRIGGER_TASK_DELETE,
+            TRIGGER_SUBTASK_INSERT,
+            TRIGGER_SUBTASK_UPDATE,
+            TRIGGER_SUBTASK_DELETE};
+
+    // fills the index with the existing tasks
+    public static final String TABLE_FILL = "INSERT INTO " + TABLE_NAME + " (" + COLUMN_DOCID + ", " + COLUMN_NAME + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_SUBTASKS + ")" +
+            " SELECT t." + TTodoTask.COLUMN_ID + ", t." + TTodoTask.COLUMN_NAME + ", t." + TTodoTask.COLUMN_DESCRIPTION + ", " + subTaskTitles("t." + TTodoTask.COLUMN_ID) +
+            " FROM " + TTodoTask.TABLE_NAME + " t;";
+}
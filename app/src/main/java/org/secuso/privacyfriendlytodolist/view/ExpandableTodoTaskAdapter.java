@@ -22,6 +22,7 @@ import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.preference.SwitchPreference;
 import android.support.design.widget.Snackbar;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -39,7 +40,12 @@ import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
 import org.secuso.privacyfriendlytodolist.model.TodoTask;
 import org.secuso.privacyfriendlytodolist.model.Tuple;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+import org.secuso.privacyfriendlytodolist.model.database.DetachedTodos;
+import org.secuso.privacyfriendlytodolist.model.database.TaskQueryDiff;
+import org.secuso.privacyfriendlytodolist.model.database.TodoIdentityMap;
+import org.secuso.privacyfriendlytodolist.model.database.TodoRepository;
 import org.secuso.privacyfriendlytodolist.view.dialog.ProcessTodoSubTaskDialog;
 
 import java.util.ArrayList;
@@ -47,7 +53,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * Created by Sebastian Lutz on 06.03.2018
@@ -88,6 +97,7 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
     // FILTER AND SORTING OPTIONS MADE BY THE USER
     private Filter filterMeasure;
     private String queryString;
+    private HashSet<Integer> matchingTaskIds; // result of the full-text search for queryString (null: no query)
     private int sortType = 0; // encodes sorting (1. bit high -> sort by priority, 2. bit high --> sort by deadline)
 
     // ROW TYPES FOR USED TO CREATE DIFFERENT VIEWS DEPENDING ON ITEM TO SHOW
@@ -103,6 +113,7 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
 
     // OTHERS
     private Context context;
+    private Future<int[]> pendingSearch = null;
     private HashMap<TodoTask.Priority, Integer> prioBarPositions = new HashMap<>();
 
     // Normally the toolbar title contains the list name. However, it all tasks are displayed in a dummy list it is not obvious to what list a tasks belongs. This missing information is then added to each task in an additional text view.
@@ -121,6 +132,21 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
         filterTasks();
     }
 
+    // replaces all tasks, e.g. the ones of a snapshot by those loaded from the database
+    public void setTasks(List<TodoTask> tasks) {
+        rawData.clear();
+        rawData.addAll(tasks);
+        filterTasks();
+        notifyDataSetChanged();
+    }
+
+    // appends tasks that were loaded later on (e.g. the next page of a long list)
+    public void addTasks(List<TodoTask> tasks) {
+        rawData.addAll(tasks);
+        filterTasks();
+        notifyDataSetChanged();
+    }
+
     public void setLongClickedTaskByPos(int position) {
         longClickedTodo = Tuple.makePair(getTaskByPosition(position), null);
     }
@@ -146,8 +172,56 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
         this.filterMeasure = filter;
     }
 
-    public void setQueryString(String query) {
+    // The search runs on a reader thread of the executor, a search that is still pending for the
+    // previous query is dropped. The tasks are filtered again once the result has arrived.
+    public void setQueryString(final String query) {
         this.queryString = query;
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+
+        if (query == null || query.isEmpty()) {
+            this.matchingTaskIds = null;
+            return;
+        }
+
+        final DatabaseHelper dbHelper = DatabaseHelper.getInstance(context);
+        pendingSearch = DatabaseExecutor.getInstance().query(new Callable<int[]>() {
+            @Override
+            public int[] call() {
+                return DBQueryHandler.searchTasks(dbHelper.getReadableDatabase(), query);
+            }
+        }, new DatabaseExecutor.Callback<int[]>() {
+            @Override
+            public void onResult(int[] ids) {
+                pendingSearch = null;
+                matchingTaskIds = toIdSet(ids);
+                notifyDataSetChanged();
+            }
+        });
+    }
+
+    // returns null if all tasks match
+    static HashSet<Integer> toIdSet(int ids[]) {
+        if (ids == null)
+            return null;
+
+        HashSet<Integer> idSet = new HashSet<>(ids.length * 2);
+        for (int id : ids)
+            idSet.add(id);
+        return idSet;
+    }
+
+    private boolean matchesQuery(TodoTask task) {
+        if (matchingTaskIds == null)
+            return true;
+
+        // tasks that are not yet written to the database are not part of the search index
+        if (task.getDBState() == DBQueryHandler.ObjectStates.INSERT_TO_DB)
+            return task.checkQueryMatch(queryString);
+
+        return matchingTaskIds.contains(task.getId());
     }
 
     /**
@@ -177,19 +251,22 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
     private void filterTasks() {
         filteredTasks.clear();
 
-        boolean notOpen = filterMeasure != Filter.OPEN_TASKS;
-        boolean notCompleted = filterMeasure != Filter.COMPLETED_TASKS;
-
         for (TodoTask task : rawData)
-            if ((notOpen && task.getDone()) || (notCompleted && !task.getDone()))
-                if(task.checkQueryMatch(this.queryString))
-                    filteredTasks.add(task);
+            if (passesFilter(task))
+                filteredTasks.add(task);
 
         // Call this method even if sorting is disabled. In the case of enabled sorting, all
         // sorting patterns are automatically employed after having changed the filter on tasks.
         sortTasks();
     }
 
+    private boolean passesFilter(TodoTask task) {
+        boolean notOpen = filterMeasure != Filter.OPEN_TASKS;
+        boolean notCompleted = filterMeasure != Filter.COMPLETED_TASKS;
+
+        return ((notOpen && task.getDone()) || (notCompleted && !task.getDone())) && matchesQuery(task);
+    }
+
     private boolean isPriorityGroupingEnabled() {
         return (sortType & SortTypes.PRIORITY.getValue()) == 1;
     }
@@ -201,10 +278,19 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
      **/
     public void sortTasks() {
 
+        Collections.sort(filteredTasks, getTaskComparator());
+
+        if (isPriorityGroupingEnabled())
+            countTasksPerPriority();
+
+    }
+
+    private Comparator<TodoTask> getTaskComparator() {
+
         final boolean prioSorting = isPriorityGroupingEnabled();
         final boolean deadlineSorting = (sortType & SortTypes.DEADLINE.getValue()) != 0;
 
-        Collections.sort(filteredTasks, new Comparator<TodoTask>() {
+        return new Comparator<TodoTask>() {
 
             private int compareDeadlines(long d1, long d2) {
                 // tasks with deadlines always first
@@ -236,11 +322,56 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
                     return t1.getListPosition() - t2.getListPosition();
 
             }
-        });
+        };
+    }
 
-        if (prioSorting)
-            countTasksPerPriority();
+    /**
+     * Applies the changes reported for an observed query. Only the affected tasks are filtered again.
+     * The tasks are sorted afterwards as a whole: the values of shown tasks may have been changed in
+     * place (e.g. by a checkbox), so the list cannot be assumed to be sorted for a binary search.
+     * Sorting a list that is nearly sorted takes about linear time.
+     */
+    public void applyDiff(TaskQueryDiff diff) {
+        if (diff.isInitial()) {
+            rawData.clear();
+            rawData.addAll(diff.getTasks());
+            filterTasks();
+            super.notifyDataSetChanged();
+            return;
+        }
+
+        for (Integer id : diff.getRemovedIds()) {
+            removeById(rawData, id);
+            removeById(filteredTasks, id);
+        }
+
+        for (TodoTask task : diff.getChanged()) {
+            int index = removeById(rawData, task.getId());
+            rawData.add(index >= 0 ? index : rawData.size(), task);
+            removeById(filteredTasks, task.getId());
+            if (passesFilter(task))
+                filteredTasks.add(task);
+        }
+
+        for (TodoTask task : diff.getInserted()) {
+            rawData.add(task);
+            if (passesFilter(task))
+                filteredTasks.add(task);
+        }
+
+        sortTasks();
+        super.notifyDataSetChanged();
+    }
 
+    // returns the former index of the task or -1 if it was not contained
+    private static int removeById(List<TodoTask> tasks, int id) {
+        for (int i = 0; i < tasks.size(); i++) {
+            if (tasks.get(i).getId() == id) {
+                tasks.remove(i);
+                return i;
+            }
+        }
+        return -1;
     }
 
     // count how many tasks belong to each priority group (tasks are now sorted by priority)
@@ -426,6 +557,7 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
                     vh2.deadline = (TextView) convertView.findViewById(R.id.tv_exlv_task_deadline);
                     vh2.listName = (TextView) convertView.findViewById(R.id.tv_exlv_task_list_name);
                     vh2.progressBar = (ProgressBar) convertView.findViewById(R.id.pb_task_progress);
+                    vh2.subTaskCount = (TextView) convertView.findViewById(R.id.tv_exlv_task_subtask_count);
                     vh2.seperator = convertView.findViewById(R.id.v_exlv_header_separator);
                     vh2.deadlineColorBar = convertView.findViewById(R.id.v_urgency_task);
                     vh2.done.setTag(currentTask.getId());
@@ -440,6 +572,13 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
                 vh2.name.setText(currentTask.getName());
                 getProgressDone(currentTask, hasAutoProgress());
                 vh2.progressBar.setProgress(currentTask.getProgress());
+                int subTaskCount = currentTask.getSubTaskCount();
+                if (subTaskCount > 0) {
+                    vh2.subTaskCount.setVisibility(View.VISIBLE);
+                    vh2.subTaskCount.setText(context.getString(R.string.subtask_count, currentTask.getDoneSubTaskCount(), subTaskCount));
+                } else {
+                    vh2.subTaskCount.setVisibility(View.GONE);
+                }
                 String deadline;
                 if (currentTask.getDeadline() <= 0)
                     deadline = context.getResources().getString(R.string.no_deadline);
@@ -467,43 +606,16 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
                                 public void onClick(View v) {
                                     if (isChecked){
                                         buttonView.setChecked(false);
-                                        currentTask.setDone(buttonView.isChecked());
-                                        currentTask.setAllSubTasksDone(false);
-                                        getProgressDone(currentTask, hasAutoProgress());
-                                        currentTask.setChanged();
-                                        notifyDataSetChanged();
-                                        DBQueryHandler.saveTodoTaskInDb(DatabaseHelper.getInstance(context).getWritableDatabase(), currentTask);
-                                        for (TodoSubTask st : currentTask.getSubTasks()){
-                                            st.setDone(false);
-                                            DBQueryHandler.saveTodoSubTaskInDb(DatabaseHelper.getInstance(context).getWritableDatabase(), st);
-                                        }
+                                        setTaskDone(currentTask, false);
                                     } else {
                                         buttonView.setChecked(true);
-                                        currentTask.setDone(buttonView.isChecked());
-                                        currentTask.setAllSubTasksDone(true);
-                                        getProgressDone(currentTask, hasAutoProgress());
-                                        currentTask.setChanged();
-                                        notifyDataSetChanged();
-                                        DBQueryHandler.saveTodoTaskInDb(DatabaseHelper.getInstance(context).getWritableDatabase(), currentTask);
-                                        for (TodoSubTask st : currentTask.getSubTasks()){
-                                            st.setDone(true);
-                                            DBQueryHandler.saveTodoSubTaskInDb(DatabaseHelper.getInstance(context).getWritableDatabase(), st);
-                                        }
+                                        setTaskDone(currentTask, true);
                                     }
 
                                 }
                             });
                             snackbar.show();
-                            currentTask.setDone(buttonView.isChecked());
-                            currentTask.setAllSubTasksDone(buttonView.isChecked());
-                            getProgressDone(currentTask, hasAutoProgress());
-                            currentTask.setChanged();
-                            notifyDataSetChanged();
-                            DBQueryHandler.saveTodoTaskInDb(DatabaseHelper.getInstance(context).getWritableDatabase(), currentTask);
-                            for (int i=0; i < currentTask.getSubTasks().size(); i++) {
-                                currentTask.getSubTasks().get(i).setChanged();
-                                notifyDataSetChanged();
-                            }
+                            setTaskDone(currentTask, buttonView.isChecked());
                         }
                     }
                 });
@@ -516,6 +628,95 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
         return convertView;
     }
 
+    // Sets the task and all of its subtasks done or open and saves them. Subtasks that are not
+    // loaded are loaded first, so that none of them is skipped.
+    private void setTaskDone(final TodoTask task, final boolean done) {
+        if (!task.areSubTasksLoaded()) {
+            loadSubTasks(task, new Runnable() {
+                @Override
+                public void run() {
+                    setTaskDone(task, done);
+                }
+            });
+            return;
+        }
+
+        task.setDone(done);
+        task.setAllSubTasksDone(done);
+        getProgressDone(task, hasAutoProgress());
+        task.setChanged();
+        notifyDataSetChanged();
+        saveTaskWithSubTasks(task);
+    }
+
+    // tasks of cold lists come without their subtasks, they are loaded when the task is expanded
+    @Override
+    public void onGroupExpanded(int groupPosition) {
+        super.onGroupExpanded(groupPosition);
+        TodoTask task = getTaskByPosition(groupPosition);
+        if (task != null && !task.areSubTasksLoaded()) {
+            loadSubTasks(task, new Runnable() {
+                @Override
+                public void run() {
+                    notifyDataSetChanged();
+                }
+            });
+        }
+    }
+
+    // loads the subtasks of the task on a reader thread and runs onLoaded on the main thread afterwards
+    private void loadSubTasks(final TodoTask task, final Runnable onLoaded) {
+        final DatabaseHelper dbHelper = DatabaseHelper.getInstance(context);
+        final int taskIds[] = {task.getId()};
+        DatabaseExecutor.getInstance().query(new Callable<SparseArray<ArrayList<TodoSubTask>>>() {
+            @Override
+            public SparseArray<ArrayList<TodoSubTask>> call() {
+                return DBQueryHandler.getSubTasksOfTasks(dbHelper.getReadableDatabase(), taskIds);
+            }
+        }, new DatabaseExecutor.Callback<SparseArray<ArrayList<TodoSubTask>>>() {
+            @Override
+            public void onResult(SparseArray<ArrayList<TodoSubTask>> result) {
+                if (!task.areSubTasksLoaded()) {
+                    ArrayList<TodoSubTask> subTasks = result.get(task.getId());
+                    if (subTasks == null)
+                        subTasks = new ArrayList<>();
+                    TodoIdentityMap.getInstance().subTasks(subTasks);
+                    task.setSubTasks(subTasks);
+                }
+                onLoaded.run();
+            }
+        });
+    }
+
+    // writes the task and all of its subtasks in a single transaction, the subtasks must be loaded
+    private void saveTaskWithSubTasks(TodoTask task) {
+        ArrayList<BaseTodo> changedTodos = new ArrayList<>();
+        changedTodos.add(task);
+        for (TodoSubTask subTask : task.getSubTasks()) {
+            subTask.setChanged();
+            changedTodos.add(subTask);
+        }
+        save(changedTodos);
+    }
+
+    // Writes the objects in one transaction on the writer thread. A copy is written there, ids of
+    // new objects are taken over when the write has finished.
+    private void save(ArrayList<BaseTodo> todos) {
+        final TodoRepository repository = TodoRepository.getInstance(context);
+        final DetachedTodos detached = new DetachedTodos(todos);
+        DatabaseExecutor.getInstance().command(new Callable<int[]>() {
+            @Override
+            public int[] call() {
+                return repository.saveTodos(detached.getCopies());
+            }
+        }, new DatabaseExecutor.Callback<int[]>() {
+            @Override
+            public void onResult(int[] ids) {
+                detached.applySaved();
+            }
+        });
+    }
+
     @Override
     public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
 
@@ -573,7 +774,9 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
                                 TodoSubTask newSubTask = (TodoSubTask) b;
                                 currentTask.getSubTasks().add(newSubTask);
                                 newSubTask.setTaskId(currentTask.getId());
-                                DBQueryHandler.saveTodoSubTaskInDb(DatabaseHelper.getInstance(context).getWritableDatabase(), newSubTask);
+                                ArrayList<BaseTodo> changedTodos = new ArrayList<>();
+                                changedTodos.add(newSubTask);
+                                save(changedTodos);
                                 notifyDataSetChanged();
                             }
                         }
@@ -606,9 +809,11 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
                             currentSubTask.setDone(buttonView.isChecked());
                             currentTask.doneStatusChanged(); // check if entire task is now (when all subtasks are done)
                             currentSubTask.setChanged();
-                            DBQueryHandler.saveTodoSubTaskInDb(DatabaseHelper.getInstance(context).getWritableDatabase(), currentSubTask);
                             getProgressDone(currentTask, hasAutoProgress());
-                            DBQueryHandler.saveTodoTaskInDb(DatabaseHelper.getInstance(context).getWritableDatabase(), currentTask);
+                            ArrayList<BaseTodo> changedTodos = new ArrayList<>();
+                            changedTodos.add(currentTask);
+                            changedTodos.add(currentSubTask);
+                            save(changedTodos);
                             notifyDataSetChanged();
                         }
                     }
@@ -625,18 +830,11 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
         return childPosition > 0 && childPosition < getTaskByPosition(groupPosition).getSubTasks().size() + 1;
     }
 
+    // the subtask counters are also known if the subtasks are not loaded
     public void getProgressDone(TodoTask t, boolean autoProgress) {
         if (autoProgress) {
-            int progress = 0;
-            int help = 0;
-            ArrayList<TodoSubTask> subs = t.getSubTasks();
-            for (TodoSubTask st : subs){
-                if (st.getDone()){
-                    help++;
-                }
-            }
-            double computedProgress = ((double)help/(double)t.getSubTasks().size())*100;
-            progress = (int) computedProgress;
+            int total = t.getSubTaskCount();
+            int progress = total > 0 ? t.getDoneSubTaskCount() * 100 / total : 0;
             t.setProgress(progress);
         } else
         t.setProgress(t.getProgress());
@@ -650,6 +848,7 @@ public class ExpandableTodoTaskAdapter extends BaseExpandableListAdapter {
         public View deadlineColorBar;
         public View seperator;
         public ProgressBar progressBar;
+        public TextView subTaskCount;
     }
 
     public class GroupPrioViewHolder {
@@ -25,6 +25,7 @@ import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.os.StrictMode;
 import android.preference.PreferenceManager;
 import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.NavigationView;
@@ -63,7 +64,15 @@ import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
 import org.secuso.privacyfriendlytodolist.model.TodoTask;
 import org.secuso.privacyfriendlytodolist.model.Tuple;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+import org.secuso.privacyfriendlytodolist.model.database.DetachedTodos;
+import org.secuso.privacyfriendlytodolist.model.database.QueryNotifier;
+import org.secuso.privacyfriendlytodolist.model.database.TaskQuery;
+import org.secuso.privacyfriendlytodolist.model.database.TaskQueryDiff;
+import org.secuso.privacyfriendlytodolist.model.database.TodoIdentityMap;
+import org.secuso.privacyfriendlytodolist.model.database.TodoRepository;
+import org.secuso.privacyfriendlytodolist.model.database.TodoSnapshot;
 import org.secuso.privacyfriendlytodolist.tutorial.PrefManager;
 import org.secuso.privacyfriendlytodolist.tutorial.TutorialActivity;
 import org.secuso.privacyfriendlytodolist.view.calendar.CalendarActivity;
@@ -73,6 +82,10 @@ import org.secuso.privacyfriendlytodolist.view.dialog.ProcessTodoSubTaskDialog;
 import org.secuso.privacyfriendlytodolist.view.dialog.ProcessTodoTaskDialog;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * Created by Sebastian Lutz on 12.03.2018.
@@ -111,6 +124,10 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
     // Database administration
     private DatabaseHelper dbHelper;
+    private DatabaseExecutor dbExecutor;
+    private QueryNotifier.Subscription tasksSubscription; // keeps the tasks of the shown list up to date
+    private Future<?> pendingHintsLoad;
+    private TodoSnapshot snapshot; // shown until the lists are loaded from the database
 
     private SharedPreferences mPref;
 
@@ -280,9 +297,10 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         initialAlert = (TextView) findViewById(R.id.initial_alert);
         secondAlert = (TextView) findViewById(R.id.second_alert);
 
+        dbHelper = DatabaseHelper.getInstance(this);
+        dbExecutor = DatabaseExecutor.getInstance();
         hints();
 
-        dbHelper = DatabaseHelper.getInstance(this);
         mPref = PreferenceManager.getDefaultSharedPreferences(this);
 
         //Try to snooze the task by notification
@@ -303,13 +321,17 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         TodoList defaultList = new TodoList();
         defaultList.setCreated();
         defaultList.setName("default-list");
-        boolean result=sendToDatabase(defaultList);
-        if (result){
-            Log.i(TAG,"default list inserted succefully");
-        }
-        else{
-            Log.i(TAG,"default list insert failed");
-        }
+        sendToDatabase(defaultList, new DatabaseExecutor.Callback<Boolean>() {
+            @Override
+            public void onResult(Boolean result) {
+                if (result){
+                    Log.i(TAG,"default list inserted succefully");
+                }
+                else{
+                    Log.i(TAG,"default list insert failed");
+                }
+            }
+        });
         if(activeList != -1) {
             showTasksOfList(activeList);
         }
@@ -347,11 +369,21 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 @Override
                 public void resetApp() {
                     PreferenceManager.getDefaultSharedPreferences(MainActivity.this).edit().clear().commit();
-                    dbHelper.deleteAll();
-                    dbHelper.createAll();
-                    Intent intent = new Intent(MainActivity.this, MainActivity.class);
                     dialog.dismiss();
-                    startActivity(intent);
+                    dbExecutor.command(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            dbHelper.deleteAll();
+                            dbHelper.createAll();
+                            return null;
+                        }
+                    }, new DatabaseExecutor.Callback<Void>() {
+                        @Override
+                        public void onResult(Void result) {
+                            Intent intent = new Intent(MainActivity.this, MainActivity.class);
+                            startActivity(intent);
+                        }
+                    });
                 }
             });
             dialog.show();
@@ -380,18 +412,31 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     }
 
     private void restore(Bundle savedInstanceState) {
-        todoLists = savedInstanceState.getParcelableArrayList(KEY_TODO_LISTS);
-        clickedList = savedInstanceState.getParcelable(KEY_CLICKED_LIST);
-        dummyList = savedInstanceState.getParcelable(KEY_DUMMY_LIST);
+        restoreLists(savedInstanceState);
         isUnlocked = savedInstanceState.getBoolean(KEY_IS_UNLOCKED);
         unlockUntil = savedInstanceState.getLong(KEY_UNLOCK_UNTIL);
 
     }
 
+    // the parceled lists and tasks are replaced by the ones in use
+    private void restoreLists(Bundle savedInstanceState) {
+        TodoIdentityMap identityMap = TodoIdentityMap.getInstance();
+        todoLists = savedInstanceState.getParcelableArrayList(KEY_TODO_LISTS);
+        if (todoLists != null)
+            identityMap.lists(todoLists);
+        clickedList = savedInstanceState.getParcelable(KEY_CLICKED_LIST);
+        if (clickedList != null && !clickedList.isDummyList())
+            clickedList = identityMap.list(clickedList);
+        dummyList = savedInstanceState.getParcelable(KEY_DUMMY_LIST);
+        if (dummyList != null)
+            identityMap.tasks(dummyList.getTasks());
+    }
+
     public void initActivity(Bundle savedInstanceState) {
 
         this.isUnlocked = true;
-        getTodoLists(true);
+        readSnapshot();
+        loadTodoLists();
 
         Bundle extras = getIntent().getExtras();
         SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this.getApplicationContext());
@@ -417,9 +462,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
                 // restore state before configuration change
                 if (savedInstanceState != null) {
-                    todoLists = savedInstanceState.getParcelableArrayList(KEY_TODO_LISTS);
-                    clickedList = (TodoList) savedInstanceState.get(KEY_CLICKED_LIST);
-                    dummyList = (TodoList) savedInstanceState.get(KEY_DUMMY_LIST);
+                    restoreLists(savedInstanceState);
                 } else {
                     Log.i(TAG, "Could not restore old state because savedInstanceState is null.");
                 }
@@ -607,6 +650,12 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     @Override
     protected void onDestroy() {
 
+        // results of pending reads must not reach the destroyed views
+        if (tasksSubscription != null)
+            tasksSubscription.unsubscribe();
+        if (pendingHintsLoad != null)
+            pendingHintsLoad.cancel(false);
+
         if (reminderService != null) {
             unbindService(reminderServiceConnection);
             reminderService = null;
@@ -672,20 +721,58 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
 
 
-    public ArrayList<TodoList> getTodoLists(boolean reload) {
-        if (reload) {
-            if (dbHelper != null)
-                todoLists = DBQueryHandler.getAllToDoLists(dbHelper.getReadableDatabase());
-        }
+    public ArrayList<TodoList> getTodoLists() {
         return todoLists;
     }
 
 
 
+    // Draws the first screen from the snapshot of the last session. Mapping the small file is much
+    // faster than opening the database, so it is read on the main thread on purpose.
+    private void readSnapshot() {
+        StrictMode.ThreadPolicy policy = StrictMode.allowThreadDiskReads();
+        try {
+            snapshot = TodoSnapshot.read(this);
+        } finally {
+            StrictMode.setThreadPolicy(policy);
+        }
+
+        if (snapshot != null) {
+            todoLists = snapshot.getLists();
+            TodoIdentityMap.getInstance().lists(todoLists);
+        } else
+            TodoSnapshot.scheduleWrite(this); // for the next start
+    }
+
+    // reloads the lists in the background and updates the navigation drawer afterwards
+    private void loadTodoLists() {
+        dbExecutor.query(new Callable<ArrayList<TodoList>>() {
+            @Override
+            public ArrayList<TodoList> call() {
+                return TodoRepository.getInstance(MainActivity.this).getTodoLists();
+            }
+        }, new DatabaseExecutor.Callback<ArrayList<TodoList>>() {
+            @Override
+            public void onResult(ArrayList<TodoList> result) {
+                snapshot = null;
+                TodoIdentityMap.getInstance().lists(result);
+                todoLists = result;
+                // the tasks on screen may have taken over changes
+                if (expandableTodoTaskAdapter != null)
+                    expandableTodoTaskAdapter.notifyDataSetChanged();
+                if (navigationView != null)
+                    addListToNav();
+            }
+        });
+    }
+
+
+
     public TodoList getTodoTasks() {
         ArrayList<TodoTask> tasks = new ArrayList<>();
         if (dbHelper != null) {
-            tasks = DBQueryHandler.getAllToDoTasks(dbHelper.getReadableDatabase());
+            tasks = TodoRepository.getInstance(this).getAllTasks();
+            TodoIdentityMap.getInstance().tasks(tasks);
             for (int i = 0; i < tasks.size(); i++) {
                 dummyList.setDummyList();
                 dummyList.setName("All tasks");
@@ -757,42 +844,88 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
 
 
-    // returns true if object was created in the database
-    public boolean sendToDatabase(BaseTodo todo) {
+    public void sendToDatabase(BaseTodo todo) {
+        sendToDatabase(todo, null);
+    }
+
+
 
-        int databaseID = -5;
-        String errorMessage = "";
+    // writes the object in the background. {@param callback} learns on the main thread if the object was created or changed in the database
+    public void sendToDatabase(final BaseTodo todo, final DatabaseExecutor.Callback<Boolean> callback) {
+
+        final String errorMessage;
 
         // call appropriate method depending on type
         if (todo instanceof TodoList) {
-            databaseID = DBQueryHandler.saveTodoListInDb(dbHelper.getWritableDatabase(), (TodoList) todo);
             errorMessage = getString(R.string.list_to_db_error);
         } else if (todo instanceof TodoTask) {
-            databaseID = DBQueryHandler.saveTodoTaskInDb(dbHelper.getWritableDatabase(), (TodoTask) todo);
-            notifyReminderService((TodoTask) todo);
             errorMessage = getString(R.string.task_to_db_error);
         } else if (todo instanceof TodoSubTask) {
-            databaseID = DBQueryHandler.saveTodoSubTaskInDb(dbHelper.getWritableDatabase(), (TodoSubTask) todo);
             errorMessage = getString(R.string.subtask_to_db_error);
         } else {
             throw new IllegalArgumentException("Cannot save unknown descendant of BaseTodo in the database.");
         }
 
-        // set unique database id (primary key) to the current object
-        if (databaseID == -1 || databaseID == DBQueryHandler.NO_INSERT_TO_DB) {
-            Log.e(TAG, errorMessage);
-            return false;
-        }
-        else if (databaseID != DBQueryHandler.NO_CHANGES) {
-            todo.setId(databaseID);
-            return true;
-        }
+        // the writer thread saves a copy, the unique database id (primary key) is set on the main thread
+        final TodoRepository repository = TodoRepository.getInstance(this);
+        final DetachedTodos detached = new DetachedTodos(Collections.singletonList(todo));
+        dbExecutor.command(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return repository.saveTodo(detached.getCopy(todo));
+            }
+        }, new DatabaseExecutor.Callback<Integer>() {
+            @Override
+            public void onResult(Integer databaseID) {
+                boolean written = false;
+
+                detached.applySaved();
+                if (databaseID == -1 || databaseID == DBQueryHandler.NO_INSERT_TO_DB) {
+                    Log.e(TAG, errorMessage);
+                } else if (databaseID != DBQueryHandler.NO_CHANGES) {
+                    written = true;
+                }
+
+                // alarms are set with the database id, so the reminder service learns about the task afterwards
+                if (todo instanceof TodoTask)
+                    notifyReminderService((TodoTask) todo);
 
-        return false;
+                if (callback != null)
+                    callback.onResult(written);
+            }
+        });
     }
 
 
 
+    // writes all changed objects in one transaction in the background
+    public void sendToDatabase(final Collection<? extends BaseTodo> todos) {
+
+        final TodoRepository repository = TodoRepository.getInstance(this);
+        final DetachedTodos detached = new DetachedTodos(todos);
+        dbExecutor.command(new Callable<int[]>() {
+            @Override
+            public int[] call() {
+                return repository.saveTodos(detached.getCopies());
+            }
+        }, new DatabaseExecutor.Callback<int[]>() {
+            @Override
+            public void onResult(int[] ids) {
+                detached.applySaved();
+                int i = 0;
+                for (BaseTodo todo : todos) {
+                    if (ids[i] == DBQueryHandler.NO_INSERT_TO_DB) {
+                        Log.e(TAG, todo instanceof TodoSubTask ? getString(R.string.subtask_to_db_error) : getString(R.string.task_to_db_error));
+                    } else if (ids[i] != DBQueryHandler.NO_CHANGES) {
+                        if (todo instanceof TodoTask)
+                            notifyReminderService((TodoTask) todo);
+                    }
+                    i++;
+                }
+            }
+        });
+    }
+
     public TodoList getListByID(int id) {
         for (TodoList currentList : todoLists) {
             if (currentList.getId() == id)
@@ -837,27 +970,30 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
     // Method to add a new Todo-List
     private void startListDialog() {
-        dbHelper = DatabaseHelper.getInstance(this);
-        todoLists = DBQueryHandler.getAllToDoLists(dbHelper.getReadableDatabase());
         adapter = new TodoListAdapter(this, todoLists);
 
         ProcessTodoListDialog pl = new ProcessTodoListDialog(this);
         pl.setDialogResult(new TodoCallback() {
             @Override
-            public void finish(BaseTodo b) {
+            public void finish(final BaseTodo b) {
                 if (b instanceof TodoList) {
-                    if(sendToDatabase(b)) {
-                        todoLists.add((TodoList) b);
-                        adapter.updateList(todoLists); // run filter again
-                        adapter.notifyDataSetChanged();
-
-                        hints();
-                        addListToNav();
-                        Log.i(TAG, "list added");
-                    }
-                    else {
-                        Log.i(TAG, "list not added");
-                    }
+                    sendToDatabase(b, new DatabaseExecutor.Callback<Boolean>() {
+                        @Override
+                        public void onResult(Boolean written) {
+                            if (written) {
+                                todoLists.add((TodoList) b);
+                                adapter.updateList(todoLists); // run filter again
+                                adapter.notifyDataSetChanged();
+
+                                hints();
+                                addListToNav();
+                                Log.i(TAG, "list added");
+                            }
+                            else {
+                                Log.i(TAG, "list not added");
+                            }
+                        }
+                    });
                 }
             }
         });
@@ -899,16 +1035,28 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                     R.string.alert_delete_yes,
                     new DialogInterface.OnClickListener() {
                         public void onClick(DialogInterface dialog, int setId) {
-                            ArrayList<TodoList> todoLists = DBQueryHandler.getAllToDoLists(DatabaseHelper.getInstance(context).getReadableDatabase());
-                            for (TodoList t : todoLists) {
-                                if (t.getId() == id) {
-                                    DBQueryHandler.deleteTodoList(DatabaseHelper.getInstance(context).getWritableDatabase(), t);
-                                }
-                            }
                             dialog.cancel();
-                            Intent intent = new Intent (context, MainActivity.class);
-                            intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                            startActivity(intent);
+                            dbExecutor.command(new Callable<Void>() {
+                                @Override
+                                public Void call() {
+                                    TodoRepository.getInstance(context).deleteTodoList(id);
+                                    return null;
+                                }
+                            }, new DatabaseExecutor.Callback<Void>() {
+                                @Override
+                                public void onResult(Void result) {
+                                    loadTodoLists();
+                                    hints();
+                                    // the tasks of the deleted list are in the bin now
+                                    if (!inList || activeList == id) {
+                                        inList = false;
+                                        showAllTasks();
+                                        toolbar.setTitle(R.string.home);
+                                        uncheckNavigationEntries();
+                                        navigationView.getMenu().getItem(0).setChecked(true);
+                                    }
+                                }
+                            });
                         }
                     });
 
@@ -930,10 +1078,14 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
 
     private void showAllTasks() {
-        dbHelper = DatabaseHelper.getInstance(this);
-        ArrayList<TodoTask> tasks;
-        tasks = DBQueryHandler.getAllToDoTasks(dbHelper.getReadableDatabase());
-        expandableTodoTaskAdapter = new ExpandableTodoTaskAdapter(this, tasks);
+        if (tasksSubscription != null) {
+            tasksSubscription.unsubscribe();
+            tasksSubscription = null;
+        }
+        activeList = -1;
+
+        // tasks are loaded page by page while the user scrolls
+        expandableTodoTaskAdapter = TaskPageLoader.attach(exLv, TaskPageLoader.Source.ALL_TASKS, snapshot != null ? snapshot.getFirstPage() : null);
 
         exLv.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
             @Override
@@ -960,31 +1112,43 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
 
 
-    private void showTasksOfList(int id) {
-        dbHelper = DatabaseHelper.getInstance(this);
-        ArrayList<TodoList> lists;
-        ArrayList<TodoTask> help = new ArrayList<TodoTask>();
-        lists = DBQueryHandler.getAllToDoLists(dbHelper.getReadableDatabase());
-        for (int i = 0; i < lists.size(); i++) {
-            if (id == lists.get(i).getId()) {
-                help.addAll(lists.get(i).getTasks());
-            }
+    private void showTasksOfList(final int id) {
+        // the subscription already applies all changes of this list
+        if (tasksSubscription != null && activeList == id)
+            return;
+
+        if (tasksSubscription != null)
+            tasksSubscription.unsubscribe();
+        activeList = id;
+
+        // the initial diff replaces the tasks of the snapshot
+        ArrayList<TodoTask> preview = new ArrayList<>();
+        if (snapshot != null) {
+            for (TodoList list : snapshot.getLists())
+                if (list.getId() == id)
+                    preview.addAll(list.getTasks());
         }
-        expandableTodoTaskAdapter = new ExpandableTodoTaskAdapter(this, help);
+
+        final ExpandableTodoTaskAdapter listAdapter = new ExpandableTodoTaskAdapter(this, preview);
+        expandableTodoTaskAdapter = listAdapter;
+        exLv.setOnScrollListener(null); // all tasks of the list are loaded at once
         exLv.setAdapter(expandableTodoTaskAdapter);
         exLv.setEmptyView(tv);
         optionFab.setVisibility(View.VISIBLE);
         initFab(true, id , true);
+
+        tasksSubscription = QueryNotifier.getInstance().subscribe(this, new TaskQuery(id), new QueryNotifier.Listener() {
+            @Override
+            public void onChanged(TaskQueryDiff diff) {
+                listAdapter.applyDiff(diff);
+            }
+        });
     }
 
 
 
     //idExists describes if id is given from list (true) or new task is created in all-tasks (false)
     private void initFab(boolean showFab, int id, boolean idExists) {
-        dbHelper = DatabaseHelper.getInstance(this);
-        final ArrayList<TodoTask> tasks;
-        tasks = DBQueryHandler.getAllToDoTasks(dbHelper.getReadableDatabase());
-        //final ExpandableTodoTaskAdapter taskAdapter = new ExpandableTodoTaskAdapter(this, tasks);
         final int helpId = id;
         final boolean helpExists = idExists;
 
@@ -1057,12 +1221,23 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 break;
 
             case R.id.delete_subtask:
-                affectedRows = DBQueryHandler.putSubtaskInTrash(this.getDbHelper().getWritableDatabase(), longClickedTodo.getRight());
-                longClickedTodo.getLeft().getSubTasks().remove(longClickedTodo.getRight());
-                if(affectedRows == 1)
-                    Toast.makeText(getBaseContext(), getString(R.string.subtask_removed), Toast.LENGTH_SHORT).show();
-                else
-                    Log.d(TAG, "Subtask was not removed from the database. Maybe it was not added beforehand (then this is no error)?");
+                final TodoSubTask trashedSubTask = longClickedTodo.getRight();
+                dbExecutor.command(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return TodoRepository.getInstance(MainActivity.this).putSubtaskInTrash(trashedSubTask);
+                    }
+                }, new DatabaseExecutor.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer result) {
+                        affectedRows = result;
+                        if(affectedRows == 1)
+                            Toast.makeText(getBaseContext(), getString(R.string.subtask_removed), Toast.LENGTH_SHORT).show();
+                        else
+                            Log.d(TAG, "Subtask was not removed from the database. Maybe it was not added beforehand (then this is no error)?");
+                    }
+                });
+                longClickedTodo.getLeft().getSubTasks().remove(trashedSubTask);
                 expandableTodoTaskAdapter.notifyDataSetChanged();
                 break;
             case R.id.change_task:
@@ -1087,20 +1262,27 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 editTaskDialog.show();
                 break;
             case R.id.delete_task:
+                final TodoTask trashedTask = longClickedTodo.getLeft();
                 Snackbar snackbar = Snackbar.make(optionFab, R.string.task_removed, Snackbar.LENGTH_LONG);
-                ArrayList<TodoSubTask> subTasks = longClickedTodo.getLeft().getSubTasks();
-                for (TodoSubTask ts : subTasks){
-                    DBQueryHandler.putSubtaskInTrash(dbHelper.getWritableDatabase(), ts);
-                }
-                affectedRows = DBQueryHandler.putTaskInTrash(dbHelper.getWritableDatabase(), longClickedTodo.getLeft());
-                if(affectedRows == 1) {
-                    hints();
-                }else
-                    Log.d(TAG, "Task was not removed from the database. Maybe it was not added beforehand (then this is no error)?");
+                dbExecutor.command(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return TodoRepository.getInstance(MainActivity.this).putTaskInTrash(trashedTask);
+                    }
+                }, new DatabaseExecutor.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer result) {
+                        affectedRows = result;
+                        if(affectedRows == 1) {
+                            hints();
+                        }else
+                            Log.d(TAG, "Task was not removed from the database. Maybe it was not added beforehand (then this is no error)?");
+                    }
+                });
 
                 // Dependent on the current View, update All-tasks or a certain List
-                if (this.inList && longClickedTodo.getLeft().getListId() != -3) {
-                    showTasksOfList(longClickedTodo.getLeft().getListId());
+                if (this.inList && trashedTask.getListId() != -3) {
+                    showTasksOfList(trashedTask.getListId());
                 } else {
                     showAllTasks();
                 }
@@ -1108,13 +1290,14 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 snackbar.setAction(R.string.snack_undo, new View.OnClickListener() {
                     @Override
                      public void onClick(View v) {
-                        ArrayList<TodoSubTask> subTasks = longClickedTodo.getLeft().getSubTasks();
-                         DBQueryHandler.recoverTasks(dbHelper.getWritableDatabase(), longClickedTodo.getLeft());
-                        for (TodoSubTask ts : subTasks){
-                            DBQueryHandler.recoverSubtasks(dbHelper.getWritableDatabase(), ts);
-                        }
-                        if (inList && longClickedTodo.getLeft().getListId() != -3) {
-                            showTasksOfList(longClickedTodo.getLeft().getListId());
+                        dbExecutor.command(new Runnable() {
+                            @Override
+                            public void run() {
+                                TodoRepository.getInstance(MainActivity.this).recoverTask(trashedTask);
+                            }
+                        });
+                        if (inList && trashedTask.getListId() != -3) {
+                            showTasksOfList(trashedTask.getListId());
                         } else {
                             showAllTasks();
                         }
@@ -1134,11 +1317,31 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
 
     public void hints() {
+        if (pendingHintsLoad != null)
+            pendingHintsLoad.cancel(false);
+
+        // number of tasks and lists, read in the background
+        pendingHintsLoad = dbExecutor.query(new Callable<Tuple<Integer, Integer>>() {
+            @Override
+            public Tuple<Integer, Integer> call() {
+                TodoRepository repository = TodoRepository.getInstance(MainActivity.this);
+                return Tuple.makePair(repository.getTaskCount(), repository.getListCount());
+            }
+        }, new DatabaseExecutor.Callback<Tuple<Integer, Integer>>() {
+            @Override
+            public void onResult(Tuple<Integer, Integer> counts) {
+                pendingHintsLoad = null;
+                showHints(counts.getLeft(), counts.getRight());
+            }
+        });
+    }
+
+
+
+    private void showHints(int taskCount, int listCount) {
 
         Animation anim = new AlphaAnimation(0.0f, 1.0f);
-        dbHelper = DatabaseHelper.getInstance(this);
-        if ( DBQueryHandler.getAllToDoTasks(dbHelper.getReadableDatabase()).size() == 0 &&
-                DBQueryHandler.getAllToDoLists(dbHelper.getReadableDatabase()).size() == 0) {
+        if (taskCount == 0 && listCount == 0) {
 
             initialAlert.setVisibility(View.VISIBLE);
             anim.setDuration(1500);
@@ -1153,7 +1356,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             initialAlert.clearAnimation();
         }
 
-        if (DBQueryHandler.getAllToDoTasks(dbHelper.getReadableDatabase()).size() == 0) {
+        if (taskCount == 0) {
             secondAlert.setVisibility(View.VISIBLE);
             anim.setDuration(1500);
             anim.setStartOffset(20);
@@ -1169,4 +1372,3 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
 
 }
-
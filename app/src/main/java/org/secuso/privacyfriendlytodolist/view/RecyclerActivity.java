@@ -41,10 +41,14 @@ import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
 import org.secuso.privacyfriendlytodolist.model.TodoTask;
 import org.secuso.privacyfriendlytodolist.model.Tuple;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+import org.secuso.privacyfriendlytodolist.model.database.TodoIdentityMap;
+import org.secuso.privacyfriendlytodolist.model.database.TodoRepository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Created by Sebastian Lutz on 20.12.2017.
@@ -83,12 +87,14 @@ public class RecyclerActivity extends AppCompatActivity{
 
        switch(item.getItemId()){
            case R.id.restore:
-               DBQueryHandler.recoverTasks(dbhelper.getWritableDatabase(), longClickedTodo.getLeft());
-               ArrayList<TodoSubTask> subTasks = longClickedTodo.getLeft().getSubTasks();
-               for (TodoSubTask ts : subTasks){
-                   DBQueryHandler.recoverSubtasks(dbhelper.getWritableDatabase(), ts);
-               }
-               updateAdapter();
+               final TodoRepository repository = TodoRepository.getInstance(this);
+               DatabaseExecutor.getInstance().command(new Runnable() {
+                   @Override
+                   public void run() {
+                       repository.recoverTask(longClickedTodo.getLeft());
+                   }
+               });
+               updateAdapter(); // the reload waits for the restore
                break;
 
        }
@@ -108,8 +114,6 @@ public class RecyclerActivity extends AppCompatActivity{
                 return true;
             case R.id.btn_clear:
                 dbhelper = DatabaseHelper.getInstance(this);
-                final ArrayList<TodoTask> tasks;
-                tasks = DBQueryHandler.getBin(dbhelper.getReadableDatabase());
                 AlertDialog.Builder builder1 = new AlertDialog.Builder(this);
                 builder1.setMessage(R.string.alert_clear);
                 builder1.setCancelable(true);
@@ -117,11 +121,8 @@ public class RecyclerActivity extends AppCompatActivity{
                 builder1.setPositiveButton(R.string.yes, new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
-                        for ( TodoTask t : tasks){
-                            DBQueryHandler.deleteTodoTask(DatabaseHelper.getInstance(getBaseContext()).getReadableDatabase(), t);
-                        }
                         dialog.cancel();
-                        updateAdapter();
+                        purgeBin();
                     }
                 });
 
@@ -176,7 +177,6 @@ public class RecyclerActivity extends AppCompatActivity{
 
         }
         updateAdapter();
-        backupTasks = getTasksInTrash();
     }
 
     @Override
@@ -188,9 +188,8 @@ public class RecyclerActivity extends AppCompatActivity{
 
     public void updateAdapter() {
         dbhelper = DatabaseHelper.getInstance(this);
-        ArrayList<TodoTask> tasks;
-        tasks = DBQueryHandler.getBin(dbhelper.getReadableDatabase());
-        expandableTodoTaskAdapter = new ExpandableTodoTaskAdapter(this, tasks);
+        // the bin is loaded page by page while the user scrolls
+        expandableTodoTaskAdapter = TaskPageLoader.attach(lv, TaskPageLoader.Source.BIN);
         lv.setAdapter(expandableTodoTaskAdapter);
         lv.setEmptyView(tv);
         lv.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
@@ -213,9 +212,28 @@ public class RecyclerActivity extends AppCompatActivity{
 
     public ArrayList<TodoTask> getTasksInTrash() {
        ArrayList<TodoTask> backup = DBQueryHandler.getBin(dbhelper.getReadableDatabase());
+       TodoIdentityMap.getInstance().tasks(backup);
        return backup;
     }
 
+    // empties the bin on the database writer thread and reloads the list once it is done
+    private void purgeBin() {
+        final TodoRepository repository = TodoRepository.getInstance(this);
+        DatabaseExecutor.getInstance().command(new Callable<Tuple<Integer, Integer>>() {
+            @Override
+            public Tuple<Integer, Integer> call() {
+                return repository.purgeBin();
+            }
+        }, new DatabaseExecutor.Callback<Tuple<Integer, Integer>>() {
+            @Override
+            public void onResult(Tuple<Integer, Integer> removed) {
+                // the activity may be closed while the bin is purged
+                if (!isFinishing())
+                    updateAdapter();
+            }
+        });
+    }
+
     @Override
     public void onBackPressed() {
         Intent intent = new Intent(this, MainActivity.class);
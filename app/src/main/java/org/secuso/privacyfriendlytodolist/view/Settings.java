@@ -17,8 +17,14 @@
 
 package org.secuso.privacyfriendlytodolist.view;
 
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.preference.EditTextPreference;
 import android.preference.ListPreference;
@@ -28,10 +34,22 @@ import android.preference.PreferenceGroup;
 import android.preference.SwitchPreference;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
+import android.util.Log;
 import android.view.MenuItem;
 import android.widget.Toast;
 
 import org.secuso.privacyfriendlytodolist.R;
+import org.secuso.privacyfriendlytodolist.model.MaintenanceService;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseBackup;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+import org.secuso.privacyfriendlytodolist.model.database.QueryNotifier;
+import org.secuso.privacyfriendlytodolist.model.database.TodoSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
 
 /**
  * Created by Sebastian Lutz on 15.03.2018
@@ -45,6 +63,14 @@ public class Settings extends AppCompatActivity {
     private static final String TAG = Settings.class.getSimpleName();
 
     public static final String DEFAULT_REMINDER_TIME_KEY = "pref_default_reminder_time";
+    public static final String WRITE_AHEAD_LOGGING_KEY = "pref_write_ahead_logging";
+    public static final String TRASH_RETENTION_KEY = "pref_trash_retention";
+    public static final String BACKUP_EXPORT_KEY = "pref_backup_export";
+    public static final String BACKUP_IMPORT_KEY = "pref_backup_import";
+
+    private static final int REQUEST_BACKUP_EXPORT = 1;
+    private static final int REQUEST_BACKUP_IMPORT = 2;
+    private static final String BACKUP_MIME_TYPE = "application/gzip";
 
 
     @Override
@@ -94,6 +120,99 @@ public class Settings extends AppCompatActivity {
 
             // initializes
             initSummary(getPreferenceScreen());
+            initBackup();
+        }
+
+        private void initBackup() {
+            Preference export = findPreference(BACKUP_EXPORT_KEY);
+            Preference restore = findPreference(BACKUP_IMPORT_KEY);
+
+            // the files are picked through the storage access framework
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+                export.setEnabled(false);
+                restore.setEnabled(false);
+                return;
+            }
+
+            export.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+                @Override
+                public boolean onPreferenceClick(Preference preference) {
+                    pickBackupFile(Intent.ACTION_CREATE_DOCUMENT, REQUEST_BACKUP_EXPORT);
+                    return true;
+                }
+            });
+            restore.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+                @Override
+                public boolean onPreferenceClick(Preference preference) {
+                    pickBackupFile(Intent.ACTION_OPEN_DOCUMENT, REQUEST_BACKUP_IMPORT);
+                    return true;
+                }
+            });
+        }
+
+        @TargetApi(Build.VERSION_CODES.KITKAT)
+        private void pickBackupFile(String action, int requestCode) {
+            Intent intent = new Intent(action);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType(requestCode == REQUEST_BACKUP_EXPORT ? BACKUP_MIME_TYPE : "*/*");
+            intent.putExtra(Intent.EXTRA_TITLE, DatabaseBackup.FILE_NAME);
+            startActivityForResult(intent, requestCode);
+        }
+
+        @Override
+        public void onActivityResult(int requestCode, int resultCode, Intent data) {
+            if (resultCode != Activity.RESULT_OK || data == null || data.getData() == null) {
+                super.onActivityResult(requestCode, resultCode, data);
+                return;
+            }
+
+            if (requestCode == REQUEST_BACKUP_EXPORT)
+                runBackup(data.getData(), true);
+            else if (requestCode == REQUEST_BACKUP_IMPORT)
+                runBackup(data.getData(), false);
+            else
+                super.onActivityResult(requestCode, resultCode, data);
+        }
+
+        // copies the database to or from the file on the writer thread and reports the result
+        private void runBackup(final Uri uri, final boolean export) {
+            final Context context = getActivity().getApplicationContext();
+            final DatabaseHelper dbHelper = DatabaseHelper.getInstance(context);
+
+            DatabaseExecutor.getInstance().command(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    try {
+                        if (export) {
+                            OutputStream out = context.getContentResolver().openOutputStream(uri, "w");
+                            if (out == null)
+                                return -1;
+                            return DatabaseBackup.export(dbHelper.getReadableDatabase(), out);
+                        } else {
+                            InputStream in = context.getContentResolver().openInputStream(uri);
+                            if (in == null)
+                                return -1;
+                            int rows = DatabaseBackup.restore(dbHelper.getWritableDatabase(), in, DatabaseBackup.DEFAULT_BATCH_SIZE);
+                            TodoSnapshot.invalidate(context);
+                            return rows;
+                        }
+                    } catch (IOException | SQLException | IllegalStateException e) {
+                        Log.e(TAG, "Backup failed.", e);
+                        return -1;
+                    }
+                }
+            }, new DatabaseExecutor.Callback<Integer>() {
+                @Override
+                public void onResult(Integer rows) {
+                    if (rows < 0) {
+                        Toast.makeText(context, context.getString(R.string.backup_failed), Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                    if (!export)
+                        QueryNotifier.getInstance().notifyChanged();
+                    Toast.makeText(context, context.getString(export ? R.string.backup_exported : R.string.backup_imported, rows), Toast.LENGTH_SHORT).show();
+                }
+            });
         }
 
         private void initSummary(Preference p) {
@@ -162,6 +281,14 @@ public class Settings extends AppCompatActivity {
                         ((EditTextPreference) findPreference("pref_pin")).setText("");
                         ignoreChanges = false;
                     }
+                } else if (key.equals(WRITE_AHEAD_LOGGING_KEY)) {
+                    // switches the journal mode of the open database as well
+                    DatabaseHelper.getInstance(getActivity()).setWriteAheadLoggingEnabled(sharedPreferences.getBoolean(key, false));
+                } else if (key.equals(TRASH_RETENTION_KEY)) {
+                    // apply a shorter retention period right away
+                    Intent intent = new Intent(getActivity(), MaintenanceService.class);
+                    intent.putExtra(MaintenanceService.FORCE_RUN, true);
+                    getActivity().startService(intent);
                 }
             }
 
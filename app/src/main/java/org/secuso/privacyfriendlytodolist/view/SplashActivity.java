@@ -18,9 +18,13 @@
 package org.secuso.privacyfriendlytodolist.view;
 
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 
+import org.secuso.privacyfriendlytodolist.model.MaintenanceService;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+
 /**
  * Created by yonjuni on 17.11.16.
  */
@@ -32,9 +36,24 @@ import android.support.v7.app.AppCompatActivity;
         protected void onCreate(Bundle savedInstanceState) {
             super.onCreate(savedInstanceState);
 
-            Intent mainIntent = new Intent(SplashActivity.this, MainActivity.class);
-            SplashActivity.this.startActivity(mainIntent);
-            SplashActivity.this.finish();
+            // Opening the database may run a schema migration. It is done here in the background,
+            // so that the first access of MainActivity finds the database already open.
+            new AsyncTask<Void, Void, Void>() {
+                @Override
+                protected Void doInBackground(Void... params) {
+                    DatabaseHelper.getInstance(SplashActivity.this).getWritableDatabase();
+                    return null;
+                }
+
+                @Override
+                protected void onPostExecute(Void result) {
+                    Intent mainIntent = new Intent(SplashActivity.this, MainActivity.class);
+                    SplashActivity.this.startActivity(mainIntent);
+                    SplashActivity.this.finish();
+
+                    MaintenanceService.startIfDue(SplashActivity.this);
+                }
+            }.execute();
 
         }
 
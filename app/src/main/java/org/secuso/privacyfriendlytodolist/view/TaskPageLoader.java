@@ -0,0 +1,139 @@
+/*
+ This file is part of Privacy Friendly To-Do List.
+
+ Privacy Friendly To-Do List is free software:
+ you can redistribute it and/or modify it under the terms of the
+ GNU General Public License as published by the Free Software Foundation,
+ either version 3 of the License, or any later version.
+
+ Privacy Friendly To-Do List is distributed in the hope
+ that it will be useful, but WITHOUT ANY WARRANTY; without even
+ the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ See the GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Privacy Friendly To-Do List. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.secuso.privacyfriendlytodolist.view;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.widget.AbsListView;
+
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+import org.secuso.privacyfriendlytodolist.model.database.TaskPage;
+import org.secuso.privacyfriendlytodolist.model.database.TodoIdentityMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the tasks of a list view page by page. The first page is requested right away, every further
+ * page as soon as the user scrolls close to the end of the already loaded tasks. Pages are read on
+ * the {@link DatabaseExecutor} and added to the adapter when they arrive.
+ */
+
+public class TaskPageLoader implements AbsListView.OnScrollListener {
+
+    public static final int PAGE_SIZE = 100;
+
+    // the next page is requested when fewer rows than this are left below the visible ones
+    private static final int PREFETCH_DISTANCE = 20;
+
+    public enum Source {
+        ALL_TASKS,
+        BIN
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final Source source;
+    private final ExpandableTodoTaskAdapter adapter;
+
+    private String continuationToken = null;
+    private boolean lastPageLoaded = false;
+    private Future<TaskPage> pendingPage = null;
+    private boolean showsPreview = false;
+
+    private TaskPageLoader(DatabaseHelper dbHelper, Source source, ExpandableTodoTaskAdapter adapter) {
+        this.dbHelper = dbHelper;
+        this.source = source;
+        this.adapter = adapter;
+    }
+
+    /**
+     * Creates an adapter that receives the first page of tasks as soon as it is loaded and attaches
+     * a loader for the remaining pages to {@param listView}.
+     */
+    public static ExpandableTodoTaskAdapter attach(AbsListView listView, Source source) {
+        return attach(listView, source, null);
+    }
+
+    /**
+     * Like {@link #attach(AbsListView, Source)}, but the adapter shows {@param preview} (e.g. the
+     * tasks of a snapshot) until the first page is loaded. No further pages are requested meanwhile.
+     */
+    public static ExpandableTodoTaskAdapter attach(AbsListView listView, Source source, List<TodoTask> preview) {
+        ArrayList<TodoTask> tasks = new ArrayList<>();
+        if (preview != null) {
+            tasks.addAll(preview);
+            TodoIdentityMap.getInstance().tasks(tasks);
+        }
+        ExpandableTodoTaskAdapter adapter = new ExpandableTodoTaskAdapter(listView.getContext(), tasks);
+
+        TaskPageLoader loader = new TaskPageLoader(DatabaseHelper.getInstance(listView.getContext()), source, adapter);
+        loader.showsPreview = preview != null;
+        listView.setOnScrollListener(loader);
+        loader.requestNextPage();
+
+        return adapter;
+    }
+
+    private void requestNextPage() {
+        final String token = continuationToken;
+        pendingPage = DatabaseExecutor.getInstance().query(new Callable<TaskPage>() {
+            @Override
+            public TaskPage call() {
+                return loadPage(dbHelper.getReadableDatabase(), source, token);
+            }
+        }, new DatabaseExecutor.Callback<TaskPage>() {
+            @Override
+            public void onResult(TaskPage page) {
+                pendingPage = null;
+                continuationToken = page.getContinuationToken();
+                lastPageLoaded = !page.hasNextPage();
+                TodoIdentityMap.getInstance().tasks(page.getTasks());
+                if (showsPreview) {
+                    showsPreview = false;
+                    adapter.setTasks(page.getTasks());
+                } else {
+                    adapter.addTasks(page.getTasks());
+                }
+            }
+        });
+    }
+
+    private static TaskPage loadPage(SQLiteDatabase db, Source source, String continuationToken) {
+        if (source == Source.BIN)
+            return DBQueryHandler.getBinPage(db, DBQueryHandler.TaskOrder.LIST_POSITION, continuationToken, PAGE_SIZE);
+        return DBQueryHandler.getTaskPage(db, DBQueryHandler.TaskOrder.LIST_POSITION, continuationToken, PAGE_SIZE);
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        // at most one page is on its way
+        if (lastPageLoaded || pendingPage != null || totalItemCount == 0)
+            return;
+
+        if (firstVisibleItem + visibleItemCount + PREFETCH_DISTANCE >= totalItemCount)
+            requestNextPage();
+    }
+}
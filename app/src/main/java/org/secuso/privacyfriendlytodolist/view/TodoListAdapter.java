@@ -22,6 +22,7 @@ import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
 import android.view.ContextMenu;
 import android.view.LayoutInflater;
 import android.view.MenuInflater;
@@ -32,8 +33,16 @@ import android.widget.TextView;
 import org.secuso.privacyfriendlytodolist.R;
 import org.secuso.privacyfriendlytodolist.model.Helper;
 import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoListSummary;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 public class TodoListAdapter extends  RecyclerView.Adapter<TodoListAdapter.ViewHolder>  {
 
@@ -43,14 +52,18 @@ public class TodoListAdapter extends  RecyclerView.Adapter<TodoListAdapter.ViewH
 
     private ArrayList<TodoList> allLists;
     private String queryString;
+    private HashSet<Integer> matchingTaskIds; // result of the full-text search for queryString (null: no query)
     private ArrayList<TodoList> filteredLists;
+    // figures of the lists in the database by list id, so binding a row does not walk over its tasks
+    private SparseArray<TodoListSummary> summaries = new SparseArray<>();
+    private Future<int[]> pendingSearch = null;
     private int position;
 
     public TodoListAdapter(Activity ac, ArrayList<TodoList> data) {
         this.queryString = null;
-        updateList(data);
         this.contextActivity = (MainActivity) ac;
         prefs = PreferenceManager.getDefaultSharedPreferences(ac);
+        updateList(data);
     }
 
     public int getPosition() {
@@ -80,13 +93,31 @@ public class TodoListAdapter extends  RecyclerView.Adapter<TodoListAdapter.ViewH
     @Override
     public void onBindViewHolder(final ViewHolder holder, int position) {
         TodoList list = this.filteredLists.get(this.filteredLists.size()-1-position);
+        TodoListSummary summary = summaries.get(list.getId());
+
+        long nextDeadline;
+        int doneTodos, size;
+        TodoTask.DeadlineColors deadlineColor;
+        if (summary != null) {
+            nextDeadline = summary.getNextDeadline();
+            doneTodos = summary.getDoneTodos();
+            size = summary.getSize();
+            deadlineColor = summary.getDeadlineColor();
+        } else {
+            // the list was not yet written to the database
+            nextDeadline = list.getNextDeadline();
+            doneTodos = list.getDoneTodos();
+            size = list.getSize();
+            deadlineColor = list.getDeadlineColor(getDefaultReminderTime());
+        }
+
         holder.title.setText(list.getName());
-        if (list.getNextDeadline() <= 0)
+        if (nextDeadline <= 0)
             holder.deadline.setText(contextActivity.getResources().getString(R.string.no_next_deadline));
         else
-            holder.deadline.setText(contextActivity.getResources().getString(R.string.next_deadline_dd, Helper.getDate(list.getNextDeadline())));
-        holder.done.setText(String.format("%d/%d", list.getDoneTodos(), list.getSize()));
-        holder.urgency.setBackgroundColor(Helper.getDeadlineColor(contextActivity, list.getDeadlineColor(getDefaultReminderTime())));
+            holder.deadline.setText(contextActivity.getResources().getString(R.string.next_deadline_dd, Helper.getDate(nextDeadline)));
+        holder.done.setText(String.format("%d/%d", doneTodos, size));
+        holder.urgency.setBackgroundColor(Helper.getDeadlineColor(contextActivity, deadlineColor));
 
         holder.itemView.setOnLongClickListener(new View.OnLongClickListener() {
             @Override
@@ -110,24 +141,71 @@ public class TodoListAdapter extends  RecyclerView.Adapter<TodoListAdapter.ViewH
 
     public void updateList(ArrayList<TodoList> todoLists) {
         this.allLists = todoLists;
+        loadSummaries();
         applyFilter();
     }
 
+    private void loadSummaries() {
+        summaries.clear();
+        ArrayList<TodoListSummary> listSummaries = DBQueryHandler.getTodoListSummaries(contextActivity.getDbHelper().getReadableDatabase(),
+                Helper.getCurrentTimestamp(), getDefaultReminderTime());
+        for (TodoListSummary summary : listSummaries)
+            summaries.put(summary.getId(), summary);
+    }
+
 
-    public void setQueryString(String query) {
+    // like ExpandableTodoTaskAdapter#setQueryString the search runs on a reader thread of the executor
+    public void setQueryString(final String query) {
         this.queryString = query;
-        applyFilter();
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+
+        if (query == null || query.isEmpty()) {
+            this.matchingTaskIds = null;
+            applyFilter();
+            return;
+        }
+
+        final DatabaseHelper dbHelper = contextActivity.getDbHelper();
+        pendingSearch = DatabaseExecutor.getInstance().query(new Callable<int[]>() {
+            @Override
+            public int[] call() {
+                return DBQueryHandler.searchTasks(dbHelper.getReadableDatabase(), query);
+            }
+        }, new DatabaseExecutor.Callback<int[]>() {
+            @Override
+            public void onResult(int[] ids) {
+                pendingSearch = null;
+                matchingTaskIds = ExpandableTodoTaskAdapter.toIdSet(ids);
+                applyFilter();
+                notifyDataSetChanged();
+            }
+        });
     }
 
     private void applyFilter() {
         this.filteredLists = new ArrayList<TodoList>(this.allLists.size());
         for (int i = 0; i < this.allLists.size(); i++) {
-            if (this.allLists.get(i).checkQueryMatch(this.queryString)) {
+            if (matchesQuery(this.allLists.get(i))) {
                 this.filteredLists.add(this.allLists.get(i));
             }
         }
     }
 
+    // a list matches if its name contains the query or if the search found one of its tasks
+    private boolean matchesQuery(TodoList list) {
+        if (matchingTaskIds == null || list.checkQueryMatch(this.queryString, false))
+            return true;
+
+        for (TodoTask task : list.getTasks()) {
+            if (matchingTaskIds.contains(task.getId()))
+                return true;
+        }
+        return false;
+    }
+
     public TodoList getToDoListFromPosition(int index) {
         if (index < 0 || index >= this.filteredLists.size())
             return null;
@@ -46,7 +46,8 @@ import org.secuso.privacyfriendlytodolist.model.TodoList;
 import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
 import org.secuso.privacyfriendlytodolist.model.TodoTask;
 import org.secuso.privacyfriendlytodolist.model.Tuple;
-import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
+import org.secuso.privacyfriendlytodolist.model.database.TodoRepository;
 import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
 import org.secuso.privacyfriendlytodolist.view.dialog.ProcessTodoSubTaskDialog;
 import org.secuso.privacyfriendlytodolist.view.dialog.ProcessTodoTaskDialog;
@@ -54,6 +55,7 @@ import org.secuso.privacyfriendlytodolist.view.MainActivity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 public class TodoTasksFragment extends Fragment implements SearchView.OnQueryTextListener {
 
@@ -236,7 +238,7 @@ public class TodoTasksFragment extends Fragment implements SearchView.OnQueryTex
     public boolean onContextItemSelected(MenuItem item) {
 
         final Tuple<TodoTask, TodoSubTask> longClickedTodo = taskAdapter.getLongClickedTodo();
-        int affectedRows;
+        final TodoRepository repository = TodoRepository.getInstance(containingActivity);
 
         switch(item.getItemId()) {
             case R.id.change_subtask:
@@ -255,12 +257,22 @@ public class TodoTasksFragment extends Fragment implements SearchView.OnQueryTex
                 break;
 
             case R.id.delete_subtask:
-                affectedRows = DBQueryHandler.putSubtaskInTrash(containingActivity.getDbHelper().getWritableDatabase(), longClickedTodo.getRight());
-                longClickedTodo.getLeft().getSubTasks().remove(longClickedTodo.getRight());
-                if(affectedRows == 1)
-                    Toast.makeText(getContext(), getString(R.string.subtask_removed), Toast.LENGTH_SHORT).show();
-                else
-                    Log.d(TAG, "Subtask was not removed from the database. Maybe it was not added beforehand (then this is no error)?");
+                final TodoSubTask trashedSubTask = longClickedTodo.getRight();
+                DatabaseExecutor.getInstance().command(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return repository.putSubtaskInTrash(trashedSubTask);
+                    }
+                }, new DatabaseExecutor.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer result) {
+                        if(result == 1)
+                            Toast.makeText(containingActivity, getString(R.string.subtask_removed), Toast.LENGTH_SHORT).show();
+                        else
+                            Log.d(TAG, "Subtask was not removed from the database. Maybe it was not added beforehand (then this is no error)?");
+                    }
+                });
+                longClickedTodo.getLeft().getSubTasks().remove(trashedSubTask);
                 taskAdapter.notifyDataSetChanged();
                 break;
             case R.id.change_task:
@@ -277,13 +289,23 @@ public class TodoTasksFragment extends Fragment implements SearchView.OnQueryTex
                 editTaskDialog.show();
                 break;
             case R.id.delete_task:
-                affectedRows = DBQueryHandler.putTaskInTrash(containingActivity.getDbHelper().getWritableDatabase(), longClickedTodo.getLeft());
-                todoTasks.remove(longClickedTodo.getLeft());
-                if(affectedRows == 1)
-                    Toast.makeText(getContext(), getString(R.string.task_removed), Toast.LENGTH_SHORT).show();
+                final TodoTask trashedTask = longClickedTodo.getLeft();
+                DatabaseExecutor.getInstance().command(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return repository.putTaskInTrash(trashedTask);
+                    }
+                }, new DatabaseExecutor.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer result) {
+                        if(result == 1)
+                            Toast.makeText(containingActivity, getString(R.string.task_removed), Toast.LENGTH_SHORT).show();
 
-                else
-                    Log.d(TAG, "Task was not removed from the database. Maybe it was not added beforehand (then this is no error)?");
+                        else
+                            Log.d(TAG, "Task was not removed from the database. Maybe it was not added beforehand (then this is no error)?");
+                    }
+                });
+                todoTasks.remove(trashedTask);
                 taskAdapter.notifyDataSetChanged();
                 break;
             default:
@@ -399,6 +421,8 @@ public class TodoTasksFragment extends Fragment implements SearchView.OnQueryTex
 
     // write new tasks to the database
     public void saveNewTasks() {
+        ArrayList<BaseTodo> changedTodos = new ArrayList<>();
+
         for(int i=0; i<todoTasks.size(); i++) {
             TodoTask currentTask = todoTasks.get(i);
 
@@ -406,17 +430,17 @@ public class TodoTasksFragment extends Fragment implements SearchView.OnQueryTex
             if(!currentList.isDummyList())
                 currentTask.setListId(currentList.getId()); // crucial step to not lose the connection to the list
 
-            boolean dbChanged = containingActivity.sendToDatabase(currentTask);
-            if(dbChanged)
-                containingActivity.notifyReminderService(currentTask);
+            changedTodos.add(currentTask);
 
-            // write subtasks to the database
+            // subtasks follow their task, so that newly inserted tasks pass their id on to them
             for(TodoSubTask subTask : currentTask.getSubTasks()) {
                 subTask.setTaskId(currentTask.getId()); // crucial step to not lose the connection to the task
-                containingActivity.sendToDatabase(subTask);
+                changedTodos.add(subTask);
             }
         }
 
+        // all tasks and subtasks are written in a single transaction
+        containingActivity.sendToDatabase(changedTodos);
     }
 
 }
@@ -23,7 +23,7 @@ import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
-import android.text.format.DateFormat;
+import android.util.SparseArray;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
@@ -34,9 +34,9 @@ import android.widget.Toast;
 
 import org.secuso.privacyfriendlytodolist.R;
 import org.secuso.privacyfriendlytodolist.model.Helper;
-import org.secuso.privacyfriendlytodolist.model.TodoList;
-import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.TaskSummary;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
 import org.secuso.privacyfriendlytodolist.view.ExpandableTodoTaskAdapter;
 import org.secuso.privacyfriendlytodolist.view.MainActivity;
@@ -46,7 +46,8 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -60,9 +61,10 @@ public class CalendarActivity extends AppCompatActivity {
     private CalendarView calendarView;
     private CalendarGridAdapter calendarGridAdapter;
     protected MainActivity containerActivity;
-    private HashMap<String, ArrayList<TodoTask>> tasksPerDay = new HashMap<>();
+    private SparseArray<ArrayList<TaskSummary>> tasksPerDay = new SparseArray<>(); // deadlines of the visible days by local epoch day
     private DatabaseHelper dbHelper;
-    private ArrayList<TodoTask> todaysTasks;
+    private Future<?> pendingDeadlines; // deadlines of the month that is currently shown
+    private ArrayList<TaskSummary> todaysTasks;
 
   /*  private ExpandableListView expandableListView;
     private ExpandableTodoTaskAdapter taskAdapter; */
@@ -97,13 +99,12 @@ public class CalendarActivity extends AppCompatActivity {
         dbHelper = DatabaseHelper.getInstance(this);
         todaysTasks = new ArrayList<>();
 
-        updateDeadlines();
-
         calendarView.setNextMonthOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 calendarView.incMonth(1);
                 calendarView.refresh();
+                updateDeadlines();
             }
         });
 
@@ -112,17 +113,16 @@ public class CalendarActivity extends AppCompatActivity {
             public void onClick(View v) {
                 calendarView.incMonth(-1);
                 calendarView.refresh();
+                updateDeadlines();
             }
         });
 
         calendarView.setDayOnClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                //todaysTasks.clear();
-                updateDeadlines();
+                // the deadlines of all visible days are already loaded
                 Date selectedDate = calendarGridAdapter.getItem(position);
-                String key = absSecondsToDate(selectedDate.getTime()/1000);
-                todaysTasks = tasksPerDay.get(key);
+                todaysTasks = tasksPerDay.get(Helper.getLocalEpochDay(TimeUnit.MILLISECONDS.toSeconds(selectedDate.getTime())));
                 if(todaysTasks == null) {
                     Toast.makeText(getApplicationContext(), getString(R.string.no_deadline_today), Toast.LENGTH_SHORT).show();
                 } else {
@@ -135,35 +135,62 @@ public class CalendarActivity extends AppCompatActivity {
 
 
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // tasks might have been changed in the meantime
+        updateDeadlines();
+    }
+
+    // loads the deadlines of the days that are currently shown by the calendar
     private void updateDeadlines(){
-        ArrayList<TodoList> todoLists = DBQueryHandler.getAllToDoLists(dbHelper.getReadableDatabase());
-        ArrayList<TodoTask> todoTasks = DBQueryHandler.getAllToDoTasks(dbHelper.getReadableDatabase());
-        tasksPerDay.clear();
-        //for (TodoList list : todoLists){
-            for (TodoTask task : todoTasks){
-                long deadline = task.getDeadline();
-                String key = absSecondsToDate(deadline);
-                if (!tasksPerDay.containsKey(key)){
-                    tasksPerDay.put(key, new ArrayList<TodoTask>());
-                }
-                tasksPerDay.get(key).add(task);
-            //}
-        }
-        calendarGridAdapter.setTodoTasks(tasksPerDay);
-        calendarGridAdapter.notifyDataSetChanged();
-        //containerActivity.getSupportActionBar().setTitle(R.string.calendar);
+        int dayCount = calendarGridAdapter.getCount();
+        if (dayCount == 0)
+            return;
+
+        final long from = TimeUnit.MILLISECONDS.toSeconds(calendarGridAdapter.getItem(0).getTime());
+        Calendar end = Calendar.getInstance();
+        end.setTime(calendarGridAdapter.getItem(dayCount - 1));
+        end.add(Calendar.DAY_OF_MONTH, 1);
+        final long to = TimeUnit.MILLISECONDS.toSeconds(end.getTimeInMillis());
+
+        // results for a month the user already left are dropped
+        if (pendingDeadlines != null)
+            pendingDeadlines.cancel(false);
+
+        pendingDeadlines = DatabaseExecutor.getInstance().query(new Callable<SparseArray<ArrayList<TaskSummary>>>() {
+            @Override
+            public SparseArray<ArrayList<TaskSummary>> call() {
+                return DBQueryHandler.getTaskSummariesByDay(dbHelper.getReadableDatabase(), from, to);
+            }
+        }, new DatabaseExecutor.Callback<SparseArray<ArrayList<TaskSummary>>>() {
+            @Override
+            public void onResult(SparseArray<ArrayList<TaskSummary>> result) {
+                pendingDeadlines = null;
+                tasksPerDay = result;
+                calendarGridAdapter.setTodoTasks(tasksPerDay);
+                calendarGridAdapter.notifyDataSetChanged();
+                //containerActivity.getSupportActionBar().setTitle(R.string.calendar);
+            }
+        });
     }
 
-    private String absSecondsToDate(long seconds) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTimeInMillis(TimeUnit.SECONDS.toMillis(seconds));
-        return DateFormat.format(Helper.DATE_FORMAT, cal).toString();
+    @Override
+    protected void onDestroy() {
+        if (pendingDeadlines != null)
+            pendingDeadlines.cancel(false);
+        super.onDestroy();
     }
 
-    private void showDeadlineTasks(ArrayList<TodoTask> tasks){
+    // the popup loads the complete tasks by their ids
+    private void showDeadlineTasks(ArrayList<TaskSummary> tasks){
+        int ids[] = new int[tasks.size()];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = tasks.get(i).getId();
+
         Intent intent = new Intent(this, CalendarPopup.class);
         Bundle b = new Bundle();
-        b.putParcelableArrayList("Deadlines", tasks);
+        b.putIntArray(CalendarPopup.TASK_IDS_KEY, ids);
         intent.putExtras(b);
         startActivity(intent);
     }
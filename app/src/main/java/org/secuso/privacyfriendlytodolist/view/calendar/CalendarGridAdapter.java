@@ -21,7 +21,7 @@ import android.content.Context;
 import android.content.res.ColorStateList;
 import android.graphics.drawable.Drawable;
 import android.support.v4.content.ContextCompat;
-import android.text.format.DateFormat;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -30,13 +30,13 @@ import android.widget.TextView;
 
 import org.secuso.privacyfriendlytodolist.R;
 import org.secuso.privacyfriendlytodolist.model.Helper;
-import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.TaskSummary;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Sebastian Lutz on 12.03.2018.
@@ -47,13 +47,12 @@ import java.util.HashMap;
 
 public class CalendarGridAdapter extends ArrayAdapter<Date>{
 
-    private ArrayList<TodoTask> todoTasks;
     private LayoutInflater inflater;
 
     private SimpleDateFormat dateFormat = new SimpleDateFormat("d");
     private ColorStateList oldColors;
     private int currentMonth;
-    private HashMap<String, ArrayList<TodoTask>> tasksPerDay = new HashMap<>();
+    private SparseArray<ArrayList<TaskSummary>> tasksPerDay = new SparseArray<>(); // key: local epoch day
 
     public CalendarGridAdapter(Context context, int resource) {
         super(context, resource, new ArrayList<Date>());
@@ -97,11 +96,10 @@ public class CalendarGridAdapter extends ArrayAdapter<Date>{
         }
 
         // add color bar if a task has its deadline on this day
-        String day = DateFormat.format(Helper.DATE_FORMAT, dateAtPos).toString();
-        ArrayList<TodoTask> tasksToday = tasksPerDay.get(day);
+        ArrayList<TaskSummary> tasksToday = tasksPerDay.get(Helper.getLocalEpochDay(TimeUnit.MILLISECONDS.toSeconds(dateAtPos.getTime())));
         if(tasksToday != null) {
             Drawable border = ContextCompat.getDrawable(getContext(), R.drawable.border_green);
-            for(TodoTask t : tasksToday) {
+            for(TaskSummary t : tasksToday) {
                 if(!t.getDone())
                     border = ContextCompat.getDrawable(getContext(), R.drawable.border_blue);
             }
@@ -128,7 +126,7 @@ public class CalendarGridAdapter extends ArrayAdapter<Date>{
         this.currentMonth = month;
     }
 
-    public void setTodoTasks(HashMap<String, ArrayList<TodoTask>> tasksPerDay) {
+    public void setTodoTasks(SparseArray<ArrayList<TaskSummary>> tasksPerDay) {
         this.tasksPerDay = tasksPerDay;
     }
 
@@ -19,6 +19,7 @@ import org.secuso.privacyfriendlytodolist.R;
 import org.secuso.privacyfriendlytodolist.model.TodoTask;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+import org.secuso.privacyfriendlytodolist.model.database.TodoIdentityMap;
 import org.secuso.privacyfriendlytodolist.view.ExpandableTodoTaskAdapter;
 import org.secuso.privacyfriendlytodolist.view.MainActivity;
 
@@ -33,6 +34,8 @@ import java.util.List;
 
 public class CalendarPopup extends AppCompatActivity {
 
+    public static final String TASK_IDS_KEY = "Deadlines";
+
     private DatabaseHelper dbhelper;
     private ExpandableListView lv;
     RelativeLayout rl;
@@ -64,8 +67,11 @@ public class CalendarPopup extends AppCompatActivity {
 
         }
         Bundle b = getIntent().getExtras();
-        if(b != null)
-            tasks = b.getParcelableArrayList("Deadlines");
+        if(b != null) {
+            dbhelper = DatabaseHelper.getInstance(this);
+            tasks = DBQueryHandler.getTasksById(dbhelper.getReadableDatabase(), b.getIntArray(TASK_IDS_KEY));
+            TodoIdentityMap.getInstance().tasks(tasks);
+        }
         updateAdapter();
 
 
@@ -38,10 +38,12 @@ import org.secuso.privacyfriendlytodolist.model.Helper;
 import org.secuso.privacyfriendlytodolist.model.TodoList;
 import org.secuso.privacyfriendlytodolist.model.TodoTask;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import static org.secuso.privacyfriendlytodolist.model.TodoList.DUMMY_LIST_ID;
 
@@ -83,6 +85,7 @@ public class ProcessTodoTaskDialog extends FullScreenDialog {
         super(context, R.layout.add_task_dialog);
 
         initGui();
+        updateLists(null);
         task = new TodoTask();
         task.setCreated();
         //task.setDbState(DBQueryHandler.ObjectStates.INSERT_TO_DB);
@@ -93,6 +96,7 @@ public class ProcessTodoTaskDialog extends FullScreenDialog {
         super(context, R.layout.add_task_dialog);
 
         initGui();
+        updateLists(null);
         task.setChanged();
         //task.setDbState(DBQueryHandler.ObjectStates.UPDATE_DB);
         deadline = task.getDeadline();
@@ -294,7 +298,6 @@ public class ProcessTodoTaskDialog extends FullScreenDialog {
 
             case R.id.tv_new_task_listchoose:
                 menu.setHeaderTitle(R.string.select_list);
-                updateLists();
                 for (TodoList tl : lists){
                     //+3 so that IDs are non-overlapping with prio-IDs
                     menu.add(Menu.NONE, tl.getId()+3, Menu.NONE, tl.getName());
@@ -327,10 +330,23 @@ public class ProcessTodoTaskDialog extends FullScreenDialog {
     }
 
 
-    //updates the lists array
-    public void updateLists(){
+    // updates the lists array on a reader thread of the executor, only the ids and names are
+    // loaded. onLoaded runs on the main thread afterwards if it is not null.
+    public void updateLists(final Runnable onLoaded){
         dbHelper = DatabaseHelper.getInstance(getContext());
-        lists = DBQueryHandler.getAllToDoLists(dbHelper.getReadableDatabase());
+        DatabaseExecutor.getInstance().query(new Callable<ArrayList<TodoList>>() {
+            @Override
+            public ArrayList<TodoList> call() {
+                return DBQueryHandler.getTodoListNames(dbHelper.getReadableDatabase());
+            }
+        }, new DatabaseExecutor.Callback<ArrayList<TodoList>>() {
+            @Override
+            public void onResult(ArrayList<TodoList> result) {
+                lists = result;
+                if (onLoaded != null)
+                    onLoaded.run();
+            }
+        });
     }
 
 
@@ -342,8 +358,16 @@ public class ProcessTodoTaskDialog extends FullScreenDialog {
     }
 
     //sets the textview either to listname in context or if no context to default
-    public void setListSelector(int id, boolean idExists){
-        updateLists();
+    public void setListSelector(final int id, final boolean idExists){
+        updateLists(new Runnable() {
+            @Override
+            public void run() {
+                selectList(id, idExists);
+            }
+        });
+    }
+
+    private void selectList(int id, boolean idExists){
         for (TodoList tl : lists){
             if (id == tl.getId() && idExists == true){
                 listSelector.setText(tl.getName());
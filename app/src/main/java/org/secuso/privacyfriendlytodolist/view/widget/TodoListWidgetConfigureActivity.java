@@ -32,9 +32,11 @@ import android.widget.Toast;
 import org.secuso.privacyfriendlytodolist.R;
 import org.secuso.privacyfriendlytodolist.model.TodoList;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
+import org.secuso.privacyfriendlytodolist.model.database.DatabaseExecutor;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 /**
  * The configuration screen for the {@link TodoListWidget TodoListWidget} AppWidget.
@@ -153,16 +155,25 @@ public class TodoListWidgetConfigureActivity extends Activity {
 
 
     //updates the lists array and prepare adapter for spinner
+    // the names are read on a thread of the executor, as this activity may be the first to open the database
     public void updateLists(){
         dbHelper = DatabaseHelper.getInstance(this);
-        ArrayList<TodoList> tl = new ArrayList<TodoList>();
-        tl = DBQueryHandler.getAllToDoLists(dbHelper.getReadableDatabase());
-        ArrayList<String> help = new ArrayList<>();
-        for (int i=0; i<tl.size(); i++){
-            help.add(tl.get(i).getName());
-        }
-        lists = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, help);
+        lists = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, new ArrayList<String>());
         lists.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+
+        DatabaseExecutor.getInstance().query(new Callable<ArrayList<TodoList>>() {
+            @Override
+            public ArrayList<TodoList> call() {
+                return DBQueryHandler.getTodoListNames(dbHelper.getReadableDatabase());
+            }
+        }, new DatabaseExecutor.Callback<ArrayList<TodoList>>() {
+            @Override
+            public void onResult(ArrayList<TodoList> tl) {
+                for (int i=0; i<tl.size(); i++){
+                    lists.add(tl.get(i).getName());
+                }
+            }
+        });
     }
 
 
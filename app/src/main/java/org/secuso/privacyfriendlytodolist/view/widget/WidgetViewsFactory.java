@@ -25,19 +25,22 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.opengl.Visibility;
 import android.os.Binder;
+import android.text.TextUtils;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import org.secuso.privacyfriendlytodolist.R;
-import org.secuso.privacyfriendlytodolist.model.TodoList;
-import org.secuso.privacyfriendlytodolist.model.TodoTask;
+import org.secuso.privacyfriendlytodolist.model.TaskSummary;
+import org.secuso.privacyfriendlytodolist.model.database.ChangeLogEntry;
 import org.secuso.privacyfriendlytodolist.model.database.DBQueryHandler;
 import org.secuso.privacyfriendlytodolist.model.database.DatabaseHelper;
+import org.secuso.privacyfriendlytodolist.model.database.tables.TChangeLog;
 import org.secuso.privacyfriendlytodolist.model.database.tables.TTodoTask;
 import org.secuso.privacyfriendlytodolist.view.MainActivity;
 
@@ -53,11 +56,11 @@ import java.util.ArrayList;
 
 public class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
-    private ArrayList<TodoList> lists;
     private Context mContext;
     private static final int ID_CONSTANT = 0x0101010;
-    private ArrayList<TodoTask> listTasks;
+    private ArrayList<TaskSummary> listTasks;
     private String listChosen;
+    private long loadedVersion = -1; // change log version of the loaded tasks
     private static Context c;
     private static int id;
 
@@ -65,22 +68,43 @@ public class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory
 
     public WidgetViewsFactory(Context context, Intent intent){
         mContext = context;
-        lists = new ArrayList<TodoList>();
-        listTasks = new ArrayList<TodoTask>();
+        listTasks = new ArrayList<TaskSummary>();
     }
 
 
+    // onCreate runs on the main thread and opening the database may run pending migrations. The
+    // tasks are loaded by onDataSetChanged, which the framework calls on a binder thread right after.
     @Override
     public void onCreate() {
-        listChosen = getListName(c, id);
-            lists = DBQueryHandler.getAllToDoLists(DatabaseHelper.getInstance(mContext).getReadableDatabase());
-            for (int i=0; i < lists.size(); i++){
-                if (lists.get(i).getName().equals(this.listChosen))
-                    listTasks = lists.get(i).getTasks();
-
-            }
+    }
 
+    // the widget only shows name and state of the tasks, so descriptions and subtasks are not loaded
+    private void loadTasks() {
+        SQLiteDatabase db = DatabaseHelper.getInstance(mContext).getReadableDatabase();
+        String listName = getListName(c, id);
+        long version = DBQueryHandler.getChangeLogVersion(db);
+
+        boolean upToDate = loadedVersion >= 0 && TextUtils.equals(listName, listChosen) && !affectsWidget(DBQueryHandler.getChangesSince(db, loadedVersion));
+        loadedVersion = version;
+        if (upToDate)
+            return;
+
+        listChosen = listName;
+        if (listChosen == null)
+            listTasks = new ArrayList<TaskSummary>();
+        else
+            listTasks = DBQueryHandler.getTaskSummariesOfList(db, listChosen);
+    }
 
+    // changes of subtasks do not show up in the widget
+    private static boolean affectsWidget(ArrayList<ChangeLogEntry> changes) {
+        if (changes == null)
+            return true;
+        for (ChangeLogEntry change : changes) {
+            if (change.getEntity() != TChangeLog.ENTITY_SUBTASK)
+                return true;
+        }
+        return false;
     }
 
     @Override
@@ -92,12 +116,7 @@ public class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory
 
     @Override
     public void onDataSetChanged() {
-        listChosen = getListName(c, id);
-            lists = DBQueryHandler.getAllToDoLists(DatabaseHelper.getInstance(mContext).getReadableDatabase());
-            for (int i=0; i < lists.size(); i++){
-                if (lists.get(i).getName().equals(this.listChosen))
-                    listTasks = lists.get(i).getTasks();
-            }
+        loadTasks();
     }
 
 
@@ -115,7 +134,7 @@ public class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory
             return null;
         }
 
-        TodoTask todo = listTasks.get(position);
+        TaskSummary todo = listTasks.get(position);
 
         RemoteViews itemView = new RemoteViews(mContext.getPackageName(), R.layout.widget_tasks);
         if (todo.getDone()){
@@ -152,7 +171,7 @@ public class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory
 
     @Override
     public void onDestroy() {
-        lists.clear();
+        listTasks.clear();
     }
 
 
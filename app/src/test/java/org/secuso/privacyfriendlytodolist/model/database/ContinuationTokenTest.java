@@ -0,0 +1,39 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the continuation tokens of the paginated task queries.
+ */
+public class ContinuationTokenTest {
+
+    @Test
+    public void tokenKeepsKeyAndId() {
+        assertEquals("2048:17", DBQueryHandler.formatContinuationToken(2048, 17));
+        assertArrayEquals(new long[]{2048, 17}, DBQueryHandler.parseContinuationToken("2048:17"));
+    }
+
+    @Test
+    public void extremeKeysSurviveRoundTrip() {
+        long keys[] = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE}; // tasks without deadline sort with Long.MAX_VALUE
+        for (long key : keys) {
+            String token = DBQueryHandler.formatContinuationToken(key, Integer.MAX_VALUE);
+            assertArrayEquals(token, new long[]{key, Integer.MAX_VALUE}, DBQueryHandler.parseContinuationToken(token));
+        }
+    }
+
+    @Test
+    public void invalidTokensAreRejected() {
+        String tokens[] = {"", "12", "12:", ":12", "a:1", "1:b", "1:2:3", "1;2", " 1:2", "99999999999999999999:1"};
+        for (String token : tokens) {
+            try {
+                DBQueryHandler.parseContinuationToken(token);
+                fail("accepted \"" + token + "\"");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains(token));
+            }
+        }
+    }
+}
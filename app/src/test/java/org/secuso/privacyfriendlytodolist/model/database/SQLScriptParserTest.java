@@ -0,0 +1,99 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests how the migration scripts are split into statements.
+ */
+public class SQLScriptParserTest {
+
+    // unit tests run in the directory of the app module
+    private static final File ASSETS = new File("src/main/assets");
+
+    @Test
+    public void splitsAtSemicolons() {
+        assertEquals(Arrays.asList("CREATE TABLE a (x INTEGER)", "INSERT INTO a VALUES (1)", "DROP TABLE a"),
+                SQLScriptParser.parse("CREATE TABLE a (x INTEGER);\nINSERT INTO a VALUES (1);\n\nDROP TABLE a"));
+    }
+
+    @Test
+    public void dropsCommentsAndEmptyStatements() {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"),
+                SQLScriptParser.parse("-- first; line\nSELECT 1;;\n  ;SELECT/* a; b */2; -- end"));
+        assertTrue(SQLScriptParser.parse("-- only a comment").isEmpty());
+        assertTrue(SQLScriptParser.parse("").isEmpty());
+    }
+
+    @Test
+    public void keepsSemicolonsInLiteralsAndIdentifiers() {
+        assertEquals(Arrays.asList("INSERT INTO \"a;b\" VALUES ('x;y', 'it''s; -- no comment')", "SELECT [c;d], `e;f`"),
+                SQLScriptParser.parse("INSERT INTO \"a;b\" VALUES ('x;y', 'it''s; -- no comment'); SELECT [c;d], `e;f`;"));
+    }
+
+    @Test
+    public void keepsTriggerBodyTogether() {
+        String trigger = "CREATE TRIGGER t AFTER INSERT ON a\nBEGIN\n    UPDATE b SET x = 1;\n    DELETE FROM c;\nEND";
+        assertEquals(Arrays.asList(trigger, "SELECT 1"), SQLScriptParser.parse(trigger + ";\nSELECT 1;"));
+
+        String tempTrigger = "create temp trigger if not exists t after delete on a begin delete from b; end";
+        assertEquals(Arrays.asList(tempTrigger, "END"), SQLScriptParser.parse(tempTrigger + "; END;"));
+    }
+
+    @Test
+    public void caseExpressionDoesNotEndTriggerBody() {
+        String trigger = "CREATE TRIGGER t AFTER UPDATE ON a BEGIN " +
+                "UPDATE b SET x = CASE WHEN new.y > 0 THEN (CASE new.z WHEN 1 THEN 2 END) ELSE 0 END; " +
+                "INSERT INTO c VALUES (1); END";
+        assertEquals(Arrays.asList(trigger, "SELECT 2"), SQLScriptParser.parse(trigger + "; SELECT 2;"));
+    }
+
+    @Test
+    public void beginOutsideOfTriggerIsStatement() {
+        assertEquals(Arrays.asList("BEGIN TRANSACTION", "DELETE FROM a", "COMMIT"),
+                SQLScriptParser.parse("BEGIN TRANSACTION; DELETE FROM a; COMMIT;"));
+    }
+
+    @Test
+    public void readsLongScripts() throws IOException {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            script.append("INSERT INTO a VALUES (").append(i).append(");\n");
+        List<String> statements = SQLScriptParser.parse(new StringReader(script.toString()));
+
+        assertEquals(2000, statements.size());
+        assertEquals("INSERT INTO a VALUES (1999)", statements.get(1999));
+    }
+
+    @Test
+    public void parsesMigrationScripts() throws IOException {
+        for (int version = 1; version < DatabaseHelper.DATABASE_VERSION; version++) {
+            File file = new File(ASSETS, SchemaMigrator.getStepName(version));
+            Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            try {
+                List<String> statements = SQLScriptParser.parse(reader);
+                assertFalse(file.getName(), statements.isEmpty());
+                for (String statement : statements) {
+                    assertFalse(statement, statement.contains("--"));
+                    // a semicolon outside of a trigger body means that two statements were joined
+                    if (!statement.startsWith("CREATE TRIGGER"))
+                        assertFalse(statement, statement.contains(";"));
+                    else
+                        assertTrue(statement, statement.endsWith("END"));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests how a search query is turned into the MATCH expressions of the full-text index.
+ */
+public class SearchQueryTest {
+
+    @Test
+    public void splitsQueryLikeTheTokenizer() {
+        assertEquals(Arrays.asList("Buy", "milk", "today"), DBQueryHandler.splitSearchQuery("  Buy milk, today!"));
+        assertEquals(Arrays.asList("a", "b"), DBQueryHandler.splitSearchQuery("\"a* -b\""));
+        assertEquals(Arrays.asList("Ärger", "groß"), DBQueryHandler.splitSearchQuery("Ärger groß"));
+    }
+
+    @Test
+    public void emptyQueryHasNoWords() {
+        assertTrue(DBQueryHandler.splitSearchQuery(null).isEmpty());
+        assertTrue(DBQueryHandler.splitSearchQuery(" .,;* ").isEmpty());
+    }
+
+    @Test
+    public void asciiWordIsSinglePrefixQuery() {
+        assertEquals("Milk*", DBQueryHandler.toMatchExpression("Milk", null));
+        assertEquals("name:Milk*", DBQueryHandler.toMatchExpression("Milk", "name"));
+    }
+
+    @Test
+    public void nonAsciiLettersAreTriedInBothCases() {
+        assertEquals("ärger* OR Ärger*", DBQueryHandler.toMatchExpression("ärger", null));
+        // the tokenizer folds the ASCII letters itself
+        assertEquals("äRGER* OR ÄRGER*", DBQueryHandler.toMatchExpression("ÄRGER", null));
+        assertEquals("name:grün* OR name:grÜn*", DBQueryHandler.toMatchExpression("grün", "name"));
+    }
+
+    @Test
+    public void lettersWithoutCaseAreKept() {
+        assertEquals("straße*", DBQueryHandler.toMatchExpression("straße", null));
+        assertEquals("42*", DBQueryHandler.toMatchExpression("42", null));
+    }
+
+    @Test
+    public void variantsAreLimited() {
+        String expression = DBQueryHandler.toMatchExpression("äöüäöü", null);
+        ArrayList<String> variants = new ArrayList<>(Arrays.asList(expression.split(" OR ")));
+
+        assertEquals(16, variants.size());
+        for (String variant : variants) {
+            // cut off before the fifth letter that would double the variants again
+            assertEquals(5, variant.length());
+            assertTrue(variant.endsWith("*"));
+        }
+    }
+}
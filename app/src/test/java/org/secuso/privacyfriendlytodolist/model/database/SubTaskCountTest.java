@@ -0,0 +1,115 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.junit.Test;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests when a task counts its subtasks by the counters of the database and when by the loaded
+ * subtasks.
+ */
+public class SubTaskCountTest {
+
+    @Test
+    public void taskReadWithoutSubTasksUsesTheCounters() {
+        TodoTask task = readTask(3, 1);
+
+        assertFalse(task.areSubTasksLoaded());
+        assertEquals(3, task.getSubTaskCount());
+        assertEquals(1, task.getDoneSubTaskCount());
+    }
+
+    @Test
+    public void deletingTheLastLoadedSubTaskCountsZero() {
+        TodoTask task = readTask(1, 1);
+        ArrayList<TodoSubTask> subTasks = new ArrayList<>();
+        subTasks.add(subTask(1, true, false));
+        task.setSubTasks(subTasks);
+
+        task.getSubTasks().remove(0);
+
+        assertTrue(task.areSubTasksLoaded());
+        assertEquals(0, task.getSubTaskCount());
+        assertEquals(0, task.getDoneSubTaskCount());
+    }
+
+    @Test
+    public void subTasksInTheBinAreNotCounted() {
+        TodoTask task = readTask(2, 1);
+        ArrayList<TodoSubTask> subTasks = new ArrayList<>();
+        subTasks.add(subTask(1, true, false));
+        subTasks.add(subTask(2, false, false));
+        subTasks.add(subTask(3, true, true));
+        task.setSubTasks(subTasks);
+
+        assertEquals(2, task.getSubTaskCount());
+        assertEquals(1, task.getDoneSubTaskCount());
+
+        // restored
+        subTasks.get(2).setInTrash(false);
+        assertEquals(3, task.getSubTaskCount());
+        assertEquals(2, task.getDoneSubTaskCount());
+    }
+
+    @Test
+    public void newTaskCountsItsSubTasks() {
+        TodoTask task = new TodoTask();
+        assertTrue(task.areSubTasksLoaded());
+        assertEquals(0, task.getSubTaskCount());
+
+        task.getSubTasks().add(subTask(1, false, false));
+        assertEquals(1, task.getSubTaskCount());
+    }
+
+    @Test
+    public void copyCountsByTheCountersUntilItsSubTasksAreSet() {
+        TodoTask task = readTask(2, 2);
+        ArrayList<TodoSubTask> subTasks = new ArrayList<>();
+        subTasks.add(subTask(1, false, false));
+        task.setSubTasks(subTasks);
+
+        TodoTask copy = new TodoTask(task);
+        assertFalse(copy.areSubTasksLoaded());
+        assertEquals(2, copy.getDoneSubTaskCount());
+
+        copy.setSubTasks(new ArrayList<TodoSubTask>());
+        assertEquals(0, copy.getSubTaskCount());
+    }
+
+    @Test
+    public void doneStateFollowsTheCounters() {
+        TodoTask task = readTask(2, 2);
+        task.doneStatusChanged();
+        assertTrue(task.getDone());
+
+        task = readTask(2, 1);
+        task.doneStatusChanged();
+        assertFalse(task.getDone());
+    }
+
+    // a task as the row mapper reads it
+    private static TodoTask readTask(int subTasks, int doneSubTasks) {
+        TodoTask task = new TodoTask();
+        task.setId(1);
+        task.setName("task");
+        task.setPriority(TodoTask.Priority.MEDIUM);
+        task.setSubTaskCounts(subTasks, doneSubTasks);
+        task.setUnchanged();
+        return task;
+    }
+
+    private static TodoSubTask subTask(int id, boolean done, boolean inTrash) {
+        TodoSubTask subTask = new TodoSubTask();
+        subTask.setId(id);
+        subTask.setName("subtask " + id);
+        subTask.setTaskId(1);
+        subTask.setDone(done);
+        subTask.setInTrash(inTrash);
+        subTask.setUnchanged();
+        return subTask;
+    }
+}
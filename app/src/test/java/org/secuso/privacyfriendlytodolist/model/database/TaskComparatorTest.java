@@ -0,0 +1,76 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.junit.Test;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that observed task queries are sorted like the paginated queries of the database.
+ */
+public class TaskComparatorTest {
+
+    @Test
+    public void listPositionThenId() {
+        assertEquals(Arrays.asList(3, 1, 2, 4), sortedIds(DBQueryHandler.TaskOrder.LIST_POSITION,
+                task(1, 2048, -1, TodoTask.Priority.HIGH),
+                task(2, 2048, -1, TodoTask.Priority.HIGH),
+                task(3, 1024, -1, TodoTask.Priority.HIGH),
+                task(4, Integer.MAX_VALUE, -1, TodoTask.Priority.HIGH)));
+    }
+
+    @Test
+    public void deadlineWithTasksWithoutDeadlineLast() {
+        assertEquals(Arrays.asList(4, 3, 2, 1, 5), sortedIds(DBQueryHandler.TaskOrder.DEADLINE,
+                task(1, 1024, -1, TodoTask.Priority.HIGH),
+                task(2, 2048, 1L << 40, TodoTask.Priority.HIGH),
+                task(3, 3072, 1000, TodoTask.Priority.HIGH),
+                task(4, 4096, 0, TodoTask.Priority.HIGH),
+                task(5, 0, -1, TodoTask.Priority.HIGH)));
+    }
+
+    @Test
+    public void priorityThenId() {
+        // HIGH has the lowest value and comes first, like in the database
+        assertEquals(Arrays.asList(3, 2, 4, 1), sortedIds(DBQueryHandler.TaskOrder.PRIORITY,
+                task(1, 1024, -1, TodoTask.Priority.LOW),
+                task(2, 4096, -1, TodoTask.Priority.MEDIUM),
+                task(3, 2048, -1, TodoTask.Priority.HIGH),
+                task(4, 0, -1, TodoTask.Priority.MEDIUM)));
+    }
+
+    @Test
+    public void equalKeysAreOrderedByIdOnly() {
+        // the list position does not break ties of other orders, because the database does not
+        TodoTask first = task(1, 4096, 500, TodoTask.Priority.LOW);
+        TodoTask second = task(2, 1024, 500, TodoTask.Priority.LOW);
+        for (DBQueryHandler.TaskOrder order : new DBQueryHandler.TaskOrder[]{DBQueryHandler.TaskOrder.DEADLINE, DBQueryHandler.TaskOrder.PRIORITY}) {
+            TaskQuery.TaskComparator comparator = new TaskQuery.TaskComparator(order);
+            assertTrue(comparator.compare(first, second) < 0);
+            assertTrue(comparator.compare(second, first) > 0);
+            assertEquals(0, comparator.compare(first, first));
+        }
+    }
+
+    private static ArrayList<Integer> sortedIds(DBQueryHandler.TaskOrder order, TodoTask... tasks) {
+        ArrayList<TodoTask> sorted = new ArrayList<>(Arrays.asList(tasks));
+        Collections.sort(sorted, new TaskQuery.TaskComparator(order));
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (TodoTask task : sorted)
+            ids.add(task.getId());
+        return ids;
+    }
+
+    private static TodoTask task(int id, int position, long deadline, TodoTask.Priority priority) {
+        TodoTask task = new TodoTask();
+        task.setId(id);
+        task.setPositionInList(position);
+        task.setDeadline(deadline);
+        task.setPriority(priority);
+        return task;
+    }
+}
@@ -0,0 +1,130 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.junit.Test;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the fingerprints and the differences between consecutive query results.
+ */
+public class TaskQueryDifferTest {
+
+    @Test
+    public void firstResultIsInitial() {
+        TaskQueryDiffer differ = new TaskQueryDiffer();
+        ArrayList<TodoTask> result = result(task(1, "a"), task(2, "b"));
+
+        TaskQueryDiff diff = differ.diff(result);
+
+        assertTrue(diff.isInitial());
+        assertSame(result, diff.getTasks());
+        assertEquals(ids(result), ids(diff.getInserted()));
+        assertTrue(diff.getChanged().isEmpty());
+        assertTrue(diff.getRemovedIds().isEmpty());
+    }
+
+    @Test
+    public void sameValuesInNewObjectsAreNoChange() {
+        TaskQueryDiffer differ = new TaskQueryDiffer();
+        differ.diff(result(task(1, "a"), task(2, "b")));
+
+        TaskQueryDiff diff = differ.diff(result(task(2, "b"), task(1, "a")));
+
+        assertFalse(diff.isInitial());
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void reportsInsertedChangedAndRemovedTasks() {
+        TaskQueryDiffer differ = new TaskQueryDiffer();
+        differ.diff(result(task(1, "a"), task(2, "b"), task(3, "c")));
+
+        TaskQueryDiff diff = differ.diff(result(task(1, "a"), task(3, "changed"), task(4, "d")));
+
+        assertEquals(Arrays.asList(4), ids(diff.getInserted()));
+        assertEquals(Arrays.asList(3), ids(diff.getChanged()));
+        assertEquals(Arrays.asList(2), diff.getRemovedIds());
+
+        // the next diff compares with the last result
+        diff = differ.diff(new ArrayList<TodoTask>());
+        Collections.sort(diff.getRemovedIds());
+        assertEquals(Arrays.asList(1, 3, 4), diff.getRemovedIds());
+    }
+
+    @Test
+    public void fingerprintCoversDisplayedValues() {
+        long fingerprint = TaskQueryDiffer.fingerprint(task(1, "a"));
+        assertEquals(fingerprint, TaskQueryDiffer.fingerprint(task(1, "a")));
+
+        TodoTask task = task(1, "a");
+        task.setDone(true);
+        assertNotEquals(fingerprint, TaskQueryDiffer.fingerprint(task));
+
+        task = task(1, "a");
+        task.setDeadline(1L << 40);
+        assertNotEquals(fingerprint, TaskQueryDiffer.fingerprint(task));
+
+        task = task(1, "a");
+        task.setPriority(TodoTask.Priority.LOW);
+        assertNotEquals(fingerprint, TaskQueryDiffer.fingerprint(task));
+
+        task = task(1, "a");
+        task.setSubTaskCounts(2, 1);
+        assertNotEquals(fingerprint, TaskQueryDiffer.fingerprint(task));
+    }
+
+    @Test
+    public void subTaskChangeChangesTask() {
+        TodoTask task = task(1, "a");
+        task.getSubTasks().add(subTask(10, "s", false));
+        long fingerprint = TaskQueryDiffer.fingerprint(task);
+
+        TodoTask done = task(1, "a");
+        done.getSubTasks().add(subTask(10, "s", true));
+        assertNotEquals(fingerprint, TaskQueryDiffer.fingerprint(done));
+
+        TodoTask renamed = task(1, "a");
+        renamed.getSubTasks().add(subTask(10, "t", false));
+        assertNotEquals(fingerprint, TaskQueryDiffer.fingerprint(renamed));
+
+        TaskQueryDiffer differ = new TaskQueryDiffer();
+        differ.diff(result(task));
+        assertEquals(Arrays.asList(1), ids(differ.diff(result(done)).getChanged()));
+    }
+
+    private static TodoTask task(int id, String name) {
+        TodoTask task = new TodoTask();
+        task.setId(id);
+        task.setName(name);
+        task.setDescription("");
+        task.setPriority(TodoTask.Priority.MEDIUM);
+        task.setDeadline(-1);
+        task.setUnchanged();
+        return task;
+    }
+
+    private static TodoSubTask subTask(int id, String name, boolean done) {
+        TodoSubTask subTask = new TodoSubTask();
+        subTask.setId(id);
+        subTask.setName(name);
+        subTask.setDone(done);
+        return subTask;
+    }
+
+    private static ArrayList<TodoTask> result(TodoTask... tasks) {
+        return new ArrayList<>(Arrays.asList(tasks));
+    }
+
+    private static ArrayList<Integer> ids(ArrayList<TodoTask> tasks) {
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (TodoTask task : tasks)
+            ids.add(task.getId());
+        return ids;
+    }
+}
@@ -0,0 +1,133 @@
+package org.secuso.privacyfriendlytodolist.model.database;
+
+import org.junit.Test;
+import org.secuso.privacyfriendlytodolist.model.BaseTodo;
+import org.secuso.privacyfriendlytodolist.model.TodoList;
+import org.secuso.privacyfriendlytodolist.model.TodoSubTask;
+import org.secuso.privacyfriendlytodolist.model.TodoTask;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests which columns the batch writer updates for the dirty bits of lists, tasks and subtasks.
+ */
+public class TodoBatchWriterTest {
+
+    @Test
+    public void everyTaskSetterUpdatesItsColumn() {
+        TodoTask task;
+
+        task = task();
+        task.setName("name");
+        assertUpdate("UPDATE todo_task SET name=? WHERE _id=?;", task);
+
+        task = task();
+        task.setDescription("description");
+        assertUpdate("UPDATE todo_task SET description=? WHERE _id=?;", task);
+
+        task = task();
+        task.setProgress(50);
+        assertUpdate("UPDATE todo_task SET progress=? WHERE _id=?;", task);
+
+        task = task();
+        task.setDeadline(1L << 40);
+        assertUpdate("UPDATE todo_task SET deadline=? WHERE _id=?;", task);
+
+        task = task();
+        task.setReminderTime(1000);
+        assertUpdate("UPDATE todo_task SET deadline_warning_time=? WHERE _id=?;", task);
+
+        task = task();
+        task.setPriority(TodoTask.Priority.LOW);
+        assertUpdate("UPDATE todo_task SET priority=? WHERE _id=?;", task);
+
+        task = task();
+        task.setListId(3);
+        assertUpdate("UPDATE todo_task SET todo_list_id=? WHERE _id=?;", task);
+
+        task = task();
+        task.setPositionInList(2048);
+        assertUpdate("UPDATE todo_task SET position_in_todo_list=? WHERE _id=?;", task);
+
+        task = task();
+        task.setDone(true);
+        assertUpdate("UPDATE todo_task SET done=? WHERE _id=?;", task);
+
+        task = task();
+        task.setInTrash(true);
+        assertUpdate("UPDATE todo_task SET in_trash=? WHERE _id=?;", task);
+    }
+
+    @Test
+    public void severalChangesUpdateTheirColumnsInTableOrder() {
+        TodoTask task = task();
+        task.setDone(true);
+        task.setName("name");
+        task.setDeadline(100);
+
+        assertEquals(BaseTodo.FIELD_NAME | TodoTask.FIELD_DEADLINE | TodoTask.FIELD_DONE, TodoBatchWriter.writableFields(task));
+        assertUpdate("UPDATE todo_task SET name=?, deadline=?, done=? WHERE _id=?;", task);
+    }
+
+    @Test
+    public void settingTheSameValueWritesNothing() {
+        TodoTask task = task();
+        task.setName("task");
+        task.setDone(false);
+        task.setPriority(TodoTask.Priority.MEDIUM);
+
+        assertEquals(0, TodoBatchWriter.writableFields(task));
+    }
+
+    @Test
+    public void subTaskSettersUpdateTheirColumns() {
+        TodoSubTask subTask = subTask();
+        subTask.setName("title");
+        assertUpdate("UPDATE todo_subtask SET title=? WHERE _id=?;", subTask);
+
+        subTask = subTask();
+        subTask.setDone(true);
+        subTask.setTaskId(7);
+        subTask.setInTrash(true);
+        assertEquals(TodoSubTask.FIELD_DONE | TodoSubTask.FIELD_TASK_ID | TodoSubTask.FIELD_TRASH, TodoBatchWriter.writableFields(subTask));
+        assertUpdate("UPDATE todo_subtask SET done=?, todo_task_id=?, in_trash=? WHERE _id=?;", subTask);
+    }
+
+    @Test
+    public void listUpdatesOnlyItsName() {
+        TodoList list = new TodoList();
+        list.setId(1);
+        list.setName("list");
+        list.setUnchanged();
+
+        // a list has no description column
+        list.setDescription("description");
+        assertEquals(0, TodoBatchWriter.writableFields(list));
+
+        list.setName("renamed");
+        assertUpdate("UPDATE todo_list SET name=? WHERE _id=?;", list);
+    }
+
+    private static void assertUpdate(String expected, BaseTodo todo) {
+        assertEquals(expected, TodoBatchWriter.updateSql(todo, TodoBatchWriter.writableFields(todo)));
+    }
+
+    private static TodoTask task() {
+        TodoTask task = new TodoTask();
+        task.setId(1);
+        task.setName("task");
+        task.setDescription("");
+        task.setPriority(TodoTask.Priority.MEDIUM);
+        task.setUnchanged();
+        return task;
+    }
+
+    private static TodoSubTask subTask() {
+        TodoSubTask subTask = new TodoSubTask();
+        subTask.setId(1);
+        subTask.setName("subtask");
+        subTask.setTaskId(1);
+        subTask.setUnchanged();
+        return subTask;
+    }
+}